@@ -0,0 +1,458 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : ÉCRITURE D'AUDIT ASYNCHRONE PAR BATCH                        ║
+// ║        File bornée → thread dédié → executeBatch sur sa propre connexion  ║
+// ║        audit.async=false → écriture synchrone actuelle                     ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  AuditHandler écrit chaque entrée d'audit / de log tout de suite, sur le
+//  sqlHandler partagé, dans le thread de traitement des paiements. Le
+//  volume d'audit croît avec le nombre de paiements : une écriture (au moins)
+//  de plus par message sur le chemin critique.
+//
+//  APRÈS : AuditHandler dépose l'entrée (requête + paramètres) dans une file
+//  bornée et rend la main. AuditWriter, un thread dédié avec SA connexion
+//  (SqlHandler.openConnection(), autocommit off), vide la file par lots :
+//  regroupement par requête, addBatch / executeBatch, un commit par lot.
+//
+//  FLUSH GARANTI :
+//   - flush() bloque jusqu'à ce que tout ce qui a été déposé AVANT l'appel
+//     soit écrit et commité. Main l'appelle juste avant chaque commit() du
+//     traitement → l'audit d'un lot commité est toujours en base.
+//     Attente bornée (audit.flush.timeout.seconds) : délai dépassé ou thread
+//     d'écriture arrêté → PaymentException, le commit n'a pas lieu.
+//   - close() : flush + arrêt du thread + fermeture de la connexion. Appelé
+//     quand le Main est jeté (fin de start(), reconstruction ou arrêt du
+//     daemon, nouvel AuditHandler dans initProcessors()) ; jamais en fin de
+//     cycle daemon, l'AuditHandler reste asynchrone tant que le Main vit.
+//   - UN shutdown hook pour toute la JVM (enregistré au chargement
+//     d'AuditWriter) ferme les writers encore ouverts.
+//   - Thread d'écriture arrêté (Error, bug) : les entrées suivantes repartent
+//     en écriture synchrone sur sqlHandler, comme avec audit.async=false.
+//
+//  FILE PLEINE (audit.queue.policy) :
+//   - BLOCK (défaut) : le traitement attend → aucune perte, back-pressure.
+//   - DROP : l'entrée est jetée et comptée (droppedEntries), jamais bloquant.
+//  Compteurs : enqueued / written / dropped / failed, loggés à la fermeture.
+//
+//  ⚠️ Conséquence : l'audit est commité sur sa propre connexion, donc
+//     indépendamment de la transaction de paiement. Une entrée d'audit d'un
+//     lot ensuite rollbacké reste en base (elle trace ce qui a été tenté).
+//
+//  FICHIERS MODIFIÉS : 4
+//  ─────────────────
+//  1. P00_ICOR_00_Config.java   → +auditAsync +auditQueueSize +auditBatchSize +auditQueuePolicy
+//                                 +auditFlushTimeoutSeconds
+//  2. AuditWriter.java (NOUVEAU, package de AuditHandler)
+//  3. AuditHandler.java         → écriture via AuditWriter si audit.async
+//  4. Main.java                 → flush() avant commit, close() quand le Main est jeté
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : P00_ICOR_00_Config.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    public boolean auditAsync = false;
+    public int auditQueueSize = 10000;
+    public int auditBatchSize = 200;
+    /** BLOCK ou DROP quand la file est pleine. */
+    public String auditQueuePolicy = "BLOCK";
+    /** Attente maximale d'un flush() d'audit avant commit. */
+    public int auditFlushTimeoutSeconds = 60;
+
+    this.auditAsync = Boolean.parseBoolean(props.getProperty("audit.async", "false"));
+    this.auditQueueSize = Integer.parseInt(props.getProperty("audit.queue.size", "10000"));
+    this.auditBatchSize = Integer.parseInt(props.getProperty("audit.batch.size", "200"));
+    this.auditQueuePolicy = props.getProperty("audit.queue.policy", "BLOCK").trim().toUpperCase();
+    this.auditFlushTimeoutSeconds = Integer.parseInt(props.getProperty("audit.flush.timeout.seconds", "60"));
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : AuditWriter.java (NOUVEAU)
+// ════════════════════════════════════════════════════════════════════════════════
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Écrit les entrées d'audit par batch JDBC sur un thread et une connexion
+ * dédiés. Thread-safe côté producteurs.
+ */
+class AuditWriter implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AuditWriter.class);
+
+    /** Attente max d'un dépôt avant de revérifier que le thread tourne. */
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    /** Writers ouverts, fermés par l'unique shutdown hook ci-dessous. */
+    private static final Set<AuditWriter> OPEN_WRITERS = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> OPEN_WRITERS.forEach(AuditWriter::close), "audit-shutdown"));
+    }
+
+    /** Une entrée à écrire, ou un marqueur de flush (latch != null). */
+    private static final class Entry {
+        final String query;
+        final Object[] params;
+        final CountDownLatch latch;
+
+        Entry(String query, Object[] params, CountDownLatch latch) {
+            this.query = query;
+            this.params = params;
+            this.latch = latch;
+        }
+    }
+
+    private static final Entry STOP = new Entry(null, null, null);
+
+    private final Connection connection;
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final boolean dropWhenFull;
+    private final long flushTimeoutSeconds;
+    private final Thread thread;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /** Cause de l'arrêt du thread d'écriture ; null tant qu'il tourne normalement. */
+    private volatile PaymentException failure;
+
+    AuditWriter(Connection connection, int queueSize, int batchSize, boolean dropWhenFull,
+                long flushTimeoutSeconds) throws SQLException {
+        this.connection = connection;
+        this.connection.setAutoCommit(false);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.dropWhenFull = dropWhenFull;
+        this.flushTimeoutSeconds = flushTimeoutSeconds;
+        this.thread = new Thread(this::run, "audit-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        OPEN_WRITERS.add(this);
+    }
+
+    /**
+     * Dépose une entrée. Bloque (BLOCK) ou jette (DROP) si la file est pleine.
+     *
+     * @return false si le writer est fermé, son thread arrêté ou l'attente
+     *         (BLOCK) interrompue : l'appelant écrit alors l'entrée lui-même
+     */
+    boolean write(String query, Object[] params) {
+        if (this.closed.get() || this.failure != null) {
+            return false;
+        }
+        Entry entry = new Entry(query, params, null);
+        if (this.dropWhenFull) {
+            if (!this.queue.offer(entry)) {
+                this.dropped.incrementAndGet();
+                return true;
+            }
+        } else {
+            try {
+                while (!this.queue.offer(entry, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    if (!this.thread.isAlive()) {
+                        return false;
+                    }
+                }
+            } catch (InterruptedException e) {
+                // BLOCK = aucune perte : l'appelant écrit l'entrée en synchrone
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        this.enqueued.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Attend que toutes les entrées déposées avant cet appel soient commitées.
+     * Le marqueur passe toujours (dépôt bloquant), même en politique DROP.
+     *
+     * @throws PaymentException délai dépassé, thread d'écriture arrêté ou
+     *         attente interrompue
+     */
+    void flush() throws PaymentException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(this.flushTimeoutSeconds);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            while (!this.queue.offer(new Entry(null, null, latch), OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                checkRunning(deadline);
+            }
+            while (!latch.await(OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                checkRunning(deadline);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentException("Interrupted while flushing audit entries", e);
+        }
+        if (this.failure != null) {
+            throw this.failure;
+        }
+    }
+
+    private void checkRunning(long deadline) throws PaymentException {
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        if (!this.thread.isAlive()) {
+            throw new PaymentException("Audit writer stopped, could not flush audit entries");
+        }
+        if (System.nanoTime() - deadline > 0) {
+            throw new PaymentException("Audit entries not flushed within "
+                    + this.flushTimeoutSeconds + " s (" + stats() + ")");
+        }
+    }
+
+    String stats() {
+        return "enqueued=" + this.enqueued.get() + " written=" + this.written.get()
+                + " dropped=" + this.dropped.get() + " failed=" + this.failed.get();
+    }
+
+    /**
+     * Flush, arrêt du thread et fermeture de la connexion. Idempotent et sans
+     * exception : appelé par Main et par le shutdown hook.
+     */
+    @Override
+    public void close() {
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+        OPEN_WRITERS.remove(this);
+        try {
+            flush();
+        } catch (PaymentException e) {
+            LOG.error("Audit entries lost on close", e);
+        }
+        try {
+            if (this.queue.offer(STOP, this.flushTimeoutSeconds, TimeUnit.SECONDS)) {
+                this.thread.join(TimeUnit.SECONDS.toMillis(this.flushTimeoutSeconds));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            this.connection.close();
+        } catch (SQLException e) {
+            LOG.warn("Could not close audit connection", e);
+        }
+        LOG.info("Audit writer closed: " + stats());
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(this.batchSize);
+        try {
+            while (true) {
+                batch.add(this.queue.take());
+                this.queue.drainTo(batch, this.batchSize - 1);
+                boolean stop = batch.remove(STOP);
+                writeBatch(batch);
+                batch.clear();
+                if (stop) {
+                    return;
+                }
+            }
+        } catch (Throwable e) {
+            LOG.error("Audit writer stopped", e);
+            this.failure = new PaymentException("Audit writer stopped", e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // Personne ne lira plus la file : libérer les flush() en attente
+            batch.addAll(this.queue);
+            this.queue.clear();
+            for (Entry entry : batch) {
+                if (entry.latch != null) {
+                    entry.latch.countDown();
+                } else if (entry != STOP) {
+                    this.failed.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Écrit les entrées du lot (groupées par requête, ordre conservé par
+     * requête), commit, puis libère les flush() en attente.
+     */
+    private void writeBatch(List<Entry> batch) {
+        Map<String, List<Object[]>> byQuery = new LinkedHashMap<>();
+        List<CountDownLatch> latches = new ArrayList<>();
+        for (Entry entry : batch) {
+            if (entry.latch != null) {
+                latches.add(entry.latch);
+            } else {
+                byQuery.computeIfAbsent(entry.query, q -> new ArrayList<>()).add(entry.params);
+            }
+        }
+        int count = 0;
+        try {
+            for (Map.Entry<String, List<Object[]>> query : byQuery.entrySet()) {
+                try (PreparedStatement ps = this.connection.prepareStatement(query.getKey())) {
+                    for (Object[] params : query.getValue()) {
+                        SqlHandler.bindParameters(ps, params);
+                        ps.addBatch();
+                        count++;
+                    }
+                    ps.executeBatch();
+                }
+            }
+            this.connection.commit();
+            this.written.addAndGet(count);
+        } catch (SQLException e) {
+            this.failed.addAndGet(count);
+            LOG.error("Could not write " + count + " audit entries", e);
+            try {
+                this.connection.rollback();
+            } catch (SQLException rollbackError) {
+                LOG.warn("Could not roll back audit batch", rollbackError);
+            }
+        } finally {
+            latches.forEach(CountDownLatch::countDown);
+        }
+    }
+}
+
+//  SqlHandler.bindParameters() : passe de private à public static (déjà
+//  static depuis PERF_STATEMENT_CACHE.java) pour être partagé ici.
+//  Un batch en échec SQL est compté (failed) et n'arrête pas le writer :
+//  l'audit reste best-effort. Seul un arrêt du thread fait échouer flush().
+//  ⚠️ Si le constructeur de PaymentException n'accepte qu'une Exception en
+//     cause, envelopper l'Error : new PaymentException(..., new Exception(e)).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : AuditHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** null = écriture synchrone sur sqlHandler (actuel). */
+    private final AuditWriter auditWriter;
+
+    // Constructeur — APRÈS :
+    public AuditHandler(String cdeName, IPaymentSqlHandler sqlHandler) {
+        this.cdeName = cdeName;
+        this.sqlHandler = sqlHandler;
+        this.auditWriter = openAuditWriter();
+    }
+
+    private static AuditWriter openAuditWriter() {
+        P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+        if (!config.auditAsync) {
+            return null;
+        }
+        try {
+            return new AuditWriter(SqlHandler.openConnection(), config.auditQueueSize, config.auditBatchSize,
+                    "DROP".equals(config.auditQueuePolicy), config.auditFlushTimeoutSeconds);
+        } catch (SQLException e) {
+            LOG.error("Could not open audit connection, falling back to synchronous audit", e);
+            return null;
+        }
+    }
+
+    // Chaque écriture d'audit / de log — AVANT :
+    this.sqlHandler.updateQuery(INSERT_AUDIT, params);
+
+    // APRÈS :
+    if (this.auditWriter == null || !this.auditWriter.write(INSERT_AUDIT, params)) {
+        this.sqlHandler.updateQuery(INSERT_AUDIT, params);
+    }
+
+    /** Attend l'écriture de l'audit déjà déposé. Sans effet en mode synchrone. */
+    public void flush() throws PaymentException {
+        if (this.auditWriter != null) {
+            this.auditWriter.flush();
+        }
+    }
+
+    /** Ferme le writer (idempotent). À n'appeler que quand le Main est jeté. */
+    public void close() {
+        if (this.auditWriter != null) {
+            this.auditWriter.close();
+        }
+    }
+
+//  loadLogId() reste synchrone (il LIT l'identifiant de log avant toute
+//  écriture) ; les entrées qui le portent sont ensuite asynchrones.
+//  ⚠️ Le tableau params est gardé tel quel jusqu'à l'écriture : l'appelant
+//     ne doit pas le réutiliser / modifier après write().
+//  SqlHandler.openConnection() (PERF_PARALLEL_BRANCHES.java) passe de
+//  protected à public pour être appelé depuis AuditHandler.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : Main.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    // Avant CHAQUE this.sqlHandler.commit() de process() (PaymentException
+    // déjà attrapée par le catch de process() → rollback) :
+    this.auditHandler.flush();
+    this.sqlHandler.commit();
+
+    // initProcessors() : l'AuditHandler est recréé (rafraîchissement daemon,
+    // PERF_DAEMON_MODE.java) → fermer le précédent, le nouveau ouvre son writer.
+    // AVANT :
+    this.auditHandler = new AuditHandler(cdeName, this.sqlHandler);
+    // APRÈS :
+    if (this.auditHandler != null) {
+        this.auditHandler.close();
+    }
+    this.auditHandler = new AuditHandler(cdeName, this.sqlHandler);
+
+    // finally de start() (one-shot) :
+    main.auditHandler.close();
+
+    // closeConnections(main) (PERF_DAEMON_MODE.java), avant la connexion JDBC :
+    try {
+        main.auditHandler.close();
+    } catch (Throwable e) {
+        LOG.warn("Zone " + main.cdeName + ": could not close audit writer", e);
+    }
+
+//  Pas de close() en fin de cycle daemon : le Main et son writer servent au
+//  cycle suivant. Pas de shutdown hook dans initProcessors() : celui
+//  d'AuditWriter est enregistré une seule fois par JVM.
+//  Workers parallèles (PERF_PARALLEL_BRANCHES.java) : chaque AuditHandler de
+//  worker a son AuditWriter ; processBranch() appelle flush() avant commit()
+//  et close() dans son finally (le worker est jeté en fin de branche).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ P00_ICOR_00_Config.java          ║ +5 paramètres audit.*                     ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ AuditWriter.java                 ║ NOUVEAU : file bornée + thread + batch    ║
+  ║                                  ║ flush borné, 1 shutdown hook par JVM      ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ AuditHandler.java                ║ write() via AuditWriter +flush() +close() ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ Main.java                        ║ flush() avant commit                      ║
+  ║                                  ║ close() quand le Main est jeté            ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Chemin critique : 1 écriture DB par entrée d'audit → 1 offer() en mémoire.
+*/
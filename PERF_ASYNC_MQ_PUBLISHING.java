@@ -0,0 +1,631 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : PUBLICATION MQ ASYNCHRONE PAR LOTS (FENÊTRE BORNÉE)          ║
+// ║        W messages par transaction MQ, statut DB après le commit MQ         ║
+// ║        mq.inflight.window=0 → envoi synchrone actuel                       ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  PaymentProcessor envoie chaque message SWIFT par IMessageMqService puis
+//  passe au suivant : débit max = 1 / (latence put + commit MQ).
+//
+//  APRÈS : MqPublisher, un thread dédié, lit une file bornée de messages
+//  construits, fait jusqu'à W put sous syncpoint, puis UN commit MQ.
+//  Pendant ce temps le thread principal continue à construire les paiements
+//  suivants. La file bornée (2 x W) sert de back-pressure : si MQ ralentit,
+//  la construction attend.
+//
+//  GARANTIE : un paiement n'est JAMAIS marqué envoyé sans message délivré.
+//   - Le statut DB (updateStatuses → STATUS_DELV) n'est écrit qu'APRÈS le
+//     commit MQ du lot qui contient le message.
+//   - Échec put/commit MQ → backout du lot entier ; aucun statut écrit, les
+//     paiements restent "nouveaux" et repartent au run suivant.
+//   - Les lots commités sur MQ AVANT l'échec ont leurs statuts DELV écrits
+//     ET commités en DB avant que l'échec remonte au rollback de Main :
+//     sinon ce rollback les annulerait et le run suivant les renverrait
+//     (doublon de paiement SWIFT).
+//   - Cas inverse (crash entre commit MQ et commit DB) : message délivré,
+//     statut non écrit → renvoyé au run suivant avec un nouveau numéro de
+//     séquence. C'est le même risque qu'aujourd'hui entre send et commit DB ;
+//     la fenêtre est simplement plus large (1 lot au lieu d'1 message).
+//
+//  Connexions : le publisher ouvre SA connexion MQ (openConnection() de
+//  PERF_PARALLEL_BRANCHES.java) et la ferme en fin de thread ; les put et
+//  commit de son unité de travail ne se mélangent donc jamais avec les envois
+//  synchrones de la connexion principale. La connexion JDBC n'est PAS
+//  partagée : le publisher dépose les MSG_KEY confirmés dans une file, et
+//  c'est le thread principal qui écrit les statuts (drainConfirmed).
+//
+//  Arrêt sur échec : au premier échec (y compris Error / RuntimeException),
+//  le thread fait backout, mémorise l'échec et s'arrête. submit() et close()
+//  ne bloquent jamais sur un thread mort : ils relancent l'échec.
+//
+//  FICHIERS MODIFIÉS : 6
+//  ─────────────────
+//  1. P00_ICOR_00_Config.java        → +mqInflightWindow
+//  2. IMessageMqService.java         → +sendInTransaction() +commit() +backout()
+//  3. MqPublisher.java (NOUVEAU)     → thread de publication
+//  4. PaymentProcessor.java          → envoi via MqPublisher si window > 0
+//  5. InMemoryMessageMqService.java (NOUVEAU) → stand-in sans broker
+//  6. MqPublisherFailureCheck.java (NOUVEAU, src/test) → pas de doublon sur échec
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : P00_ICOR_00_Config.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** Messages par transaction MQ. 0 = envoi synchrone (actuel). */
+    public int mqInflightWindow = 0;
+
+    this.mqInflightWindow = Integer.parseInt(props.getProperty("mq.inflight.window", "0"));
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : IMessageMqService.java
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Implémentation IBM MQ : put avec MQPMO_SYNCPOINT, puis
+//  queueManager.commit() / queueManager.backout().
+
+    /**
+     * Dépose un message sous syncpoint. Visible seulement après commit().
+     */
+    void sendInTransaction(String message) throws PaymentException;
+
+    void commit() throws PaymentException;
+
+    void backout() throws PaymentException;
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : MqPublisher.java (NOUVEAU — package process, à côté de PaymentProcessor)
+// ════════════════════════════════════════════════════════════════════════════════
+
+package com.bnpparibas.atlanticc.ipmt.process;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publie les messages SWIFT sur MQ par lots de window messages, sur son propre
+ * thread et sa propre connexion MQ. Les MSG_KEY ne sont confirmés qu'après le
+ * commit MQ de leur lot. S'arrête au premier échec.
+ */
+class MqPublisher implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MqPublisher.class);
+
+    /** Marqueur de fin de file. */
+    private static final String[] POISON = new String[0];
+
+    /** Intervalle de vérification de l'état du thread quand la file est pleine. */
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private final IMessageMqService connection;
+    private final int window;
+    private final BlockingQueue<String[]> queue;
+    private final ConcurrentLinkedQueue<String> confirmed = new ConcurrentLinkedQueue<>();
+    private final AtomicLong failedMessages = new AtomicLong();
+    private final Thread thread;
+
+    private volatile PaymentException failure;
+
+    /**
+     * @param mqService service MQ du run ; le publisher ouvre sa propre connexion
+     */
+    MqPublisher(IMessageMqService mqService, int window) throws PaymentException {
+        this.connection = mqService.openConnection();
+        this.window = window;
+        this.queue = new ArrayBlockingQueue<>(2 * window);
+        this.thread = new Thread(this::run, "mq-publisher");
+        this.thread.start();
+    }
+
+    /**
+     * Met un message en file. Attend si la fenêtre est pleine ; échoue dès
+     * que le thread de publication est arrêté.
+     */
+    void submit(String msgKey, String message) throws PaymentException {
+        offer(new String[]{msgKey, message}, msgKey);
+    }
+
+    /**
+     * MSG_KEY dont le message est commité sur MQ depuis le dernier appel.
+     */
+    List<String> drainConfirmed() {
+        List<String> msgKeys = new ArrayList<>();
+        String msgKey;
+        while ((msgKey = this.confirmed.poll()) != null) {
+            msgKeys.add(msgKey);
+        }
+        return msgKeys;
+    }
+
+    long getFailedMessages() {
+        return this.failedMessages.get();
+    }
+
+    /**
+     * Publie ce qui reste en file et attend la fin du thread. Relance le
+     * premier échec de publication.
+     */
+    @Override
+    public void close() throws PaymentException {
+        try {
+            if (this.thread.isAlive()) {
+                offer(POISON, "end of queue");
+            }
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.thread.interrupt();
+            throw new PaymentException("Interrupted while flushing MQ publisher", e);
+        } finally {
+            // Messages jamais publiés (thread arrêté sur échec) : restent "nouveaux"
+            this.queue.remove(POISON);
+            this.failedMessages.addAndGet(this.queue.size());
+            this.queue.clear();
+        }
+        if (this.failure != null) {
+            throw this.failure;
+        }
+    }
+
+    private void offer(String[] entry, String what) throws PaymentException {
+        try {
+            while (!this.queue.offer(entry, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                if (!this.thread.isAlive()) {
+                    throw stopped(what);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentException("Interrupted while queuing " + what, e);
+        }
+        // Thread arrêté pendant qu'on déposait : l'entrée ne sera jamais lue
+        if (this.failure != null) {
+            throw stopped(what);
+        }
+    }
+
+    private PaymentException stopped(String what) {
+        return this.failure != null
+                ? this.failure
+                : new PaymentException("MQ publisher stopped, could not queue " + what);
+    }
+
+    private void run() {
+        List<String[]> batch = new ArrayList<>(this.window);
+        try {
+            while (true) {
+                String[] first = this.queue.take();
+                if (first == POISON) {
+                    return;
+                }
+                batch.add(first);
+                // Complète le lot avec ce qui est déjà en file, sans attendre
+                this.queue.drainTo(batch, this.window - 1);
+                boolean last = batch.remove(POISON);
+                publish(batch);
+                batch.clear();
+                if (last) {
+                    return;
+                }
+            }
+        } catch (Throwable e) {
+            this.failedMessages.addAndGet(batch.size());
+            LOG.error("MQ publisher stopped, backing out batch of " + batch.size() + " messages", e);
+            backout();
+            this.failure = e instanceof PaymentException
+                    ? (PaymentException) e
+                    : new PaymentException("MQ publisher stopped", e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            this.connection.closeConnection();
+        }
+    }
+
+    private void publish(List<String[]> batch) throws PaymentException {
+        for (String[] entry : batch) {
+            this.connection.sendInTransaction(entry[1]);
+        }
+        this.connection.commit();
+        for (String[] entry : batch) {
+            this.confirmed.add(entry[0]);
+        }
+    }
+
+    private void backout() {
+        try {
+            this.connection.backout();
+        } catch (Throwable e) {
+            LOG.error("Could not back out MQ batch", e);
+        }
+    }
+}
+
+//  ⚠️ Si le constructeur de PaymentException n'accepte qu'une Exception en
+//     cause, envelopper l'Error : new PaymentException(..., new Exception(e)).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : PaymentProcessor.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    private MqPublisher mqPublisher;
+
+// ── 4a. Envoi ──
+
+    // AVANT :
+    this.mqService.sendMessage(swiftMessage);
+    this.sqlHandler.updateStatus(payment.getMsgKey(), STATUS_DELV, null);
+
+    // APRÈS :
+    if (this.mqPublisher != null) {
+        this.mqPublisher.submit(payment.getMsgKey(), swiftMessage);
+        applyConfirmedStatuses();
+    } else {
+        this.mqService.sendMessage(swiftMessage);
+        this.sqlHandler.updateStatus(payment.getMsgKey(), STATUS_DELV, null);
+    }
+
+    private void applyConfirmedStatuses() throws PaymentException {
+        List<String> msgKeys = this.mqPublisher.drainConfirmed();
+        if (!msgKeys.isEmpty()) {
+            this.sqlHandler.updateStatuses(msgKeys, STATUS_DELV, null);
+        }
+    }
+
+// ── 4b. Autour de la boucle d'envoi existante ──
+//   Mode liste comme mode flux (processPaymentsByChunk() de
+//   PERF_STREAMING_PAYMENTS.java) : la boucle d'envoi tourne une fois par
+//   liste traitée, donc le publisher est ouvert puis fermé pour chaque lot.
+//   Sortie normale : tous les messages du lot sont commités sur MQ et leurs
+//   statuts écrits, puis le commit DB du lot se fait comme aujourd'hui.
+//   Sortie sur échec (publisher ou boucle) : commitConfirmedAfterFailure()
+//   commite en DB les statuts des lots déjà commités sur MQ, puis l'échec
+//   d'origine remonte au catch de process() et à son rollback, qui n'a plus
+//   rien à annuler pour ces messages.
+
+    // APRÈS (encadrement de la boucle d'envoi) :
+    int window = P00_ICOR_00_Config.getInstance().mqInflightWindow;
+    if (window > 0) {
+        this.mqPublisher = new MqPublisher(this.mqService, window);
+    }
+    boolean published = false;
+    try {
+        // ... boucle d'envoi existante
+        if (this.mqPublisher != null) {
+            this.mqPublisher.close();
+            applyConfirmedStatuses();
+        }
+        published = true;
+    } finally {
+        if (this.mqPublisher != null && !published) {
+            commitConfirmedAfterFailure();
+        }
+        this.mqPublisher = null;
+    }
+
+// ── 4c. commitConfirmedAfterFailure() ──
+
+    /**
+     * Envoi en échec : publie ce qui reste en file, puis écrit ET commite les
+     * statuts DELV des messages déjà commités sur MQ, avant que l'échec
+     * remonte au rollback de process(). Ne lève rien : c'est l'échec
+     * d'origine qui remonte.
+     */
+    private void commitConfirmedAfterFailure() {
+        try {
+            this.mqPublisher.close();
+        } catch (PaymentException e) {
+            LOG.error("MQ publisher stopped: " + e.getMessage());
+        }
+        List<String> msgKeys = this.mqPublisher.drainConfirmed();
+        if (msgKeys.isEmpty()) {
+            return;
+        }
+        try {
+            this.sqlHandler.updateStatuses(msgKeys, STATUS_DELV, null);
+            this.auditHandler.flush();
+            this.fileService.flush();
+            this.sqlHandler.commit();
+        } catch (Exception e) {
+            LOG.error("Could not commit DELV status of " + msgKeys.size()
+                    + " messages already committed on MQ, they will be sent again: " + msgKeys, e);
+        }
+    }
+
+//  ⚠️ Ce commit valide toute la transaction en cours du lot, comme le commit
+//     par lot de processPaymentsByChunk() (PERF_STREAMING_PAYMENTS.java) :
+//     statuts DELV confirmés, rejets de contrôle, audit. Les paiements soumis
+//     mais non confirmés n'ont aucun statut écrit et restent "nouveaux".
+//  ⚠️ Flush audit + fichiers avant commit : même règle que process()
+//     (PERF_ASYNC_AUDIT_WRITER.java, PERF_NIO_FILE_OUTPUT.java), d'où 4d.
+//  ⚠️ Reste le crash du process entre commit MQ et commit DB (cf. GARANTIE) :
+//     aucune exception à attraper, la fenêtre est d'un lot au plus.
+
+// ── 4d. Constructeur : fileService de Main ──
+
+    private final IFileService fileService;
+
+    // AVANT (initProcessors() et constructeur de worker, PERF_PARALLEL_BRANCHES.java) :
+    this.paymentProcessor = new PaymentProcessor(this.parameter, this.branches, sqlHandler, mqService,
+            this.auditHandler, this.paymentController);
+
+    // APRÈS :
+    this.paymentProcessor = new PaymentProcessor(this.parameter, this.branches, sqlHandler, mqService,
+            this.auditHandler, this.paymentController, this.fileService);
+
+    // Constructeur de PaymentProcessor : + IFileService fileService en dernier
+    // paramètre, + this.fileService = fileService;
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 5 : InMemoryMessageMqService.java (NOUVEAU — package mq, à côté de l'implémentation MQ)
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Stand-in sans broker pour mesurer le débit et vérifier la sémantique
+//  d'échec : latence simulée par put et par commit, échec injectable sur
+//  le N-ième commit. openConnection() retourne une connexion qui partage
+//  les messages commités, les messages ITL et le compteur de commits, avec
+//  sa propre transaction en cours (comme un 2e MQQueueManager).
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * IMessageMqService en mémoire. Les messages commités sont lisibles par
+ * getCommittedMessages() ; un backout vide la transaction en cours.
+ */
+public class InMemoryMessageMqService implements IMessageMqService {
+
+    /** État partagé par toutes les connexions d'un même "gestionnaire de files". */
+    private static final class Broker {
+        final List<String> committed = Collections.synchronizedList(new ArrayList<>());
+        final Queue<String> itlMessages = new ConcurrentLinkedQueue<>();
+        final AtomicInteger commits = new AtomicInteger();
+        volatile int failOnCommit = -1;
+    }
+
+    private final Broker broker;
+    private final List<String> inTransaction = new ArrayList<>();
+    private final long putLatencyMicros;
+    private final long commitLatencyMicros;
+    private volatile boolean closed;
+
+    public InMemoryMessageMqService(long putLatencyMicros, long commitLatencyMicros) {
+        this(new Broker(), putLatencyMicros, commitLatencyMicros);
+    }
+
+    private InMemoryMessageMqService(Broker broker, long putLatencyMicros, long commitLatencyMicros) {
+        this.broker = broker;
+        this.putLatencyMicros = putLatencyMicros;
+        this.commitLatencyMicros = commitLatencyMicros;
+    }
+
+    /** Le commit numéro n (à partir de 1, toutes connexions confondues) échouera. */
+    public void failOnCommit(int n) {
+        this.broker.failOnCommit = n;
+    }
+
+    public List<String> getCommittedMessages() {
+        return new ArrayList<>(this.broker.committed);
+    }
+
+    /** Message ITL (ACK/NACK) à retourner par la lecture de file. */
+    public void addItlMessage(String message) {
+        this.broker.itlMessages.add(message);
+    }
+
+    @Override
+    public void sendMessage(String message) throws PaymentException {
+        sendInTransaction(message);
+        commit();
+    }
+
+    @Override
+    public synchronized void sendInTransaction(String message) throws PaymentException {
+        checkOpen();
+        pause(this.putLatencyMicros);
+        this.inTransaction.add(message);
+    }
+
+    @Override
+    public synchronized void commit() throws PaymentException {
+        checkOpen();
+        pause(this.commitLatencyMicros);
+        if (this.broker.commits.incrementAndGet() == this.broker.failOnCommit) {
+            throw new PaymentException("Simulated MQ commit failure");
+        }
+        this.broker.committed.addAll(this.inTransaction);
+        this.inTransaction.clear();
+    }
+
+    @Override
+    public synchronized void backout() {
+        this.inTransaction.clear();
+    }
+
+    @Override
+    public IMessageMqService openConnection() {
+        return new InMemoryMessageMqService(this.broker, this.putLatencyMicros, this.commitLatencyMicros);
+    }
+
+    /**
+     * Lecture ITL (ACK/NACK) de ResponseProcessor : message suivant, ou null
+     * si la file est vide, comme un get MQ sans attente.
+     */
+    @Override
+    public String readMessage() throws PaymentException {
+        checkOpen();
+        return this.broker.itlMessages.poll();
+    }
+
+    /** Comme une déconnexion MQ : la transaction non commitée est perdue. */
+    @Override
+    public synchronized void closeConnection() {
+        this.inTransaction.clear();
+        this.closed = true;
+    }
+
+    private void checkOpen() throws PaymentException {
+        if (this.closed) {
+            throw new PaymentException("MQ connection closed");
+        }
+    }
+
+    private static void pause(long micros) {
+        if (micros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+    }
+}
+
+//  ⚠️ readMessage() : aligner le nom et la signature sur la lecture ITL de
+//     IMessageMqService appelée par processAckNackFromItl(). Si l'interface
+//     en déclare plusieurs, chacune lit this.broker.itlMessages de la même
+//     façon (null, ou liste vide, quand la file est vide).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 6 : MqPublisherFailureCheck.java (NOUVEAU, src/test/java, package process)
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Lancement : java -cp ... MqPublisherFailureCheck [window] [nbPaiements] [commitEnEchec]
+//  Rejoue la séquence de 4b sur le stand-in : le commit MQ numéro N échoue
+//  (N-1 lots déjà commités), les statuts confirmés sont commités, puis un
+//  2e run renvoie les paiements restés "nouveaux". La "base" est l'ensemble
+//  des MSG_KEY en STATUS_DELV commités. Vérifie qu'aucun message n'est
+//  commité deux fois sur MQ et que chaque paiement est envoyé exactement
+//  une fois à la fin des deux runs.
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.bnpparibas.atlanticc.ipmt.mq.InMemoryMessageMqService;
+
+public class MqPublisherFailureCheck {
+
+    public static void main(String[] args) throws Exception {
+        int window = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int nbPayments = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int failingCommit = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        InMemoryMessageMqService mq = new InMemoryMessageMqService(0, 0);
+        Set<String> delivered = new HashSet<>();
+
+        mq.failOnCommit(failingCommit);
+        try {
+            run(mq, window, nbPayments, delivered);
+            throw new AssertionError("Run 1 should fail on MQ commit " + failingCommit);
+        } catch (PaymentException expected) {
+            System.out.println("Run 1 failed as expected: " + expected.getMessage());
+        }
+        int sentAfterRun1 = mq.getCommittedMessages().size();
+        // Un lot part dès qu'il y a un message en file : lots de 1 à window messages
+        check(sentAfterRun1 >= failingCommit - 1 && sentAfterRun1 < nbPayments,
+                "run 1 committed " + sentAfterRun1 + " messages on MQ");
+        check(delivered.size() == sentAfterRun1,
+                "run 1 committed " + delivered.size() + " DELV statuses for " + sentAfterRun1 + " messages");
+
+        mq.failOnCommit(-1);
+        run(mq, window, nbPayments, delivered);
+
+        List<String> sent = mq.getCommittedMessages();
+        check(new LinkedHashSet<>(sent).size() == sent.size(), "duplicate message on MQ: " + sent);
+        check(sent.size() == nbPayments, sent.size() + " messages sent for " + nbPayments + " payments");
+        check(delivered.size() == nbPayments, delivered.size() + " DELV statuses for " + nbPayments + " payments");
+        System.out.println("OK: " + nbPayments + " payments, each sent once");
+    }
+
+    /**
+     * Un run : paiements P1..Pn pas encore en DELV, envoi par MqPublisher,
+     * statuts appliqués comme 4a/4b (commit DB y compris sur échec).
+     */
+    private static void run(InMemoryMessageMqService mq, int window, int nbPayments, Set<String> delivered)
+            throws PaymentException {
+        List<String> pending = new ArrayList<>();
+        MqPublisher publisher = new MqPublisher(mq, window);
+        boolean published = false;
+        try {
+            for (int i = 1; i <= nbPayments; i++) {
+                String msgKey = "P" + i;
+                if (!delivered.contains(msgKey)) {
+                    publisher.submit(msgKey, msgKey);
+                    pending.addAll(publisher.drainConfirmed());
+                }
+            }
+            publisher.close();
+            pending.addAll(publisher.drainConfirmed());
+            delivered.addAll(pending);      // commit DB de fin de lot
+            published = true;
+        } finally {
+            if (!published) {
+                try {
+                    publisher.close();
+                } catch (PaymentException e) {
+                    // échec d'origine déjà en cours de remontée
+                }
+                pending.addAll(publisher.drainConfirmed());
+                delivered.addAll(pending);  // commitConfirmedAfterFailure()
+            }
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+        System.out.println("  " + message);
+    }
+}
+
+//  Attendu avec les valeurs par défaut (window 2, 10 paiements, 3e commit en
+//  échec) : run 1 commite 2 lots (P1..P4 au plus) sur MQ et en DELV puis
+//  échoue ; run 2 n'envoie que les suivants. Avec l'ancien finally (statuts écrits mais non
+//  commités, puis rollback de Main), run 2 renvoyait ces 2 lots : doublons.
+//  ⚠️ Le check ne passe par la boucle réelle que via MqPublisher : la
+//     "base" est simulée, l'ordre des appels est celui de 4b / 4c.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ P00_ICOR_00_Config.java          ║ +mqInflightWindow                         ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ IMessageMqService.java           ║ +sendInTransaction() +commit() +backout() ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ MqPublisher.java                 ║ NOUVEAU : thread + connexion + file bornée║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentProcessor.java            ║ submit() + statuts après commit MQ,       ║
+  ║                                  ║ commités avant de relancer un échec       ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ InMemoryMessageMqService.java    ║ NOUVEAU : stand-in MQ sans broker         ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ MqPublisherFailureCheck.java     ║ NOUVEAU : échec au N-ième commit, 0 doublon║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Débit MQ : 1 / (put + commit)  →  W / (W x put + commit)
+  Exemple : put 1 ms, commit 10 ms, W = 50 → ~90 msg/s → ~830 msg/s.
+*/
@@ -0,0 +1,265 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : ACK/NACK ITL PAR LOTS (LOOKUP MULTI-LIGNES)                  ║
+// ║        N messages ou T ms → 1 lookup UNION ALL + 1 batch UPDATE            ║
+// ║        + 1 commit par lot. itl.batch.size=0 → comportement actuel.         ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  processItlAck() fait, pour CHAQUE ACK/NACK lu sur MQ :
+//     getMsgKeyForItl(branches, day, seq)     → 1 aller-retour
+//     statut noté puis appliqué en batch      (PERF_BATCH_STATUS_UPDATE.java)
+//  Après une longue coupure ITL, le rattrapage du matin = des milliers de
+//  lookups unitaires.
+//
+//  APRÈS : la boucle de lecture MQ existante de processAckNackFromItl() ne
+//  change pas ; elle accumule les ACK décodés et, tous les N messages ou
+//  T ms, applyItlAcks() :
+//     - résout tous les (day, seq) du lot en UNE requête : la requête
+//       unitaire SELECT_KEY_USING_MSG_DAY_AND_SEQ + buildInClause(branches),
+//       inchangée, exécutée une fois par couple dans un UNION ALL
+//       (buildBulkQuery() / fetchBulk() de PERF_BULK_ENRICHMENT.java) ;
+//     - applique les statuts avec updateStatuses() ;
+//     - commit la transaction DB une fois par lot.
+//  Le résultat est recollé à chaque couple par BULK_IDX : aucune valeur
+//  (day, seq) n'est relue ni reconvertie depuis la base.
+//
+//  ORDRE et IDEMPOTENCE :
+//   - Les messages d'un lot sont traités dans l'ordre de lecture MQ, par le
+//     code existant de processItlAck() (partie après la recherche, déplacée
+//     dans applyItlAck()).
+//   - La recherche ne trouve un message qu'en STATUS_DELV / STATUS_FAIL :
+//     c'est elle qui décide, dans l'existant, si un 2e ACK/NACK s'applique.
+//     Dans un lot, un MSG_KEY déjà en attente (doublon, ou ACK puis NACK)
+//     fait appliquer les statuts en attente puis refaire la recherche
+//     unitaire, comme dans PERF_BATCH_STATUS_UPDATE.java → le 2e message voit
+//     exactement ce qu'il verrait aujourd'hui.
+//   - Entre lots : le statut du lot précédent est commité, même règle.
+//   - La lecture MQ et son acquittement restent ceux de la boucle existante ;
+//     seul un commit DB par lot est ajouté.
+//
+//  FICHIERS MODIFIÉS : 5
+//  ─────────────────
+//  1. P00_ICOR_00_Config.java   → +itlBatchSize +itlBatchWaitMs
+//  2. PaymentSqlQueries.java    → AUCUNE MODIFICATION (SELECT_KEY_USING_MSG_DAY_AND_SEQ réutilisée)
+//  3. IPaymentSqlHandler.java   → +getMsgKeysForItl()
+//  4. PaymentSqlHandler.java    → implémentation (fetchBulk)
+//  5. ResponseProcessor.java    → processItlAck() découpé, +applyItlAcks()
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : P00_ICOR_00_Config.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** ACK/NACK ITL par lot. 0 = un message à la fois (actuel). */
+    public int itlBatchSize = 0;
+
+    /** Durée max d'accumulation d'un lot, en ms. */
+    public long itlBatchWaitMs = 500;
+
+    this.itlBatchSize = Integer.parseInt(props.getProperty("itl.batch.size", "0"));
+    this.itlBatchWaitMs = Long.parseLong(props.getProperty("itl.batch.wait.ms", "500"));
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : PaymentSqlQueries.java — AUCUNE MODIFICATION
+// ════════════════════════════════════════════════════════════════════════════════
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : IPaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Résout plusieurs (day, seq) ITL en MSG_KEY, avec la même requête et les
+     * mêmes filtres que getMsgKeyForItl().
+     *
+     * @param daySeqs couples (day, seq), clés de la Map retournée
+     * @return MSG_KEY par couple ; null si aucun message ne correspond
+     */
+    Map<List<String>, String> getMsgKeysForItl(List<String> branches, List<List<String>> daySeqs) throws PaymentException;
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : PaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// ── 4a. getMsgKeysForItl() ──
+//   Requête unitaire et paramètres de getMsgKeyForItl() :
+//     SELECT_KEY_USING_MSG_DAY_AND_SEQ + buildInClause(branches.size())
+//     {day, seq, STATUS_DELV, STATUS_FAIL, branches...}
+//   1re ligne par couple, comme getMsgKeyForItl() (if (rs.next())).
+
+    @Override
+    public Map<List<String>, String> getMsgKeysForItl(List<String> branches, List<List<String>> daySeqs)
+            throws PaymentException {
+        String unitQuery = SELECT_KEY_USING_MSG_DAY_AND_SEQ + buildInClause(branches.size());
+        Object[] branchParams = toParams(branches);
+        Map<List<String>, String> msgKeys = new HashMap<>();
+        for (List<List<String>> chunk : chunks(new LinkedHashSet<>(daySeqs))) {
+            Map<List<String>, List<String>> rows;
+            try {
+                rows = fetchBulk("SELECT_KEY_USING_MSG_DAY_AND_SEQ", unitQuery, chunk,
+                        daySeq -> concat(new Object[]{daySeq.get(0), daySeq.get(1), STATUS_DELV, STATUS_FAIL},
+                                branchParams),
+                        rs -> rs.getString("MSG_KEY"));
+            } catch (SQLException e) {
+                throw new PaymentException("SQLError: Could not get MSG_KEY of " + chunk.size()
+                        + " ITL messages with query " + SELECT_KEY_USING_MSG_DAY_AND_SEQ, e);
+            }
+            for (List<String> daySeq : chunk) {
+                msgKeys.put(daySeq, first(rows.get(daySeq)));
+            }
+        }
+        return msgKeys;
+    }
+
+//  fetchBulk(), first(), chunks() : PERF_BULK_ENRICHMENT.java
+//  (lots de ENRICH_CHUNK_SIZE couples). Ajouter l'import java.util.LinkedHashSet.
+
+// ── 4b. concat() : binds de la clé suivis des binds des branches ──
+
+    private static Object[] concat(Object[] first, Object[] second) {
+        Object[] all = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        return all;
+    }
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 5 : ResponseProcessor.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// ── 5a. Découper processItlAck() ──
+//   Extract method pur, comportement unitaire inchangé :
+//     - le décodage existant du message (day, seq, statut, raison) → parseItlAck()
+//     - tout ce qui suit la recherche du MSG_KEY (message non trouvé, audit,
+//       statut noté) → applyItlAck(ack, msgKey), déplacé tel quel, les
+//       variables locales day/seq/status/reason étant lues sur ack.
+
+    /** ACK/NACK ITL décodé. */
+    private static final class ItlAck {
+        final String day;
+        final String seq;
+        final String status;
+        final String reason;
+
+        ItlAck(String day, String seq, String status, String reason) {
+            this.day = day;
+            this.seq = seq;
+            this.status = status;
+            this.reason = reason;
+        }
+
+        /** Clé du lookup groupé : couple (day, seq), tel que lu dans le message. */
+        List<String> daySeq() {
+            return Arrays.asList(this.day, this.seq);
+        }
+    }
+
+    // AVANT (état après PERF_BATCH_STATUS_UPDATE.java) :
+    private void processItlAck(String message) throws PaymentException {
+        // ... (décodage existant : day, seq, status, reason)
+        String msgKey = this.sqlHandler.getMsgKeyForItl(this.branches, day, seq);
+        if (msgKey != null && this.pendingStatuses.containsKey(msgKey)) {
+            flushPendingStatuses();
+            msgKey = this.sqlHandler.getMsgKeyForItl(this.branches, day, seq);
+        }
+        // ... (suite existante : message non trouvé, audit, statut noté)
+    }
+
+    // APRÈS :
+    private void processItlAck(String message) throws PaymentException {
+        ItlAck ack = parseItlAck(message);
+        applyItlAck(ack, this.sqlHandler.getMsgKeyForItl(this.branches, ack.day, ack.seq));
+    }
+
+    private ItlAck parseItlAck(String message) {
+        // ... (décodage existant de processItlAck, déplacé)
+        return new ItlAck(day, seq, status, reason);
+    }
+
+    private void applyItlAck(ItlAck ack, String msgKey) throws PaymentException {
+        if (msgKey != null && this.pendingStatuses.containsKey(msgKey)) {
+            flushPendingStatuses();
+            msgKey = this.sqlHandler.getMsgKeyForItl(this.branches, ack.day, ack.seq);
+        }
+        // ... (suite existante de processItlAck, déplacée)
+    }
+
+// ── 5b. Application d'un lot ──
+
+    /**
+     * Applique un lot d'ACK/NACK ITL dans l'ordre de lecture : un lookup
+     * groupé, les statuts en batch, puis un commit.
+     */
+    private void applyItlAcks(List<ItlAck> batch) throws PaymentException, SQLException {
+        List<List<String>> daySeqs = new ArrayList<>(batch.size());
+        for (ItlAck ack : batch) {
+            daySeqs.add(ack.daySeq());
+        }
+        Map<List<String>, String> msgKeys = this.sqlHandler.getMsgKeysForItl(this.branches, daySeqs);
+        for (ItlAck ack : batch) {
+            applyItlAck(ack, msgKeys.get(ack.daySeq()));
+        }
+        flushPendingStatuses();
+        this.sqlHandler.commit();
+        batch.clear();
+    }
+
+// ── 5c. processAckNackFromItl() : la boucle existante alimente les lots ──
+
+    // AVANT :
+    while (/* message MQ disponible */) {
+        processItlAck(message);
+    }
+    flushPendingStatuses();
+
+    // APRÈS :
+    P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+    List<ItlAck> batch = new ArrayList<>();
+    long batchStart = System.currentTimeMillis();
+    while (/* message MQ disponible */) {
+        if (config.itlBatchSize <= 0) {
+            processItlAck(message);
+        } else {
+            batch.add(parseItlAck(message));
+            if (batch.size() >= config.itlBatchSize
+                    || System.currentTimeMillis() - batchStart >= config.itlBatchWaitMs) {
+                applyItlAcks(batch);
+                batchStart = System.currentTimeMillis();
+            }
+        }
+    }
+    if (!batch.isEmpty()) {
+        applyItlAcks(batch);
+    }
+    flushPendingStatuses();
+
+// Ajouter les imports :
+import java.util.Arrays;
+import java.util.Map;
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ P00_ICOR_00_Config.java          ║ +itlBatchSize +itlBatchWaitMs             ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlQueries.java           ║ AUCUNE MODIFICATION                       ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ IPaymentSqlHandler.java          ║ +getMsgKeysForItl()                       ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandler.java           ║ +getMsgKeysForItl() (fetchBulk) +concat() ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ ResponseProcessor.java           ║ +ItlAck +parseItlAck() +applyItlAck()     ║
+  ║                                  ║ +applyItlAcks(), lots dans la boucle MQ   ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Rattrapage de N ACK : N lookups + N commits implicites en fin de run
+                     →  ~ceil(N / 64) lookups + 1 batch UPDATE + 1 commit par lot
+*/
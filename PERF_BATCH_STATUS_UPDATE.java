@@ -0,0 +1,255 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : MISES À JOUR DE STATUT EN BATCH JDBC                         ║
+// ║        updatePendingSwiftMsgtoFailInDB + ACK/NACK de ResponseProcessor     ║
+// ║        UPDATE_STATUS inchangée, exécutée par addBatch / executeBatch       ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  updatePendingSwiftMsgtoFailInDB() sélectionne les MSG_KEY en STATUS_DELV
+//  puis appelle updateStatus(msgKey, STATUS_FAIL, "TIME_OUT") une fois par
+//  ligne. Après une panne MQ : des milliers de lignes = des milliers
+//  d'allers-retours. Même chose pour chaque ACK/NACK de processItlAck().
+//
+//  APRÈS : updateStatuses(msgKeys, status, reason) envoie UPDATE_STATUS en
+//  batch JDBC, par paquets de 500 → 1 aller-retour par paquet.
+//
+//  Pourquoi addBatch plutôt qu'un seul UPDATE ... WHERE STATUS = ? AND
+//  BRANCH IN (...) ? UPDATE_STATUS est la seule requête qui écrit un statut :
+//  la rejouer en batch garantit exactement les mêmes colonnes mises à jour
+//  (raison, date, ...) sans dupliquer sa logique dans une 2e constante.
+//
+//  Le nombre de NACK retourné reste exact : on compte les lignes réellement
+//  mises à jour (executeBatch), et SUCCESS_NO_INFO compte pour 1.
+//
+//  FICHIERS MODIFIÉS : 4
+//  ─────────────────
+//  1. IPaymentSqlHandler.java   → +updateStatuses()
+//  2. PaymentSqlHandler.java    → +updateStatuses(), params de updateStatus() extraits,
+//                                 updatePendingSwiftMsgtoFailInDB()
+//  3. ResponseProcessor.java    → ACK/NACK accumulés puis appliqués en batch
+//  4. PaymentSqlQueries.java    → AUCUNE MODIFICATION
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : IPaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Met le même statut sur plusieurs messages, en batch JDBC.
+     *
+     * @return le nombre de messages mis à jour
+     */
+    int updateStatuses(List<String> msgKeys, String status, String reason) throws PaymentException;
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : PaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// Ajouter les imports :
+import java.sql.Statement;
+import java.sql.Types;
+
+    /** Lignes par executeBatch(). */
+    private static final int STATUS_BATCH_SIZE = 500;
+
+// ── 2a. updateStatus() : extraire le tableau de paramètres ──
+//   L'ordre des ? de UPDATE_STATUS n'est écrit qu'à un endroit : le tableau
+//   "params" construit dans updateStatus(). Il est déplacé TEL QUEL dans
+//   updateStatusParams() ; updateStatus() et updateStatuses() l'appellent
+//   → même ordre de binding par construction.
+
+    // AVANT (dans updateStatus(msgKey, status, reason)) :
+    Object[] params = { /* tableau existant, construit depuis msgKey, status, reason */ };
+
+    // APRÈS :
+    Object[] params = updateStatusParams(msgKey, status, reason);
+
+    /** Paramètres de UPDATE_STATUS, dans l'ordre de ses ? (tableau existant de updateStatus(), déplacé). */
+    private static Object[] updateStatusParams(String msgKey, String status, String reason) {
+        return new Object[]{ /* tableau existant, inchangé */ };
+    }
+
+// ── 2b. updateStatuses() ──
+
+    @Override
+    public int updateStatuses(List<String> msgKeys, String status, String reason) throws PaymentException {
+        int updated = 0;
+        try (PreparedStatement ps = this.liqbatchConnection.prepareStatement(UPDATE_STATUS)) {
+            int pending = 0;
+            for (String msgKey : msgKeys) {
+                bindStatusParameters(ps, updateStatusParams(msgKey, status, reason));
+                ps.addBatch();
+                if (++pending == STATUS_BATCH_SIZE) {
+                    updated += countUpdated(ps.executeBatch());
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                updated += countUpdated(ps.executeBatch());
+            }
+        } catch (SQLException e) {
+            throw new PaymentException("Could not update status to " + status + " for "
+                    + msgKeys.size() + " messages with query " + UPDATE_STATUS, e);
+        }
+        return updated;
+    }
+
+    /**
+     * Paramètres de UPDATE_STATUS : tous des String. Une raison absente est
+     * liée par setNull, pas par une chaîne.
+     */
+    private static void bindStatusParameters(PreparedStatement ps, Object[] parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i] == null) {
+                ps.setNull(i + 1, Types.VARCHAR);
+            } else {
+                ps.setString(i + 1, (String) parameters[i]);
+            }
+        }
+    }
+
+    private static int countUpdated(int[] results) {
+        int count = 0;
+        for (int result : results) {
+            if (result > 0 || result == Statement.SUCCESS_NO_INFO) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+// ── 2c. updatePendingSwiftMsgtoFailInDB() ──
+
+    // AVANT :
+    List<Payment> payments = new ArrayList<>();
+    ...
+    while (rs.next()) {
+        Payment payment = new Payment();
+        payment.setMsgKey(rs.getString("MSG_KEY"));
+        payments.add(payment);
+    }
+    ...
+    for (Payment payment : payments) {
+        this.updateStatus(payment.getMsgKey(), STATUS_FAIL, "TIME_OUT");
+        nack++;
+    }
+    return nack;
+
+    // APRÈS :
+    List<String> msgKeys = new ArrayList<>();
+    ...
+    while (rs.next()) {
+        msgKeys.add(rs.getString("MSG_KEY"));
+    }
+    ...
+    return this.updateStatuses(msgKeys, STATUS_FAIL, "TIME_OUT");
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : ResponseProcessor.java — ACK/NACK appliqués en batch
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  processItlAck() ne met plus à jour le statut lui-même : il note
+//  (MSG_KEY → statut, raison). processAckNackFromItl() applique les statuts
+//  notés avec updateStatuses() une fois les messages lus, avant le commit
+//  fait par Main.
+//
+//  Ordre des messages : dans l'existant, getMsgKeyForItl() ne trouve un
+//  message que s'il est en STATUS_DELV ou STATUS_FAIL ; un 2e ACK/NACK pour
+//  un message déjà passé dans un autre statut prend donc la branche "message
+//  non trouvé". Avec des statuts différés, la 2e recherche trouverait encore
+//  le message. Donc : si le MSG_KEY retourné est déjà en attente, on applique
+//  d'abord les statuts en attente puis on refait la recherche → le code
+//  existant qui suit voit exactement ce qu'il voyait avant (statut déjà
+//  écrit, message trouvé ou non). Les doublons sont rares : le batch reste
+//  la règle.
+//  L'audit par message (auditHandler) reste dans processItlAck().
+
+// Ajouter les imports :
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Ajouter le champ :
+
+    /** Statut (statut, raison) en attente par MSG_KEY, dans l'ordre d'arrivée. */
+    private final Map<String, List<String>> pendingStatuses = new LinkedHashMap<>();
+
+// ── 3a. processItlAck() ──
+
+    // AVANT :
+    String msgKey = this.sqlHandler.getMsgKeyForItl(this.branches, day, seq);
+    ...
+    this.sqlHandler.updateStatus(msgKey, status, reason);
+
+    // APRÈS :
+    String msgKey = this.sqlHandler.getMsgKeyForItl(this.branches, day, seq);
+    if (msgKey != null && this.pendingStatuses.containsKey(msgKey)) {
+        flushPendingStatuses();
+        msgKey = this.sqlHandler.getMsgKeyForItl(this.branches, day, seq);
+    }
+    ...
+    this.pendingStatuses.put(msgKey, Arrays.asList(status, reason));
+
+// ── 3b. processAckNackFromItl() ──
+
+    // AVANT :
+    nbNack = this.sqlHandler.updatePendingSwiftMsgtoFailInDB(this.branches);
+    ...
+    while (/* message MQ disponible */) {
+        processItlAck(message);
+    }
+
+    // APRÈS :
+    nbNack = this.sqlHandler.updatePendingSwiftMsgtoFailInDB(this.branches);
+    ...
+    while (/* message MQ disponible */) {
+        processItlAck(message);
+    }
+    flushPendingStatuses();
+
+// ── 3c. flushPendingStatuses() ──
+//   Un MSG_KEY n'est jamais deux fois en attente (cf. 3a) : regrouper par
+//   (statut, raison) ne change pas le résultat. La clé est la liste
+//   (statut, raison), comme les clés composées de PERF_BULK_ENRICHMENT.java :
+//   une raison null reste null, elle n'est pas convertie en texte.
+
+    private void flushPendingStatuses() throws PaymentException {
+        Map<List<String>, List<String>> msgKeysByStatus = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : this.pendingStatuses.entrySet()) {
+            msgKeysByStatus.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(entry.getKey());
+        }
+        this.pendingStatuses.clear();
+        for (Map.Entry<List<String>, List<String>> entry : msgKeysByStatus.entrySet()) {
+            String status = entry.getKey().get(0);
+            String reason = entry.getKey().get(1);
+            int updated = this.sqlHandler.updateStatuses(entry.getValue(), status, reason);
+            if (updated != entry.getValue().size()) {
+                LOG.warn(updated + "/" + entry.getValue().size() + " messages updated to " + status);
+            }
+        }
+    }
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ IPaymentSqlHandler.java          ║ +updateStatuses()                         ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandler.java           ║ +updateStatuses() +updateStatusParams()   ║
+  ║                                  ║ +bindStatusParameters() +countUpdated()   ║
+  ║                                  ║ updatePendingSwiftMsgtoFailInDB → batch   ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ ResponseProcessor.java           ║ ACK/NACK accumulés + flushPendingStatuses ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlQueries.java           ║ AUCUNE MODIFICATION                       ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Balayage TIME_OUT : N allers-retours → ceil(N / 500).
+*/
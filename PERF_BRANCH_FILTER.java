@@ -0,0 +1,372 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : FILTRE DE BRANCHES SANS LIMITE D'ARITÉ                       ║
+// ║        IN_LIST (actuel) / ARRAY (1 bind tableau) / STAGING (table GTT)     ║
+// ║        1 texte SQL stable par requête, quel que soit le nb de branches     ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  Le filtre de branches est aujourd'hui "IN (?, ?, ...)" : un bind par
+//  branche, un texte SQL par palier d'arité (PERF_STATEMENT_CACHE.java), et
+//  ORA-01795 au-delà de 1000 éléments sur les zones consolidées.
+//
+//  APRÈS : SqlHandler expose DEUX méthodes qui remplacent le couple
+//  buildInClause(branches.size()) / toParams(branches) aux appels de branches :
+//     branchFilter(branches)  → le fragment SQL à injecter dans le %s
+//     branchParams(branches)  → les paramètres correspondants
+//  Trois modes (branch.filter.mode) :
+//
+//   IN_LIST  "IN (?, ?, ...)"                   n binds   (actuel)
+//   ARRAY    Oracle : "IN (select column_value from table(?))"
+//            H2     : "= ANY(?)"                1 bind (java.sql.Array)
+//   STAGING  "IN (select BRF_CDE_BRANCH from TBP_IPMT_BRANCH_FILTER)"
+//            0 bind ; table temporaire globale Oracle (ON COMMIT PRESERVE ROWS)
+//
+//  IN_LIST au-delà de MAX_IN_LIST_SIZE (PERF_STATEMENT_CACHE.java) bascule
+//  automatiquement en STAGING. ARRAY et STAGING ont UN texte SQL par requête
+//  → un seul curseur partagé, un seul plan, quel que soit le nombre de
+//  branches. Tests H2 : mode ARRAY ("= ANY(?)"), STAGING est propre à Oracle.
+//
+//  STAGING sans commit : la table est chargée dans la transaction en cours
+//  (delete + insert batch) au premier branchFilter() de la connexion, SANS
+//  commit propre — les lignes partent avec le commit du run, comme le reste.
+//  Si la transaction est annulée (rollback()), le chargement l'est aussi :
+//  SqlHandler.rollback() marque alors la table comme à recharger, et le
+//  prochain branchFilter() la recharge. Aucun appel explicite côté Main ni
+//  côté workers : chaque handler charge SES branches sur SA connexion.
+//
+//  Les requêtes NON liées aux branches (msgId / pidDeal de
+//  PERF_BULK_ENRICHMENT.java) restent sur buildInClause() : leurs lots sont
+//  bornés à 64.
+//
+//  FICHIERS MODIFIÉS : 5
+//  ─────────────────
+//  0. DDL                       → +TBP_IPMT_BRANCH_FILTER (GTT)
+//  1. P00_ICOR_00_Config.java   → +branchFilterMode
+//  2. SqlHandler.java           → +branchFilter() +branchParams(), rollback()
+//                                 bindParameters() : support java.sql.Array
+//  3. PaymentSqlHandler.java    → appels de branches migrés
+//  4. PaymentSqlQueries.java    → AUCUNE MODIFICATION (les %s restent)
+//  5. BranchFilterArrayCheck.java (NOUVEAU, src/test) → "= ANY(?)" sur H2, lot paddé
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 0 : DDL (schéma LIQBATCH, Oracle)
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  CREATE GLOBAL TEMPORARY TABLE TBP_IPMT_BRANCH_FILTER (
+      BRF_CDE_BRANCH  VARCHAR2(8) NOT NULL PRIMARY KEY
+  ) ON COMMIT PRESERVE ROWS;
+
+  Contenu propre à chaque session : chaque connexion (principale, workers du
+  pool de PERF_PARALLEL_BRANCHES.java) voit ses propres branches.
+*/
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : P00_ICOR_00_Config.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** IN_LIST (actuel), ARRAY ou STAGING. */
+    public String branchFilterMode = "IN_LIST";
+
+    this.branchFilterMode = props.getProperty("branch.filter.mode", "IN_LIST").trim().toUpperCase();
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : SqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// Ajouter les imports :
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Array;
+
+// Ajouter les constantes / champs :
+
+    private static final String BRANCH_FILTER_TABLE =
+            P00_ICOR_00_Config.getInstance().liqBatchSchema + ".TBP_IPMT_BRANCH_FILTER";
+    private static final String ORACLE_CONNECTION_CLASS = "oracle.jdbc.OracleConnection";
+    private static final String ORACLE_VARCHAR_LIST = "SYS.ODCIVARCHAR2LIST";
+
+    /** Branches chargées dans TBP_IPMT_BRANCH_FILTER sur cette connexion ; null = à (re)charger. */
+    private List<String> stagedBranches;
+    private Boolean oracle;
+
+// ── 2a. Mode effectif ──
+
+    private String branchFilterMode(List<String> branches) {
+        String mode = P00_ICOR_00_Config.getInstance().branchFilterMode;
+        if ("IN_LIST".equals(mode) && paddedInSize(branches.size()) > MAX_IN_LIST_SIZE) {
+            return "STAGING";
+        }
+        return mode;
+    }
+
+// ── 2b. Fragment SQL et paramètres ──
+
+    /**
+     * Fragment à injecter dans le %s des requêtes filtrées par branche.
+     * Ne dépend que du mode et de branches.size() → aucune donnée dans le SQL.
+     * En STAGING, charge la table temporaire si besoin (sans commit).
+     */
+    protected String branchFilter(List<String> branches) throws SQLException {
+        switch (branchFilterMode(branches)) {
+            case "ARRAY":
+                return isOracle() ? "IN (select column_value from table(?))" : "= ANY(?)";
+            case "STAGING":
+                stageBranches(branches);
+                return "IN (select BRF_CDE_BRANCH from " + BRANCH_FILTER_TABLE + ")";
+            default:
+                return buildInClause(branches.size());
+        }
+    }
+
+    /**
+     * Paramètres correspondant à branchFilter(), dans le même ordre.
+     */
+    protected Object[] branchParams(List<String> branches) throws SQLException {
+        switch (branchFilterMode(branches)) {
+            case "ARRAY":
+                Object[] values = branches.stream().map(String::trim).toArray(Object[]::new);
+                return new Object[]{isOracle() ? createOracleArray(values)
+                        : this.liqbatchConnection.createArrayOf("VARCHAR", values)};
+            case "STAGING":
+                return new Object[0];
+            default:
+                return toParams(branches);
+        }
+    }
+
+// ── 2c. Table temporaire ──
+
+    private void stageBranches(List<String> branches) throws SQLException {
+        if (branches.equals(this.stagedBranches)) {
+            return;
+        }
+        if (branches.size() > MAX_IN_LIST_SIZE && !"STAGING".equals(P00_ICOR_00_Config.getInstance().branchFilterMode)) {
+            LOG.warn(branches.size() + " branches exceed the IN list limit, using STAGING branch filter");
+        }
+        updateQuery("delete from " + BRANCH_FILTER_TABLE, null);
+        try (PreparedStatement ps = this.liqbatchConnection.prepareStatement(
+                "insert into " + BRANCH_FILTER_TABLE + " (BRF_CDE_BRANCH) values (?)")) {
+            for (String branch : branches) {
+                ps.setString(1, branch.trim());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        // Pas de commit : les lignes suivent la transaction du run
+        this.stagedBranches = new ArrayList<>(branches);
+    }
+
+    // rollback() — APRÈS (le chargement annulé avec la transaction est à refaire) :
+    public void rollback() throws SQLException {
+        // ... corps existant, inchangé
+        this.stagedBranches = null;
+    }
+
+// ── 2d. Dialecte ──
+//   Pas de dépendance de compilation au driver Oracle : OracleConnection est
+//   résolue par nom, uniquement quand la base est Oracle.
+
+    private boolean isOracle() throws SQLException {
+        if (this.oracle == null) {
+            this.oracle = this.liqbatchConnection.getMetaData().getDatabaseProductName().startsWith("Oracle");
+        }
+        return this.oracle;
+    }
+
+    private Array createOracleArray(Object[] values) throws SQLException {
+        try {
+            Class<?> oracleConnection = Class.forName(ORACLE_CONNECTION_CLASS);
+            Object connection = this.liqbatchConnection.unwrap(oracleConnection);
+            return (Array) oracleConnection.getMethod("createOracleArray", String.class, Object.class)
+                    .invoke(connection, ORACLE_VARCHAR_LIST, values);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Could not create " + ORACLE_VARCHAR_LIST, e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("Oracle JDBC driver does not support " + ORACLE_VARCHAR_LIST, e);
+        }
+    }
+
+// ── 2e. bindParameters() : type Array ──
+
+    // AVANT :
+    } else if (parameter instanceof Integer) {
+        ps.setInt(index, (int) parameter);
+    } else {
+        throw new SQLException(...);
+    }
+
+    // APRÈS :
+    } else if (parameter instanceof Integer) {
+        ps.setInt(index, (int) parameter);
+    } else if (parameter instanceof Array) {
+        ps.setArray(index, (Array) parameter);
+    } else {
+        throw new SQLException(...);
+    }
+
+//  ⚠️ Les Array Oracle sont liés à la connexion : ne pas les garder d'un
+//     run à l'autre. branchParams() en crée un par appel (coût négligeable,
+//     une fois par requête de run).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : PaymentSqlHandler.java — appels de branches
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Remplacement mécanique dans : getNewPayments, openNewPayments
+//  (PERF_STREAMING_PAYMENTS.java), loadWorkingTables (x4, y compris les
+//  variantes *_DELTA de PERF_DELTA_LOAD.java), purgeWorkingTables (x2),
+//  updatePendingSwiftMsgtoFailInDB, getMsgKeyForItl, getMsgKeysForItl, et
+//  toute requête utilisant SELECT_DE_MSG_KEY_FROM_HISTO.
+//  updateLoadHighWaterMark() n'a pas de liste IN (un MERGE par branche) :
+//  inchangée.
+
+    // AVANT :
+    String inClause = buildInClause(branches.size());
+    Object[] params = toParams(branches);
+
+    // APRÈS :
+    String inClause = branchFilter(branches);
+    Object[] params = branchParams(branches);
+
+//  getMsgKeyForItl : concaténation en fin de requête, même principe
+    // AVANT :  String query = SELECT_KEY_USING_MSG_DAY_AND_SEQ + buildInClause(branches.size());
+    // APRÈS :  String query = SELECT_KEY_USING_MSG_DAY_AND_SEQ + " " + branchFilter(branches);
+
+//  getMsgKeysForItl (PERF_BATCH_ITL_ACK.java) : même chose sur la requête
+//  unitaire répétée dans le UNION ALL.
+    // AVANT :  String unitQuery = SELECT_KEY_USING_MSG_DAY_AND_SEQ + buildInClause(branches.size());
+    //          Object[] branchParams = toParams(branches);
+    // APRÈS :  String unitQuery = SELECT_KEY_USING_MSG_DAY_AND_SEQ + " " + branchFilter(branches);
+    //          Object[] branchParams = branchParams(branches);
+
+//  ⚠️ Lot paddé (fetchBulk / bulkParams de PERF_BULK_ENRICHMENT.java) : en
+//     ARRAY, chaque branche du UNION ALL, padding compris, a son "table(?)".
+//     bulkParams() répète donc les binds de la dernière clé, Array compris,
+//     jamais null : table(null) échoue sous Oracle. Vérifié sur H2 par
+//     BranchFilterArrayCheck (ÉTAPE 4).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : BranchFilterArrayCheck.java (NOUVEAU, src/test/java, package de SqlHandler)
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Lancement : java -cp ... BranchFilterArrayCheck   (H2 sur le classpath de test)
+//  Mode ARRAY sur H2 en mémoire (MODE=Oracle) : requête unitaire filtrée par
+//  "= ANY(?)", regroupée par buildBulkQuery() sur un lot de 3 clés paddé à 4,
+//  paramètres de bulkParams(). Vérifie qu'aucun bind n'est null, que la
+//  requête s'exécute et que chaque clé ne ramène que les lignes de SES
+//  branches. PaymentSqlHandler(Connection) : PERF_JMH_BENCHMARKS.java.
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BranchFilterArrayCheck extends PaymentSqlHandler {
+
+    private static final String UNIT_QUERY =
+            "select ITL_MSG_KEY from TBP_CHECK_ITL where ITL_DAY = ? and ITL_SEQ = ? and ITL_BRANCH ";
+
+    private BranchFilterArrayCheck(Connection connection) {
+        super(connection);
+    }
+
+    public static void main(String[] args) throws SQLException {
+        P00_ICOR_00_Config.getInstance().branchFilterMode = "ARRAY";
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:branch_filter;MODE=Oracle")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("create table TBP_CHECK_ITL (ITL_MSG_KEY varchar(30), ITL_DAY varchar(8),"
+                        + " ITL_SEQ varchar(6), ITL_BRANCH varchar(8))");
+                statement.execute("insert into TBP_CHECK_ITL values"
+                        + " ('K1', '20261018', '000001', 'BR01'),"
+                        + " ('K2', '20261018', '000002', 'BR02'),"
+                        + " ('K3', '20261018', '000003', 'BR03')");
+            }
+            new BranchFilterArrayCheck(connection).run();
+        }
+    }
+
+    private void run() throws SQLException {
+        // BR03 hors filtre ; "BR02 " vérifie le trim de branchParams()
+        List<String> branches = Arrays.asList("BR01", "BR02 ");
+        List<List<String>> daySeqs = Arrays.asList(
+                Arrays.asList("20261018", "000001"),
+                Arrays.asList("20261018", "000002"),
+                Arrays.asList("20261018", "000003"));
+        int padded = paddedInSize(daySeqs.size());
+        check(padded > daySeqs.size(), "chunk of " + daySeqs.size() + " keys padded to " + padded);
+
+        String unitQuery = UNIT_QUERY + branchFilter(branches);
+        check(unitQuery.endsWith("= ANY(?)"), "H2 branch filter: " + branchFilter(branches));
+        Object[] branchParams = branchParams(branches);
+        Object[] params = bulkParams(daySeqs, padded,
+                daySeq -> new Object[]{daySeq.get(0), daySeq.get(1), branchParams[0]});
+        for (int i = 0; i < params.length; i++) {
+            check(params[i] != null, "bind " + (i + 1) + " of " + params.length + " is not null");
+        }
+
+        Map<Integer, String> msgKeys = new HashMap<>();
+        int paddingRows = 0;
+        String query = buildBulkQuery("BRANCH_FILTER_CHECK", unitQuery, padded);
+        try (ResultSet rs = this.prepareCachedStatement(query, params).executeQuery()) {
+            while (rs.next()) {
+                int idx = rs.getInt(BULK_IDX);
+                if (idx < daySeqs.size()) {
+                    msgKeys.put(idx, rs.getString("ITL_MSG_KEY"));
+                } else {
+                    paddingRows++;
+                }
+            }
+        }
+        check("K1".equals(msgKeys.get(0)) && "K2".equals(msgKeys.get(1)) && !msgKeys.containsKey(2),
+                "MSG_KEY by key index: " + msgKeys);
+        System.out.println("OK: padded chunk executed, " + paddingRows + " padding rows ignored");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+        System.out.println("  " + message);
+    }
+}
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ DDL                              ║ +TBP_IPMT_BRANCH_FILTER (GTT)             ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ P00_ICOR_00_Config.java          ║ +branchFilterMode                         ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ SqlHandler.java                  ║ +branchFilter() +branchParams()           ║
+  ║                                  ║ GTT chargée sans commit, rollback()       ║
+  ║                                  ║ bind java.sql.Array, Oracle par unwrap    ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandler.java           ║ buildInClause/toParams → branchFilter/    ║
+  ║                                  ║ branchParams sur les requêtes de branches ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlQueries.java           ║ AUCUNE MODIFICATION                       ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ BranchFilterArrayCheck.java      ║ NOUVEAU : "= ANY(?)" H2, lot paddé        ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Fortify : le fragment ne dépend que du mode (config) et d'un int ;
+  les valeurs passent par setArray() ou par la table temporaire.
+*/
@@ -0,0 +1,474 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : ENRICHISSEMENT EN MASSE (SUPPRESSION DU N+1)                 ║
+// ║        getRoles / getEventIncr / setProcessingAreaData /                   ║
+// ║        getPrimayBorrowerFullNme → 4 requêtes par lot de 64 paiements       ║
+// ║        Les méthodes unitaires restent disponibles (fallback).              ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  Aujourd'hui, pour CHAQUE paiement de getNewPayments() :
+//     getRoles(msgId)                 → 1 aller-retour
+//     getEventIncr(msgId)             → 1 aller-retour
+//     setProcessingAreaData(payment)  → 1 aller-retour
+//     getPrimayBorrowerFullNme(deal)  → 1 aller-retour
+//  → 4 x N round trips. Fin de mois : 40 000 IMT = 160 000 allers-retours.
+//
+//  APRÈS : enrichPayments(payments) découpe les clés distinctes en lots de 64
+//  et exécute, par lot, UNE requête par lookup qui regroupe les 64 requêtes
+//  unitaires existantes dans un "union all". Les résultats sont recollés sur
+//  les objets Payment en mémoire via l'index de la clé dans le lot.
+//  → 4 x ceil(N / 64) round trips.
+//
+//  Pourquoi "union all" et pas "= ?" → "IN (...)" :
+//  SELECT_EVENT_INCREMENT prend {msgId, msgId} : la clé est filtrée dans la
+//  requête principale ET dans une sous-requête (agrégat sur le même message).
+//  Remplacer les deux "= ?" par le même IN calculerait l'agrégat sur tout le
+//  lot au lieu d'un message → valeur fausse. Chaque branche du union all est
+//  la requête unitaire telle quelle, avec les binds d'UNE clé : filtres,
+//  sous-requêtes, agrégats, DISTINCT et ORDER BY sont évalués par paiement,
+//  exactement comme aujourd'hui. Même raisonnement pour SELECT_MSG_ROLES
+//  (DISTINCT + 2 types d'adresse bindés) et SELECT_PROCESSING_AREA (couple
+//  facility/deal). Les constantes de PaymentSqlQueries ne sont pas dupliquées.
+//
+//  Les clés (msgId, pidDeal, couple pidFacility/pidDeal) sont dédupliquées
+//  avant l'envoi : 10 paiements sur le même deal = 1 seule branche.
+//
+//  FICHIERS MODIFIÉS : 6
+//  ─────────────────
+//  1. SqlHandler.java           → +buildBulkQuery() +bulkParams() (génériques, sans SQL métier)
+//  2. PaymentSqlQueries.java    → AUCUNE MODIFICATION (requêtes unitaires réutilisées)
+//  3. Payment.java              → +3 champs d'enrichissement pré-chargé + drapeaux
+//  4. IPaymentSqlHandler.java   → +1 signature enrichPayments()
+//  5. PaymentSqlHandler.java    → +enrichPayments() + extraction des mappers
+//  6. PaymentProcessor.java     → appel de enrichPayments() avant la boucle
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : SqlHandler.java — buildBulkQuery() / bulkParams()
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  SQL produit pour count = 4 (unitQuery = requête unitaire existante, inchangée) :
+//
+//    /* SELECT_EVENT_INCREMENT x4 */ select * from (
+//          select 0 as BULK_IDX, ROWNUM as BULK_ROW, Q.* from (<unitQuery>) Q
+//      union all
+//          select 1 as BULK_IDX, ROWNUM as BULK_ROW, Q.* from (<unitQuery>) Q
+//      union all
+//          select 2 as BULK_IDX, ROWNUM as BULK_ROW, Q.* from (<unitQuery>) Q
+//      union all
+//          select 3 as BULK_IDX, ROWNUM as BULK_ROW, Q.* from (<unitQuery>) Q
+//    ) order by BULK_IDX, BULK_ROW
+//
+//    params = {binds unitaires clé 0, binds clé 1, binds clé 2, binds clé 3}
+//
+//  - ROWNUM sur la vue en ligne respecte l'ORDER BY éventuel de la requête
+//    unitaire : l'ordre des lignes d'une clé (ex. ordre des rôles dans le
+//    message SWIFT) est celui d'aujourd'hui.
+//  - Le commentaire de tête identifie la requête dans V$SQL / AWR.
+//  - Seuls des constantes et un int entrent dans le texte SQL (Fortify OK).
+//  - count passe par paddedInSize() (1/4/16/64) : 4 formes par lookup dans
+//    le cache de statements. Les branches de padding répètent les binds de
+//    la dernière clé, comme les cases de padding de toParams()
+//    (PERF_STATEMENT_CACHE.java) ; leurs lignes (BULK_IDX >= nombre de clés)
+//    sont ignorées par les appelants.
+//  - Pas de bind null en padding : en mode ARRAY de PERF_BRANCH_FILTER.java,
+//    le filtre de branches d'une requête unitaire est "table(?)", et
+//    table(null) échoue sous Oracle. Coût : au plus 3 / 12 / 48 exécutions
+//    en double de la requête unitaire, sur index, dans le même aller-retour.
+
+// Ajouter les constantes :
+
+    /** Colonnes ajoutées par buildBulkQuery() : index de la clé dans le lot, rang de la ligne. */
+    protected static final String BULK_IDX = "BULK_IDX";
+    protected static final String BULK_ROW = "BULK_ROW";
+
+// Ajouter la méthode :
+
+    /**
+     * Regroupe count exécutions de unitQuery en une seule requête "union all".
+     * Chaque ligne porte BULK_IDX (index de la clé) et BULK_ROW (rang dans la
+     * requête unitaire). Les paramètres sont ceux de la requête unitaire,
+     * concaténés clé par clé.
+     */
+    protected static String buildBulkQuery(String name, String unitQuery, int count) {
+        StringBuilder sql = new StringBuilder("/* ").append(name).append(" x").append(count)
+                .append(" */ select * from (");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sql.append(" union all ");
+            }
+            sql.append("select ").append(i).append(" as ").append(BULK_IDX)
+               .append(", ROWNUM as ").append(BULK_ROW)
+               .append(", Q.* from (").append(unitQuery).append(") Q");
+        }
+        return sql.append(") order by ").append(BULK_IDX).append(", ").append(BULK_ROW).toString();
+    }
+
+    /**
+     * Paramètres de buildBulkQuery(name, unitQuery, padded) : binds unitaires
+     * concaténés clé par clé ; les branches de padding répètent les binds de
+     * la dernière clé (jamais null, cf. mode ARRAY des branches).
+     */
+    protected static <K> Object[] bulkParams(List<K> keys, int padded, Function<K, Object[]> unitParams) {
+        List<Object> params = new ArrayList<>();
+        for (K key : keys) {
+            params.addAll(Arrays.asList(unitParams.apply(key)));
+        }
+        List<Object> last = Arrays.asList(unitParams.apply(keys.get(keys.size() - 1)));
+        for (int i = keys.size(); i < padded; i++) {
+            params.addAll(last);
+        }
+        return params.toArray();
+    }
+
+// Ajouter les imports (s'ils manquent) :
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Function;
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : PaymentSqlQueries.java — AUCUNE MODIFICATION
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  SELECT_MSG_ROLES, SELECT_EVENT_INCREMENT, SELECT_PROCESSING_AREA et
+//  SEELCT_PRIMARY_BORROWER_NME sont passées telles quelles à buildBulkQuery().
+//  Seule contrainte : pas deux colonnes de même nom dans leur SELECT (Q.*),
+//  déjà vraie puisque les mappers lisent par nom de colonne.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : Payment.java — Champs pré-chargés
+// ════════════════════════════════════════════════════════════════════════════════
+
+    // Renseignés par enrichPayments(). roles : null = pas pré-chargé, liste
+    // vide = pré-chargé sans rôle. Pour les 3 lookups à une valeur, null est
+    // aussi un résultat valide (aucune ligne) : un drapeau dit s'ils ont été
+    // pré-chargés, sinon chaque paiement sans ligne repasserait en unitaire.
+    private List<Role> roles;
+    private String eventIncr;
+    private boolean eventIncrPreloaded;
+    private String primaryBorrowerFullName;
+    private boolean primaryBorrowerPreloaded;
+    private boolean processingAreaPreloaded;
+
+    // + getters / setters standards (même style que les autres champs),
+    //   isEventIncrPreloaded() / isPrimaryBorrowerPreloaded() /
+    //   isProcessingAreaPreloaded() pour les drapeaux
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : IPaymentSqlHandler.java — Nouvelle signature
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Pré-charge rôles, incrément d'événement, zone de traitement et nom de
+     * l'emprunteur principal pour toute la liste, par lots.
+     */
+    void enrichPayments(List<Payment> payments) throws PaymentException;
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 5 : PaymentSqlHandler.java — enrichPayments() + mappers partagés
+// ════════════════════════════════════════════════════════════════════════════════
+
+// Ajouter les imports :
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Ajouter la constante :
+
+    /** Taille de lot = palier max de paddedInSize() → 4 formes SQL stables par lookup. */
+    private static final int ENRICH_CHUNK_SIZE = 64;
+
+// ── 5a. Extraire les mappers des méthodes unitaires ──
+//   Le corps de la boucle "while (rs.next())" de getRoles() devient mapRole(rs),
+//   celui de setProcessingAreaData() devient applyProcessingArea(payment, rs).
+//   Les méthodes unitaires appellent ces mappers → aucun changement de comportement.
+
+    // AVANT (getRoles) :
+    while (rs.next()) {
+        Role role = new Role();
+        role.setSwiftId(rs.getString("IOR_CDE_SWFT_ID"));
+        // ...
+        roles.add(role);
+    }
+
+    // APRÈS :
+    while (rs.next()) {
+        roles.add(mapRole(rs));
+    }
+
+    private Role mapRole(ResultSet rs) throws SQLException {
+        Role role = new Role();
+        role.setSwiftId(rs.getString("IOR_CDE_SWFT_ID"));
+        // ... (corps existant, inchangé)
+        return role;
+    }
+
+    // AVANT (setProcessingAreaData) :
+    if (rs.next()) {
+        payment.setProcessingArea(rs.getString(...));
+        // ...
+    }
+
+    // APRÈS :
+    if (rs.next()) {
+        applyProcessingArea(payment, rs);
+    }
+
+    private void applyProcessingArea(Payment payment, ResultSet rs) throws SQLException {
+        payment.setProcessingArea(rs.getString(...));
+        // ... (corps existant, inchangé)
+    }
+
+// ── 5b. enrichPayments() ──
+//   Chaque loader lit tout le lot PUIS affecte les valeurs : si la requête
+//   échoue en cours de lecture, aucun paiement du lot n'est marqué
+//   "pré-chargé" et le fallback unitaire (ÉTAPE 6) reprend la main.
+
+    @Override
+    public void enrichPayments(List<Payment> payments) throws PaymentException {
+        if (payments.isEmpty()) {
+            return;
+        }
+        Map<String, List<Payment>> byMsgId = groupBy(payments, Payment::getMsgId);
+        Map<String, List<Payment>> byDeal = groupBy(payments, Payment::getPidDeal);
+        Map<List<String>, List<Payment>> byFacilityDeal =
+                groupBy(payments, p -> Arrays.asList(p.getPidFacility(), p.getPidDeal()));
+
+        for (List<String> chunk : chunks(byMsgId.keySet())) {
+            loadRoles(chunk, byMsgId);
+            loadEventIncr(chunk, byMsgId);
+        }
+        for (List<List<String>> chunk : chunks(byFacilityDeal.keySet())) {
+            loadProcessingAreas(chunk, byFacilityDeal);
+        }
+        for (List<String> chunk : chunks(byDeal.keySet())) {
+            loadPrimaryBorrowers(chunk, byDeal);
+        }
+    }
+
+    private void loadRoles(List<String> msgIds, Map<String, List<Payment>> byMsgId) throws PaymentException {
+        Map<String, List<Role>> roles;
+        try {
+            roles = fetchBulk("SELECT_MSG_ROLES", SELECT_MSG_ROLES, msgIds,
+                    msgId -> new Object[]{CUSTOMER_LEGAL_ADDRESS, CUSTOMER_PAY_ADDRESS, msgId},
+                    this::mapRole);
+        } catch (SQLException e) {
+            throw new PaymentException(String.format(ENRICH_ERROR_MESSAGE_FORMAT, "roles", "messages", msgIds), e);
+        }
+        for (String msgId : msgIds) {
+            for (Payment payment : byMsgId.get(msgId)) {
+                // Liste vide (et non null) : un paiement sans rôle est bien "pré-chargé".
+                // Copie par paiement : deux paiements du même message ne partagent pas la liste.
+                payment.setRoles(new ArrayList<>(roles.get(msgId)));
+            }
+        }
+    }
+
+    private void loadEventIncr(List<String> msgIds, Map<String, List<Payment>> byMsgId) throws PaymentException {
+        Map<String, List<String>> increments;
+        try {
+            increments = fetchBulk("SELECT_EVENT_INCREMENT", SELECT_EVENT_INCREMENT, msgIds,
+                    msgId -> new Object[]{msgId, msgId},
+                    rs -> rs.getString(ECD_XID_REF_NUMBER));
+        } catch (SQLException e) {
+            throw new PaymentException(String.format(ENRICH_ERROR_MESSAGE_FORMAT, "event increments", "messages", msgIds), e);
+        }
+        for (String msgId : msgIds) {
+            // getEventIncr() lit la 1re ligne : même règle ici (BULK_ROW = 1)
+            String incr = first(increments.get(msgId));
+            for (Payment payment : byMsgId.get(msgId)) {
+                payment.setEventIncr(incr);
+                payment.setEventIncrPreloaded(true);
+            }
+        }
+    }
+
+    // applyProcessingArea() écrit directement dans le Payment : on l'applique
+    // pendant la lecture (1re ligne de chaque couple, comme setProcessingAreaData)
+    // et on remet la zone à null sur tout le lot en cas d'échec, pour que le
+    // fallback unitaire réécrive l'ensemble des champs. Le drapeau n'est posé
+    // qu'après la lecture complète, y compris pour les couples sans ligne.
+    private void loadProcessingAreas(List<List<String>> facilityDeals,
+                                     Map<List<String>, List<Payment>> byFacilityDeal) throws PaymentException {
+        int padded = paddedInSize(facilityDeals.size());
+        String query = buildBulkQuery("SELECT_PROCESSING_AREA", SELECT_PROCESSING_AREA, padded);
+        Object[] params = bulkParams(facilityDeals, padded, key -> new Object[]{key.get(0), key.get(1)});
+        try (ResultSet rs = this.prepareCachedStatement(query, params).executeQuery()) {
+            while (rs.next()) {
+                int idx = rs.getInt(BULK_IDX);
+                if (idx < facilityDeals.size() && rs.getInt(BULK_ROW) == 1) {
+                    for (Payment payment : byFacilityDeal.get(facilityDeals.get(idx))) {
+                        applyProcessingArea(payment, rs);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            for (List<String> key : facilityDeals) {
+                byFacilityDeal.get(key).forEach(payment -> payment.setProcessingArea(null));
+            }
+            throw new PaymentException(String.format(ENRICH_ERROR_MESSAGE_FORMAT, "processing areas", "facility/deals", facilityDeals), e);
+        }
+        for (List<String> key : facilityDeals) {
+            byFacilityDeal.get(key).forEach(payment -> payment.setProcessingAreaPreloaded(true));
+        }
+    }
+
+    private void loadPrimaryBorrowers(List<String> pidDeals, Map<String, List<Payment>> byDeal) throws PaymentException {
+        Map<String, List<String>> borrowers;
+        try {
+            borrowers = fetchBulk("SEELCT_PRIMARY_BORROWER_NME", SEELCT_PRIMARY_BORROWER_NME, pidDeals,
+                    pidDeal -> new Object[]{pidDeal},
+                    rs -> rs.getString(CUS_NME_FULL_NAME));
+        } catch (SQLException e) {
+            throw new PaymentException(String.format(ENRICH_ERROR_MESSAGE_FORMAT, "primary borrowers", "deals", pidDeals), e);
+        }
+        for (String pidDeal : pidDeals) {
+            String fullName = first(borrowers.get(pidDeal));
+            for (Payment payment : byDeal.get(pidDeal)) {
+                payment.setPrimaryBorrowerFullName(fullName);
+                payment.setPrimaryBorrowerPreloaded(true);
+            }
+        }
+    }
+
+    /** Mapper de ligne pour fetchBulk() (ResultSet → T). */
+    @FunctionalInterface
+    private interface BulkRowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Exécute unitQuery pour chaque clé du lot en un aller-retour et retourne,
+     * pour chaque clé, ses lignes mappées dans l'ordre de la requête unitaire.
+     * La Map n'est retournée qu'une fois le ResultSet entièrement lu.
+     */
+    private <K, T> Map<K, List<T>> fetchBulk(String name, String unitQuery, List<K> keys,
+                                             Function<K, Object[]> unitParams,
+                                             BulkRowMapper<T> mapper) throws SQLException {
+        int padded = paddedInSize(keys.size());
+        String query = buildBulkQuery(name, unitQuery, padded);
+        Map<K, List<T>> rows = new HashMap<>();
+        for (K key : keys) {
+            rows.put(key, new ArrayList<>());
+        }
+        try (ResultSet rs = this.prepareCachedStatement(query, bulkParams(keys, padded, unitParams)).executeQuery()) {
+            while (rs.next()) {
+                int idx = rs.getInt(BULK_IDX);
+                if (idx < keys.size()) {
+                    rows.get(keys.get(idx)).add(mapper.map(rs));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static <T> T first(List<T> rows) {
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private static <K> Map<K, List<Payment>> groupBy(List<Payment> payments, Function<Payment, K> key) {
+        return payments.stream()
+                .filter(p -> key.apply(p) != null)
+                .collect(Collectors.groupingBy(key, LinkedHashMap::new, Collectors.toList()));
+    }
+
+    private static <K> List<List<K>> chunks(Set<K> keys) {
+        List<K> all = new ArrayList<>(keys);
+        List<List<K>> chunks = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += ENRICH_CHUNK_SIZE) {
+            chunks.add(all.subList(i, Math.min(i + ENRICH_CHUNK_SIZE, all.size())));
+        }
+        return chunks;
+    }
+
+// ── 5c. Méthodes unitaires : court-circuit si déjà pré-chargé ──
+
+    // getRoles(String msgId) reste inchangée (signature par msgId, sans Payment).
+    // Le court-circuit se fait côté appelant (ÉTAPE 6).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 6 : PaymentProcessor.java — Enrichissement en masse puis fallback
+// ════════════════════════════════════════════════════════════════════════════════
+
+// ── 6a. buildNewPayments() ──
+
+    // AVANT :
+    List<Payment> newPayments = this.sqlHandler.getNewPayments(this.branches);
+    for (Payment payment : newPayments) {
+        // control, transform, enrich ...
+    }
+
+    // APRÈS :
+    List<Payment> newPayments = this.sqlHandler.getNewPayments(this.branches);
+    try {
+        this.sqlHandler.enrichPayments(newPayments);
+    } catch (PaymentException e) {
+        // Pas bloquant : chaque paiement repassera par les lookups unitaires
+        LOG.warn("Bulk enrichment failed, falling back to per-payment lookups", e);
+    }
+    for (Payment payment : newPayments) {
+        // control, transform, enrich ...
+    }
+
+// ── 6b. enrich(payment) : utiliser la valeur pré-chargée si présente ──
+//   Le test porte sur le drapeau, pas sur la valeur : un paiement pré-chargé
+//   sans ligne (null) ne refait pas de requête unitaire.
+
+    // AVANT :
+    payment.setRoles(this.sqlHandler.getRoles(payment.getMsgId()));
+    String eventIncr = this.sqlHandler.getEventIncr(payment.getMsgId());
+    this.sqlHandler.setProcessingAreaData(payment);
+    String borrower = this.sqlHandler.getPrimayBorrowerFullNme(payment.getPidDeal());
+
+    // APRÈS :
+    if (payment.getRoles() == null) {
+        payment.setRoles(this.sqlHandler.getRoles(payment.getMsgId()));
+    }
+    String eventIncr = payment.isEventIncrPreloaded()
+            ? payment.getEventIncr()
+            : this.sqlHandler.getEventIncr(payment.getMsgId());
+    if (!payment.isProcessingAreaPreloaded()) {
+        this.sqlHandler.setProcessingAreaData(payment);
+    }
+    String borrower = payment.isPrimaryBorrowerPreloaded()
+            ? payment.getPrimaryBorrowerFullName()
+            : this.sqlHandler.getPrimayBorrowerFullNme(payment.getPidDeal());
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ SqlHandler.java                  ║ +buildBulkQuery() (union all générique)   ║
+  ║                                  ║ +bulkParams() (padding = dernière clé)    ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlQueries.java           ║ AUCUNE MODIFICATION                       ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ Payment.java                     ║ +roles +eventIncr +primaryBorrowerFullName║
+  ║                                  ║ +3 drapeaux "pré-chargé"                  ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ IPaymentSqlHandler.java          ║ +enrichPayments(List<Payment>)            ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandler.java           ║ +enrichPayments() +4 loaders              ║
+  ║                                  ║ +fetchBulk() +mapRole()                   ║
+  ║                                  ║ +applyProcessingArea()                    ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentProcessor.java            ║ enrichPayments() + fallback unitaire      ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Round trips d'enrichissement : 4 x N  →  4 x ceil(clés distinctes / 64)
+  Sémantique par paiement inchangée : chaque branche = requête unitaire + binds d'une clé.
+  Fortify : le texte SQL ne contient que des constantes et des int, valeurs en setString().
+*/
@@ -0,0 +1,591 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : COMMIT PAR LOTS + POINT DE REPRISE PAR BRANCHE               ║
+// ║        commit tous les N paiements, reprise après crash sans double envoi ║
+// ║        commit.chunked=false → une transaction par run (actuel)             ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  Aujourd'hui, tous les paiements de buildNewPayments() sont traités dans
+//  UNE transaction, commitée en fin de run : verrous et undo tenus longtemps,
+//  et un échec tardif perd tout le travail.
+//
+//  APRÈS (s'appuie sur le curseur de PERF_STREAMING_PAYMENTS.java) :
+//   1. SELECT_NEW_PAYMENTS est lu dans un ordre total (branche, RID) par
+//      openNewPaymentsAfterCheckpoint(), lot par lot (payment.chunk.size).
+//   2. Transaction DB A : tout le travail du lot SAUF les statuts
+//      STATUS_DELV (audit, rejets de contrôle...), les messages SWIFT du lot
+//      dans TBP_IPMT_RUN_IN_FLIGHT et, par branche, le dernier RID du lot
+//      dans CHK_RID_IN_FLIGHT. Commit : le lot est "en vol".
+//   3. Les messages du lot sont mis sur MQ en UNE transaction MQ, commitée.
+//   4. Transaction DB B : statuts STATUS_DELV du lot, CHK_RID_IMT_OUT prend
+//      CHK_RID_IN_FLIGHT, lignes en vol supprimées. Commit.
+//   5. Un run qui trouve un checkpoint RUNNING est une REPRISE : pas de
+//      purge/load (les working tables du run planté sont intactes). Le lot
+//      en vol est d'abord renvoyé tel quel (étapes 3 et 4), puis la lecture
+//      repart APRÈS le dernier RID confirmé de chaque branche.
+//
+//  AUCUN PAIEMENT MARQUÉ ENVOYÉ SANS MESSAGE SUR MQ : STATUS_DELV n'est
+//  commité qu'après le commit MQ du lot (même règle que
+//  PERF_ASYNC_MQ_PUBLISHING.java).
+//
+//  PAS DE DOUBLE CONSTRUCTION : la plage de RID en vol (entre CHK_RID_IMT_OUT
+//  et CHK_RID_IN_FLIGHT) n'est jamais relue par le curseur ; ses paiements
+//  ne sont pas reconstruits et ne reçoivent pas de nouveau numéro de
+//  séquence. À la reprise, seuls les MSG_KEY de TBP_IPMT_RUN_IN_FLIGHT sont
+//  renvoyés, une fois chacun (clé primaire), avec le texte commité en A.
+//  Le seul cas ambigu est un crash entre le commit MQ et le commit B : le
+//  renvoi est alors un doublon EXACT (même MSG_KEY, même numéro de séquence
+//  SWIFT), que la détection de doublons du destinataire écarte, et il est
+//  tracé en WARN avec ses MSG_KEY. Un lot dont le commit MQ n'a pas eu lieu
+//  (puts annulés par le gestionnaire de files) part, lui, pour la 1re fois.
+//  Un échec MQ connu (backout) passe tout de suite les messages du lot en
+//  STATUS_FAIL / "MQ_ERROR" et solde le lot en vol.
+//
+//  FICHIERS MODIFIÉS : 6
+//  ─────────────────
+//  0. DDL                       → +TBP_IPMT_RUN_CHECKPOINT +TBP_IPMT_RUN_IN_FLIGHT
+//  1. P00_ICOR_00_Config.java   → +chunkedCommit
+//  2. PaymentSqlQueries.java    → +SELECT_NEW_PAYMENTS_ORDERED +requêtes checkpoint / en vol
+//  3. IPaymentSqlHandler.java   → +openNewPaymentsAfterCheckpoint() +checkpoints +lot en vol
+//  4. PaymentSqlHandler.java    → implémentation
+//  5. PaymentProcessor.java     → lot en vol, envoi MQ, puis statuts DELV
+//  6. Main.java                 → reprise (renvoi du lot en vol) ou nouveau run
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 0 : DDL (schéma LIQBATCH)
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  CREATE TABLE TBP_IPMT_RUN_CHECKPOINT (
+      CHK_CDE_BRANCH      VARCHAR2(8)   NOT NULL,
+      CHK_RID_IMT_OUT     VARCHAR2(8),                -- dernier RID confirmé (statuts DELV commités)
+      CHK_RID_IN_FLIGHT   VARCHAR2(8),                -- dernier RID du lot en vol, null sinon
+      CHK_CDE_STATUS      VARCHAR2(8)   NOT NULL,   -- RUNNING / DONE
+      CHK_NB_PAYMENTS     NUMBER(10)    DEFAULT 0 NOT NULL,
+      CHK_TSP_UPDATE      TIMESTAMP     DEFAULT SYSTIMESTAMP NOT NULL,
+      CONSTRAINT PK_IPMT_RUN_CHECKPOINT PRIMARY KEY (CHK_CDE_BRANCH)
+  );
+
+  -- Messages SWIFT du lot en vol : écrits avec le lot (transaction A),
+  -- supprimés avec les statuts DELV (transaction B).
+  CREATE TABLE TBP_IPMT_RUN_IN_FLIGHT (
+      IFL_MSG_KEY         VARCHAR2(30)  NOT NULL,
+      IFL_CDE_BRANCH      VARCHAR2(8)   NOT NULL,
+      IFL_NUM_ORDER       NUMBER(10)    NOT NULL,     -- ordre d'envoi dans le lot
+      IFL_TXT_MESSAGE     CLOB          NOT NULL,
+      CONSTRAINT PK_IPMT_RUN_IN_FLIGHT PRIMARY KEY (IFL_MSG_KEY)
+  );
+*/
+
+//  ⚠️ IFL_MSG_KEY : même type que la colonne MSG_KEY de TBP_IPMT_IMT_OUT.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : P00_ICOR_00_Config.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** Commit par lot de payment.chunk.size avec point de reprise. */
+    public boolean chunkedCommit = false;
+
+    this.chunkedCommit = Boolean.parseBoolean(props.getProperty("commit.chunked", "false"));
+
+//  commit.chunked=true exige payment.chunk.size > 0 et parallel.workers <= 1
+//  (mode parallèle de PERF_PARALLEL_BRANCHES.java : une transaction par
+//  branche, déjà courte). Sinon Main l'ignore avec un WARN.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : PaymentSqlQueries.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    private static final String CHECKPOINT_TABLE = LIQBATCHSCHEMA + ".TBP_IPMT_RUN_CHECKPOINT";
+
+    private static final String IN_FLIGHT_TABLE = LIQBATCHSCHEMA + ".TBP_IPMT_RUN_IN_FLIGHT";
+
+    // Ordre total et reprise : on saute les RID déjà confirmés de la branche.
+    // Le lot en vol est confirmé (confirmCheckpoints) avant toute lecture.
+    // Le NVL laisse passer les branches sans checkpoint (nouvelle branche).
+    // Ajouté après le "%s" de SELECT_NEW_PAYMENTS : aucun bind en plus.
+    public static final String SELECT_NEW_PAYMENTS_ORDERED = SELECT_NEW_PAYMENTS +
+            " and M.IMT_RID_IMT_OUT > nvl((select C.CHK_RID_IMT_OUT from " + CHECKPOINT_TABLE + " C" +
+            " where C.CHK_CDE_BRANCH = TRIM(M.IMT_CDE_BRANCH) and C.CHK_CDE_STATUS = 'RUNNING'), ' ')" +
+            " order by TRIM(M.IMT_CDE_BRANCH), M.IMT_RID_IMT_OUT";
+
+    public static final String COUNT_RUNNING_CHECKPOINTS = "select count(*) from " + CHECKPOINT_TABLE +
+            " where CHK_CDE_STATUS = 'RUNNING' and CHK_CDE_BRANCH %s";
+
+    public static final String START_CHECKPOINT = "merge into " + CHECKPOINT_TABLE + " C" +
+            " using (select TRIM(?) as BRANCH from dual) S on (C.CHK_CDE_BRANCH = S.BRANCH)" +
+            " when matched then update set C.CHK_RID_IMT_OUT = null, C.CHK_RID_IN_FLIGHT = null," +
+            "      C.CHK_CDE_STATUS = 'RUNNING'," +
+            "      C.CHK_NB_PAYMENTS = 0, C.CHK_TSP_UPDATE = systimestamp" +
+            " when not matched then insert (CHK_CDE_BRANCH, CHK_CDE_STATUS) values (S.BRANCH, 'RUNNING')";
+
+    public static final String UPDATE_CHECKPOINT = "update " + CHECKPOINT_TABLE +
+            " set CHK_RID_IN_FLIGHT = ?, CHK_NB_PAYMENTS = CHK_NB_PAYMENTS + ?, CHK_TSP_UPDATE = systimestamp" +
+            " where CHK_CDE_BRANCH = ?";
+
+    public static final String CONFIRM_CHECKPOINTS = "update " + CHECKPOINT_TABLE +
+            " set CHK_RID_IMT_OUT = CHK_RID_IN_FLIGHT, CHK_RID_IN_FLIGHT = null, CHK_TSP_UPDATE = systimestamp" +
+            " where CHK_RID_IN_FLIGHT is not null and CHK_CDE_BRANCH %s";
+
+    public static final String INSERT_IN_FLIGHT = "insert into " + IN_FLIGHT_TABLE +
+            " (IFL_MSG_KEY, IFL_CDE_BRANCH, IFL_NUM_ORDER, IFL_TXT_MESSAGE) values (?, ?, ?, ?)";
+
+    public static final String SELECT_IN_FLIGHT = "select IFL_MSG_KEY, IFL_TXT_MESSAGE, IFL_CDE_BRANCH from " +
+            IN_FLIGHT_TABLE + " where IFL_CDE_BRANCH %s order by IFL_NUM_ORDER";
+
+    public static final String DELETE_IN_FLIGHT = "delete from " + IN_FLIGHT_TABLE + " where IFL_CDE_BRANCH %s";
+
+    public static final String END_CHECKPOINTS = "update " + CHECKPOINT_TABLE +
+            " set CHK_CDE_STATUS = 'DONE', CHK_TSP_UPDATE = systimestamp where CHK_CDE_BRANCH %s";
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : IPaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Comme openNewPayments(), triée par (branche, RID) et limitée aux RID
+     * postérieurs au checkpoint RUNNING de chaque branche.
+     */
+    PaymentCursor openNewPaymentsAfterCheckpoint(List<String> branches, int fetchSize) throws SQLException;
+
+    /** true si un run précédent s'est arrêté avant la fin sur une de ces branches. */
+    boolean isRestartPending(List<String> branches) throws SQLException;
+
+    /** Checkpoints RUNNING et vides pour un nouveau run. */
+    void startCheckpoints(List<String> branches) throws SQLException;
+
+    /** Lot en vol : dernier RID lu et nombre de paiements du lot, pour une branche. */
+    void updateCheckpoint(String branch, String lastRid, int nbPayments) throws SQLException;
+
+    /** Lot en vol envoyé (ou soldé en échec) : son dernier RID devient le point de reprise. */
+    void confirmCheckpoints(List<String> branches) throws SQLException;
+
+    /** Messages du lot en vol, {MSG_KEY, message, branche}, dans l'ordre d'envoi. */
+    void saveInFlight(List<String[]> sends) throws SQLException;
+
+    /** Messages du lot en vol de ces branches, dans l'ordre d'envoi ; liste vide si aucun. */
+    List<String[]> getInFlight(List<String> branches) throws SQLException;
+
+    void deleteInFlight(List<String> branches) throws SQLException;
+
+    /** Run terminé : checkpoints DONE. */
+    void endCheckpoints(List<String> branches) throws SQLException;
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : PaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// ── 4a. Curseur : openNewPayments() paramétré par la requête ──
+//   Le corps actuel de openNewPayments() (PERF_STREAMING_PAYMENTS.java,
+//   PERF_RESULTSET_MAPPING.java, PERF_BRANCH_FILTER.java) passe tel quel
+//   dans openPaymentCursor() ; seule la constante SELECT_NEW_PAYMENTS
+//   devient le paramètre queryFormat.
+
+    @Override
+    public PaymentCursor openNewPayments(List<String> branches, int fetchSize) throws SQLException {
+        return openPaymentCursor(SELECT_NEW_PAYMENTS, branches, fetchSize);
+    }
+
+    @Override
+    public PaymentCursor openNewPaymentsAfterCheckpoint(List<String> branches, int fetchSize) throws SQLException {
+        return openPaymentCursor(SELECT_NEW_PAYMENTS_ORDERED, branches, fetchSize);
+    }
+
+    private PaymentCursor openPaymentCursor(String queryFormat, List<String> branches, int fetchSize)
+            throws SQLException {
+        String query = String.format(queryFormat, branchFilter(branches));
+        PreparedStatement ps = this.prepareStatement(query, branchParams(branches));
+        // ... (suite du corps actuel de openNewPayments(), inchangée)
+    }
+
+// ── 4b. Checkpoints ──
+
+    @Override
+    public boolean isRestartPending(List<String> branches) throws SQLException {
+        String query = String.format(COUNT_RUNNING_CHECKPOINTS, branchFilter(branches));
+        try (PreparedStatement ps = this.prepareStatement(query, branchParams(branches));
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+
+    @Override
+    public void startCheckpoints(List<String> branches) throws SQLException {
+        for (String branch : branches) {
+            updateCachedQuery(START_CHECKPOINT, new Object[]{branch});
+        }
+    }
+
+    @Override
+    public void updateCheckpoint(String branch, String lastRid, int nbPayments) throws SQLException {
+        updateCachedQuery(UPDATE_CHECKPOINT, new Object[]{lastRid, nbPayments, branch.trim()});
+    }
+
+    @Override
+    public void confirmCheckpoints(List<String> branches) throws SQLException {
+        updateQuery(String.format(CONFIRM_CHECKPOINTS, branchFilter(branches)), branchParams(branches));
+    }
+
+    @Override
+    public void endCheckpoints(List<String> branches) throws SQLException {
+        updateQuery(String.format(END_CHECKPOINTS, branchFilter(branches)), branchParams(branches));
+    }
+
+// ── 4c. Lot en vol ──
+
+    @Override
+    public void saveInFlight(List<String[]> sends) throws SQLException {
+        if (sends.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = this.liqbatchConnection.prepareStatement(INSERT_IN_FLIGHT)) {
+            int order = 0;
+            for (String[] send : sends) {
+                ps.setString(1, send[0]);
+                ps.setString(2, send[2]);
+                ps.setInt(3, order++);
+                ps.setString(4, send[1]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    @Override
+    public List<String[]> getInFlight(List<String> branches) throws SQLException {
+        List<String[]> sends = new ArrayList<>();
+        String query = String.format(SELECT_IN_FLIGHT, branchFilter(branches));
+        try (PreparedStatement ps = this.prepareStatement(query, branchParams(branches));
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                sends.add(new String[]{rs.getString(1), rs.getString(2), rs.getString(3)});
+            }
+        }
+        return sends;
+    }
+
+    @Override
+    public void deleteInFlight(List<String> branches) throws SQLException {
+        updateQuery(String.format(DELETE_IN_FLIGHT, branchFilter(branches)), branchParams(branches));
+    }
+
+//  updateCachedQuery() : PERF_STATEMENT_CACHE.java ; bindParameters() lie
+//  nbPayments par setInt(). saveInFlight() : un executeBatch() par lot, le
+//  lot est déjà borné par payment.chunk.size. setString() sur le CLOB :
+//  accepté par le driver Oracle (et H2) pour un message SWIFT.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 5 : PaymentProcessor.java
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  En mode commit.chunked, la boucle d'envoi existante ne met plus rien sur
+//  MQ et n'écrit plus STATUS_DELV : elle garde (MSG_KEY, message, branche).
+//  Main appelle recordChunkInFlight() avant le commit A du lot, puis
+//  sendChunk() qui met le lot sur MQ et fait la transaction B. Le MqPublisher
+//  de PERF_ASYNC_MQ_PUBLISHING.java n'est pas créé dans ce mode (sendChunk()
+//  envoie déjà le lot en une transaction MQ).
+
+// Ajouter les imports :
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.stream.Collectors;
+
+// Ajouter le champ :
+
+    /** Mode commit.chunked : messages du lot en cours, envoyés par sendChunk(). Null sinon. */
+    private List<String[]> chunkSends;
+
+// ── 5a. Envoi (4a de PERF_ASYNC_MQ_PUBLISHING.java) ──
+
+    // AVANT :
+    if (this.mqPublisher != null) {
+        this.mqPublisher.submit(payment.getMsgKey(), swiftMessage);
+        applyConfirmedStatuses();
+    } else {
+        this.mqService.sendMessage(swiftMessage);
+        this.sqlHandler.updateStatus(payment.getMsgKey(), STATUS_DELV, null);
+    }
+
+    // APRÈS :
+    if (this.chunkSends != null) {
+        // STATUS_DELV écrit par sendChunk(), après le commit MQ
+        this.chunkSends.add(new String[]{payment.getMsgKey(), swiftMessage, payment.getMsgBranch().trim()});
+    } else if (this.mqPublisher != null) {
+        this.mqPublisher.submit(payment.getMsgKey(), swiftMessage);
+        applyConfirmedStatuses();
+    } else {
+        this.mqService.sendMessage(swiftMessage);
+        this.sqlHandler.updateStatus(payment.getMsgKey(), STATUS_DELV, null);
+    }
+
+// ── 5b. Encadrement de la boucle d'envoi (4b de PERF_ASYNC_MQ_PUBLISHING.java) ──
+
+    // AVANT :
+    if (window > 0) {
+
+    // APRÈS :
+    if (window > 0 && this.chunkSends == null) {
+
+// ── 5c. Lot en vol, envoi, confirmation ──
+
+    /** Mode commit.chunked : les envois du prochain lot sont différés jusqu'à sendChunk(). */
+    public void startChunk() {
+        this.chunkSends = new ArrayList<>();
+    }
+
+    /** Écrit les messages du lot dans la transaction A, commitée ensuite par Main. */
+    public void recordChunkInFlight() throws SQLException {
+        this.sqlHandler.saveInFlight(this.chunkSends);
+    }
+
+    /**
+     * Reprise : renvoie le lot en vol du run interrompu, tel que commité en
+     * A (mêmes MSG_KEY, même texte), puis le confirme. Sans lot en vol,
+     * confirme seulement les checkpoints (lot sans message à envoyer).
+     */
+    public void resendInFlight() throws PaymentException, SQLException, IOException {
+        this.chunkSends = this.sqlHandler.getInFlight(this.branches);
+        if (!this.chunkSends.isEmpty()) {
+            LOG.warn("Re-sending " + this.chunkSends.size() + " in-flight messages of the interrupted run,"
+                    + " already on MQ if the crash followed the MQ commit: "
+                    + this.chunkSends.stream().map(send -> send[0]).collect(Collectors.toList()));
+        }
+        sendChunk();
+    }
+
+    /**
+     * Met sur MQ, en une transaction MQ, les messages du lot en vol, puis
+     * transaction B : statuts STATUS_DELV, checkpoints confirmés, lot en vol
+     * supprimé, commit. Échec MQ : backout, messages du lot en STATUS_FAIL /
+     * "MQ_ERROR" et lot soldé de la même façon, puis l'exception remonte.
+     */
+    public void sendChunk() throws PaymentException, SQLException, IOException {
+        List<String[]> sends = this.chunkSends;
+        this.chunkSends = null;
+        List<String> msgKeys = sends.stream().map(send -> send[0]).collect(Collectors.toList());
+        try {
+            for (String[] send : sends) {
+                this.mqService.sendInTransaction(send[1]);
+            }
+            if (!sends.isEmpty()) {
+                this.mqService.commit();
+            }
+        } catch (PaymentException | RuntimeException e) {
+            try {
+                this.mqService.backout();
+            } catch (Exception backoutError) {
+                LOG.warn("MQ backout failed after send error", backoutError);
+            }
+            closeChunk(msgKeys, STATUS_FAIL, "MQ_ERROR");
+            LOG.error(msgKeys.size() + " messages of the chunk set to " + STATUS_FAIL + " after MQ error");
+            throw e;
+        }
+        closeChunk(msgKeys, STATUS_DELV, null);
+    }
+
+    /** Transaction B du lot : statuts, point de reprise avancé, lot en vol supprimé. */
+    private void closeChunk(List<String> msgKeys, String status, String reason)
+            throws PaymentException, SQLException, IOException {
+        if (!msgKeys.isEmpty()) {
+            this.sqlHandler.updateStatuses(msgKeys, status, reason);
+        }
+        this.sqlHandler.confirmCheckpoints(this.branches);
+        this.sqlHandler.deleteInFlight(this.branches);
+        this.auditHandler.flush();
+        this.fileService.flush();
+        this.sqlHandler.commit();
+    }
+
+//  fileService : passé au constructeur par PERF_ASYNC_MQ_PUBLISHING.java (4d).
+//  Flush audit + fichiers avant commit : même règle que process().
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 6 : Main.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// Ajouter les imports :
+import java.util.LinkedHashMap;
+import java.util.stream.Collectors;
+
+// ── 6a. process() : reprise ou nouveau run ──
+//   À la reprise, les working tables sont celles du run interrompu, dont le
+//   SCN n'est pas conservé : la marque de chargement de PERF_DELTA_LOAD.java
+//   n'avance pas. Le run suivant recompare depuis la marque précédente
+//   (sur-ensemble des lignes modifiées, rien n'est perdu).
+//   Le lot en vol du run interrompu est renvoyé et confirmé AVANT l'ouverture
+//   du curseur : la lecture repart après sa plage de RID.
+
+    // AVANT (PERF_DELTA_LOAD.java) :
+            // Clean and load payment tables
+            P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+            String loadScn = config.isDeltaLoad() ? this.sqlHandler.getCurrentScn() : null;
+            this.sqlHandler.purgeWorkingTables(branches);
+            this.sqlHandler.loadWorkingTables(branches, config.isDeltaLoad());
+            this.sqlHandler.commit();
+            // Create, control, transform and enrich payments
+            int status;
+            if (config.parallelWorkers > 1 && this.branches.size() > 1) {
+                status = processBranchesInParallel(config.parallelWorkers);
+            } else if (config.paymentChunkSize <= 0) {
+                List<Payment> payments = this.paymentProcessor.buildNewPayments();
+                status = processPayments(payments);
+            } else {
+                status = processPaymentsByChunk(config.paymentFetchSize, config.paymentChunkSize);
+            }
+            // La marque n'avance qu'une fois les paiements traités sans exception
+            if (loadScn != null) {
+                this.sqlHandler.updateLoadHighWaterMark(branches, loadScn);
+            }
+            this.sqlHandler.commit();
+            return status;
+
+    // APRÈS :
+            // Clean and load payment tables
+            P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+            boolean checkpointed = isCheckpointedRun(config);
+            String loadScn = null;
+            if (checkpointed && this.sqlHandler.isRestartPending(branches)) {
+                LOG.warn("Resuming interrupted run on branches " + branches + " after the last committed chunk");
+                this.paymentProcessor.resendInFlight();
+            } else {
+                loadScn = config.isDeltaLoad() ? this.sqlHandler.getCurrentScn() : null;
+                this.sqlHandler.purgeWorkingTables(branches);
+                this.sqlHandler.loadWorkingTables(branches, config.isDeltaLoad());
+                if (checkpointed) {
+                    this.sqlHandler.startCheckpoints(branches);
+                }
+            }
+            this.sqlHandler.commit();
+            // Create, control, transform and enrich payments
+            int status;
+            if (checkpointed) {
+                status = processPaymentsWithCheckpoints(config.paymentFetchSize, config.paymentChunkSize);
+                this.sqlHandler.endCheckpoints(branches);
+            } else if (config.parallelWorkers > 1 && this.branches.size() > 1) {
+                status = processBranchesInParallel(config.parallelWorkers);
+            } else if (config.paymentChunkSize <= 0) {
+                List<Payment> payments = this.paymentProcessor.buildNewPayments();
+                status = processPayments(payments);
+            } else {
+                status = processPaymentsByChunk(config.paymentFetchSize, config.paymentChunkSize);
+            }
+            // La marque n'avance qu'une fois les paiements traités sans exception
+            if (loadScn != null) {
+                this.sqlHandler.updateLoadHighWaterMark(branches, loadScn);
+            }
+            this.sqlHandler.commit();
+            return status;
+
+    private boolean isCheckpointedRun(P00_ICOR_00_Config config) {
+        if (!config.chunkedCommit) {
+            return false;
+        }
+        if (config.paymentChunkSize <= 0 || config.parallelWorkers > 1) {
+            LOG.warn("commit.chunked ignored: requires payment.chunk.size > 0 and parallel.workers <= 1");
+            return false;
+        }
+        return true;
+    }
+
+// ── 6b. Boucle par lot avec checkpoint ──
+//   Même boucle que processPaymentsByChunk() (PERF_STREAMING_PAYMENTS.java) :
+//   sendPayments() par lot, finishRun() une fois après le dernier lot.
+//   Par lot : transaction A (travail du lot, lot en vol, CHK_RID_IN_FLIGHT)
+//   commitée, PUIS envoi MQ et transaction B (sendChunk()).
+
+    /**
+     * Mode commit.chunked : par lot, commit du lot en vol, envoi MQ, puis
+     * commit des statuts DELV et du point de reprise. Un échec laisse les
+     * checkpoints RUNNING : le run suivant renvoie le lot en vol et reprend
+     * après.
+     */
+    private int processPaymentsWithCheckpoints(int fetchSize, int chunkSize) throws ... {
+        int nbPayments = 0;
+        try (IPaymentSqlHandler.PaymentCursor cursor =
+                     this.sqlHandler.openNewPaymentsAfterCheckpoint(this.branches, fetchSize)) {
+            List<Payment> newPayments = cursor.nextChunk(chunkSize);
+            do {
+                nbPayments += newPayments.size();
+                this.paymentProcessor.startChunk();
+                List<Payment> payments = this.paymentProcessor.buildPayments(newPayments);
+                updateStatus(sendPayments(payments));
+                updateCheckpoints(newPayments);
+                this.paymentProcessor.recordChunkInFlight();
+                this.auditHandler.flush();
+                this.fileService.flush();
+                this.sqlHandler.commit();
+                this.paymentProcessor.sendChunk();
+                newPayments = cursor.nextChunk(chunkSize);
+            } while (!newPayments.isEmpty());
+        }
+        LOG.info("Processed " + nbPayments + " payments by committed chunks of " + chunkSize);
+        return finishRun(nbPayments, currentStatus);
+    }
+
+    /**
+     * Dernier RID lu par branche dans le lot, en CHK_RID_IN_FLIGHT. La lecture
+     * est triée par (branche, RID) : le dernier paiement d'une branche a le
+     * plus grand RID.
+     */
+    private void updateCheckpoints(List<Payment> newPayments) throws SQLException {
+        Map<String, List<Payment>> byBranch = newPayments.stream()
+                .collect(Collectors.groupingBy(payment -> payment.getMsgBranch().trim(),
+                        LinkedHashMap::new, Collectors.toList()));
+        for (Map.Entry<String, List<Payment>> branch : byBranch.entrySet()) {
+            List<Payment> payments = branch.getValue();
+            this.sqlHandler.updateCheckpoint(branch.getKey(),
+                    payments.get(payments.size() - 1).getMsgId(), payments.size());
+        }
+    }
+
+//  Le checkpoint couvre tous les paiements LUS du lot, y compris ceux que
+//  le contrôle rejette : à la reprise, ils ne sont pas relus non plus.
+//  sendPayments() ne commite pas (PERF_STREAMING_PAYMENTS.java) : le commit A
+//  explicite garantit que le lot en vol est durable avant le premier put.
+//  Le fichier et l'audit de fin de run sont produits une fois, par
+//  finishRun(), comme en mode flux.
+//  Repasser commit.chunked=false après un run interrompu : laisser d'abord
+//  la reprise aller au bout (checkpoints DONE, lot en vol renvoyé).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ DDL                              ║ +TBP_IPMT_RUN_CHECKPOINT                  ║
+  ║                                  ║ +TBP_IPMT_RUN_IN_FLIGHT                   ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ P00_ICOR_00_Config.java          ║ +chunkedCommit                            ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlQueries.java           ║ +SELECT_NEW_PAYMENTS_ORDERED              ║
+  ║                                  ║ +5 requêtes checkpoint +3 lot en vol      ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ IPaymentSqlHandler.java          ║ +openNewPaymentsAfterCheckpoint()         ║
+  ║                                  ║ +5 méthodes checkpoint +3 lot en vol      ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandler.java           ║ +openPaymentCursor() (corps déplacé)      ║
+  ║                                  ║ implémentation des checkpoints            ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentProcessor.java            ║ +startChunk() +recordChunkInFlight()      ║
+  ║                                  ║ +sendChunk() +resendInFlight()            ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ Main.java                        ║ process() : reprise (lot en vol renvoyé)  ║
+  ║                                  ║ ou nouveau run                            ║
+  ║                                  ║ +processPaymentsWithCheckpoints()         ║
+  ║                                  ║ +updateCheckpoints() +isCheckpointedRun() ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Transaction DB : 1 par run → 2 par lot (A : lot en vol, B : statuts DELV)
+  autour d'1 commit MQ. Crash : le lot en vol est renvoyé à la reprise, à
+  l'identique ; jamais de STATUS_DELV sans commit MQ.
+*/
@@ -0,0 +1,305 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : MODE RÉSIDENT (DAEMON) POUR Main                             ║
+// ║        1 JVM chaude pour N zones, process() planifié, pas de System.exit   ║
+// ║        Sans "-daemon" → one-shot actuel, inchangé                          ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  L'ordonnanceur lance Main toutes les quelques minutes, par zone. À chaque
+//  fois : démarrage JVM, JIT à froid, ouverture de connexion,
+//  getConfiguration(cdeName), getBranches(cdeName), un process(), System.exit.
+//
+//  APRÈS : "Main -daemon ZONE1,ZONE2" garde un Main par zone (donc une
+//  connexion, un cache de statements, un allocateur de séquences chauds) et
+//  appelle process() à intervalle fixe sur un ScheduledExecutorService.
+//   - InterfaceParameter et branches rechargés toutes les daemon.refresh.minutes
+//   - statut de chaque cycle loggé par zone (pas d'exit)
+//   - connexion invalide ou cycle en échec (y compris Error) → connexions JDBC
+//     et MQ de la zone fermées, Main reconstruit au cycle suivant ; la tâche
+//     planifiée ne lève jamais rien (une exception l'annulerait en silence)
+//   - arrêt propre sur SIGTERM (shutdown hook) : fin du cycle en cours, puis
+//     fermeture des connexions JDBC et MQ
+//
+//  Les zones sont traitées l'une après l'autre sur UN thread : Main.setInstance()
+//  est un singleton statique utilisé par le reste du code, on le positionne
+//  avant chaque cycle. Le parallélisme reste celui de PERF_PARALLEL_BRANCHES.java.
+//
+//  FICHIERS MODIFIÉS : 4
+//  ─────────────────
+//  1. P00_ICOR_00_Config.java   → +daemonIntervalSeconds +daemonRefreshMinutes
+//  2. IPaymentSqlHandler.java   → +isConnectionValid()
+//  3. SqlHandler.java           → +isConnectionValid()
+//  4. Main.java                 → +startDaemon() +refreshReferenceData() +runCycle()
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : P00_ICOR_00_Config.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** Délai entre deux cycles en mode daemon (fin d'un cycle → début du suivant). */
+    public int daemonIntervalSeconds = 300;
+
+    /** Rechargement de InterfaceParameter et des branches en mode daemon. */
+    public int daemonRefreshMinutes = 60;
+
+    this.daemonIntervalSeconds = Integer.parseInt(props.getProperty("daemon.interval.seconds", "300"));
+    this.daemonRefreshMinutes = Integer.parseInt(props.getProperty("daemon.refresh.minutes", "60"));
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : IPaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Main ne connaît le handler que par l'interface : la méthode y est déclarée,
+//  PaymentSqlHandler la reçoit de SqlHandler par héritage (comme les compteurs
+//  de cache de PERF_STATEMENT_CACHE.java).
+
+    /** true si la connexion JDBC répond (Connection.isValid, 5 s). */
+    boolean isConnectionValid();
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : SqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  isValid() : helper privé ajouté par PERF_PARALLEL_BRANCHES.java
+//  (SQLException → false).
+
+    public boolean isConnectionValid() {
+        return this.liqbatchConnection != null && isValid(this.liqbatchConnection);
+    }
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : Main.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// Ajouter les imports :
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Ajouter les champs :
+
+    private static final String DAEMON_FLAG = "-daemon";
+
+    /** Dernier chargement de parameter / branches (mode daemon). */
+    private long referenceDataLoadedAt = System.currentTimeMillis();
+
+// ── 4a. main() : aiguillage ──
+
+    // AVANT :
+    public static void main(String[] args) {
+        start(args, null, null);
+    }
+
+    // APRÈS :
+    public static void main(String[] args) {
+        if (args.length > 0 && DAEMON_FLAG.equals(args[0])) {
+            startDaemon(Arrays.copyOfRange(args, 1, args.length));
+        } else {
+            start(args, null, null);
+        }
+    }
+
+// ── 4b. Rechargement du référentiel de zone ──
+//   Même code que le constructeur / initProcessors(), isolé pour être rejoué.
+
+    /**
+     * Recharge InterfaceParameter et branches si le délai de rafraîchissement
+     * est dépassé, et reconstruit les processors avec les nouvelles valeurs.
+     */
+    private void refreshReferenceData(long refreshMillis) throws PaymentException, SQLException {
+        if (System.currentTimeMillis() - this.referenceDataLoadedAt < refreshMillis) {
+            return;
+        }
+        this.parameter = this.sqlHandler.getConfiguration(this.cdeName);
+        this.initProcessors(this.cdeName);
+        this.referenceDataLoadedAt = System.currentTimeMillis();
+        LOG.info("Zone " + this.cdeName + ": configuration and " + this.branches.size() + " branches reloaded");
+    }
+
+// ── 4c. Mode daemon ──
+
+    /**
+     * Garde un Main par zone et appelle process() à intervalle fixe.
+     * args[0] = zones séparées par des virgules.
+     */
+    static void startDaemon(String[] args) {
+        if (args.length == 0) {
+            LOG.error("Usage: Main -daemon ZONE1[,ZONE2...]");
+            System.exit(STATUS_ERROR);
+        }
+        P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+        long refreshMillis = TimeUnit.MINUTES.toMillis(config.daemonRefreshMinutes);
+        Map<String, Main> zones = new LinkedHashMap<>();
+        for (String zone : args[0].split(",")) {
+            zones.put(zone.trim(), null);
+        }
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ipmt-daemon");
+            thread.setDaemon(false);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            for (Map.Entry<String, Main> zone : zones.entrySet()) {
+                zone.setValue(runCycle(zone.getKey(), zone.getValue(), refreshMillis));
+            }
+        }, 0, config.daemonIntervalSeconds, TimeUnit.SECONDS);
+        // runCycle() attrape Throwable : la tâche n'est jamais annulée par une exception
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            LOG.info("Stopping daemon, waiting for current cycle");
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Main main : zones.values()) {
+                closeConnections(main);
+            }
+        }));
+    }
+
+    /**
+     * Un cycle pour une zone. Ne lève jamais rien : toute erreur (Exception ou
+     * Error) est loggée, les connexions de la zone sont fermées et le Main est
+     * jeté pour être reconstruit au cycle suivant.
+     *
+     * @return le Main à réutiliser, ou null s'il doit être reconstruit
+     */
+    private static Main runCycle(String zone, Main main, long refreshMillis) {
+        long start = System.currentTimeMillis();
+        try {
+            if (main == null || !main.sqlHandler.isConnectionValid()) {
+                closeConnections(main);
+                main = null;   // déjà fermé : le catch ne le refermera pas si le constructeur échoue
+                main = new Main(new String[]{zone}, null, null);
+            } else {
+                main.refreshReferenceData(refreshMillis);
+            }
+            Main.setInstance(main);
+            int status = main.process();
+            LOG.info("Zone " + zone + ": cycle status " + status
+                    + " in " + (System.currentTimeMillis() - start) + " ms");
+            return main;
+        } catch (Throwable e) {
+            LOG.error("Zone " + zone + ": cycle failed after "
+                    + (System.currentTimeMillis() - start) + " ms", e);
+            closeConnections(main);
+            return null;
+        }
+    }
+
+    /**
+     * Ferme la connexion JDBC et la connexion MQ d'une zone. Ne lève rien :
+     * appelé depuis runCycle() et le shutdown hook.
+     */
+    private static void closeConnections(Main main) {
+        if (main == null) {
+            return;
+        }
+        try {
+            main.sqlHandler.closeDbConnection();
+        } catch (Throwable e) {
+            LOG.warn("Zone " + main.cdeName + ": could not close JDBC connection", e);
+        }
+        try {
+            main.mqService.closeConnection();
+        } catch (Throwable e) {
+            LOG.warn("Zone " + main.cdeName + ": could not close MQ connection", e);
+        }
+    }
+
+//  closeConnection() : ajoutée à IMessageMqService par PERF_PARALLEL_BRANCHES.java.
+//  Un Main construit avec mqService = null crée son service MQ comme
+//  aujourd'hui : c'est ce champ mqService qui est fermé ici.
+
+// ── 4d. process() : réentrance ──
+//   process() ne faisait qu'un passage par JVM. Pour être rejoué :
+//    - resetCycle() au début du try de process() : état du run remis à sa
+//      valeur de départ, un log_id par cycle ;
+//    - rollbackAfterFailure() dans le catch : le cycle suivant repart d'une
+//      transaction propre, ou d'une connexion neuve si le rollback échoue.
+
+    // AVANT :
+    int process() {
+        try {
+            // ... inchangé
+        } catch (Exception e) {
+            // ... gestion existante
+        }
+    }
+
+    // APRÈS :
+    int process() {
+        try {
+            resetCycle();
+            // ... inchangé
+        } catch (Exception e) {
+            rollbackAfterFailure();
+            // ... gestion existante
+        }
+    }
+
+    /**
+     * État d'un run remis à sa valeur de départ. currentStatus est statique et
+     * cumulé par updateStatus() : sans remise à zéro, le statut d'erreur d'un
+     * cycle serait repris par tous les cycles suivants de toutes les zones.
+     */
+    private void resetCycle() throws ... {
+        currentStatus = STATUS_OK;
+        // + compteurs de run de Main (nb paiements, nb NACK...) à leur valeur de déclaration
+        this.auditHandler.loadLogId();
+    }
+
+    /**
+     * Rollback du cycle en échec. Ne lève rien : l'échec d'origine est géré
+     * par le catch de process(). Si le rollback échoue, la transaction est
+     * dans un état inconnu : les connexions sont fermées, et runCycle()
+     * reconstruit le Main au cycle suivant (isConnectionValid() = false).
+     */
+    private void rollbackAfterFailure() {
+        try {
+            this.sqlHandler.rollback();
+        } catch (SQLException e) {
+            LOG.error("Zone " + this.cdeName + ": rollback failed, closing connections", e);
+            closeConnections(this);
+        }
+    }
+
+//  STATUS_OK : valeur initiale de la déclaration de currentStatus. resetCycle()
+//  dans le try : un échec de loadLogId() passe par la gestion existante.
+//  En one-shot, resetCycle() ne change rien (valeurs déjà initiales).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ P00_ICOR_00_Config.java          ║ +daemonIntervalSeconds                    ║
+  ║                                  ║ +daemonRefreshMinutes                     ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ IPaymentSqlHandler.java          ║ +isConnectionValid()                      ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ SqlHandler.java                  ║ +isConnectionValid()                      ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ Main.java                        ║ main() : aiguillage -daemon               ║
+  ║                                  ║ +startDaemon() +runCycle()                ║
+  ║                                  ║ +closeConnections() (JDBC + MQ)           ║
+  ║                                  ║ +refreshReferenceData()                   ║
+  ║                                  ║ process() : +resetCycle() (currentStatus, ║
+  ║                                  ║ log_id) +rollbackAfterFailure()           ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Lancement : java ... Main -daemon ZONE1,ZONE2
+  Sans -daemon : Main.start() + System.exit() comme avant.
+*/
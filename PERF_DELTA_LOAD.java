@@ -0,0 +1,302 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : CHARGEMENT INCRÉMENTAL DES WORKING TABLES                    ║
+// ║        Marque SCN par branche dans TBP_IPMT_LOAD_HWM + fenêtre de reprise  ║
+// ║        load.mode=FULL → comportement actuel (reprise / recovery)           ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  À chaque run, INSERT_OUT_DIFF et INSERT_ROLE_DIFF rescannent TOUTES les
+//  IMT sortantes des branches et les comparent aux tables *_DATA pour
+//  calculer le diff. Coût ∝ volume total, pas ∝ ce qui a changé. Avec un
+//  ordonnancement toutes les 5 minutes, on recompare des mois d'historique
+//  pour trouver 3 nouveaux messages.
+//
+//  APRÈS (mode DELTA) : une IMT source n'entre dans le diff que si
+//    (a) elle a changé depuis le dernier run réussi de sa branche :
+//        O.ORA_ROWSCN > marque SCN de la branche, OU
+//    (b) sa date business est dans la fenêtre de reprise :
+//        O.IMT_DTE_BUSINESS >= trunc(sysdate) - load.retry.days
+//  Le reste de la requête (comparaison aux *_DATA) est inchangé et écarte
+//  ce qui est déjà traité.
+//
+//  (a) est un vrai marqueur de changement, sans colonne à ajouter côté
+//  Loan IQ : ORA_ROWSCN est un majorant du SCN de commit de la dernière
+//  modification de la ligne (précision bloc par défaut). Une ligne créée OU
+//  modifiée après la marque, quelle que soit sa date business, a donc
+//  ORA_ROWSCN > marque. L'imprécision ne joue que dans un sens : des lignes
+//  non modifiées d'un bloc touché sont restagées, puis écartées par le diff.
+//  (b) couvre les lignes NON modifiées mais pas encore traitées (paiement
+//  rejeté au contrôle, repris après un changement de jour) : elles restent
+//  candidates pendant load.retry.days jours. Au-delà, un run load.mode=FULL
+//  (hebdomadaire par exemple) les reprend.
+//
+//  La marque est le SCN de la base lu AVANT le chargement : tout ce qui est
+//  commité avant est vu par les INSERT ... SELECT du run, tout ce qui est
+//  commité après a un SCN de commit supérieur et sera vu au run suivant.
+//  Elle est écrite pour CHAQUE branche du run, qu'elle ait des lignes de
+//  diff ou non (indépendante de TBP_IPMT_IMT_OUT_DIFF), et n'avance qu'après
+//  un traitement des paiements sans exception. Un run en échec laisse la
+//  marque en place → le run suivant restage la même fenêtre.
+//  Branche sans marque (nouvelle branche, table vidée) → chargement complet.
+//
+//  Coût : le scan de la source reste complet (ORA_ROWSCN n'est pas
+//  indexable et Loan IQ n'a pas de colonne de modification indexée), mais
+//  la comparaison aux *_DATA et les INSERT ne portent plus que sur les
+//  lignes changées ou dans la fenêtre. Le gain est sur le diff et l'écriture,
+//  pas sur la lecture de la source.
+//
+//  Mode FULL : ni lecture du SCN ni marque. La table TBP_IPMT_LOAD_HWM et le
+//  grant DBMS_FLASHBACK ne sont requis qu'en mode DELTA.
+//
+//  FICHIERS MODIFIÉS : 6
+//  ─────────────────
+//  0. DDL (mode DELTA seulement) → +TBP_IPMT_LOAD_HWM, grant DBMS_FLASHBACK
+//  1. P00_ICOR_00_Config.java   → +loadMode +loadRetryDays
+//  2. PaymentSqlQueries.java    → +INSERT_OUT_DIFF_DELTA +INSERT_ROLE_DIFF_DELTA
+//                                 +SELECT_CURRENT_SCN +MERGE_LOAD_HWM
+//                                 (constantes existantes inchangées)
+//  3. IPaymentSqlHandler.java   → loadWorkingTables(branches, delta)
+//                                 +getCurrentScn() +updateLoadHighWaterMark()
+//  4. PaymentSqlHandler.java    → implémentation
+//  5. Main.java                 → process()
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 0 : DDL (schéma LIQBATCH) — à passer avant d'activer load.mode=DELTA
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  CREATE TABLE TBP_IPMT_LOAD_HWM (
+      HWM_CDE_BRANCH      VARCHAR2(8)  NOT NULL,
+      HWM_NUM_SCN         NUMBER       NOT NULL,
+      HWM_TSP_UPDATE      TIMESTAMP    DEFAULT SYSTIMESTAMP NOT NULL,
+      CONSTRAINT PK_IPMT_LOAD_HWM PRIMARY KEY (HWM_CDE_BRANCH)
+  );
+
+  -- Lecture du SCN courant par le user batch
+  GRANT EXECUTE ON SYS.DBMS_FLASHBACK TO LIQBATCH;
+
+  Recovery : DELETE FROM TBP_IPMT_LOAD_HWM WHERE HWM_CDE_BRANCH = '...'
+             ou load.mode=FULL pour un run.
+*/
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : P00_ICOR_00_Config.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** FULL = purge + rechargement complet (actuel). DELTA = changements depuis la marque. */
+    public String loadMode = "FULL";
+
+    /** Mode DELTA : jours de date business toujours restagés (reprise des non traités). */
+    public int loadRetryDays = 7;
+
+    this.loadMode = props.getProperty("load.mode", "FULL").trim().toUpperCase();
+    this.loadRetryDays = Integer.parseInt(props.getProperty("load.retry.days", "7"));
+
+    public boolean isDeltaLoad() {
+        return "DELTA".equals(this.loadMode);
+    }
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : PaymentSqlQueries.java — 4 nouvelles constantes
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  INSERT_OUT_DIFF se termine par "and TRIM(O.IMT_CDE_BRANCH) %s"
+//  INSERT_ROLE_DIFF se termine par "and TRIM(OUT.IMT_CDE_BRANCH) %s"
+//  → on concatène le filtre APRÈS le %s. Son seul "?" (load.retry.days)
+//    vient donc après les branches : params = {branches..., retryDays}.
+//  ORA_ROWSCN est lu sur l'alias de la table source d'IMT (O / OUT), qui
+//  est une table Loan IQ et non une vue.
+
+    private static final String LOAD_HWM_TABLE = LIQBATCHSCHEMA + ".TBP_IPMT_LOAD_HWM";
+
+    public static final String INSERT_OUT_DIFF_DELTA = INSERT_OUT_DIFF +
+            " and (O.ORA_ROWSCN > nvl((select W.HWM_NUM_SCN from " + LOAD_HWM_TABLE + " W" +
+            "                          where W.HWM_CDE_BRANCH = TRIM(O.IMT_CDE_BRANCH)), -1)" +
+            "      or O.IMT_DTE_BUSINESS >= trunc(sysdate) - ?)";
+
+    public static final String INSERT_ROLE_DIFF_DELTA = INSERT_ROLE_DIFF +
+            " and (OUT.ORA_ROWSCN > nvl((select W.HWM_NUM_SCN from " + LOAD_HWM_TABLE + " W" +
+            "                            where W.HWM_CDE_BRANCH = TRIM(OUT.IMT_CDE_BRANCH)), -1)" +
+            "      or OUT.IMT_DTE_BUSINESS >= trunc(sysdate) - ?)";
+
+    public static final String SELECT_CURRENT_SCN =
+            "select to_char(DBMS_FLASHBACK.GET_SYSTEM_CHANGE_NUMBER) as CURRENT_SCN from dual";
+
+    // Une ligne par branche, avec ou sans diff. Jamais de recul : greatest().
+    public static final String MERGE_LOAD_HWM = "merge into " + LOAD_HWM_TABLE + " W" +
+            " using (select ? as BRANCH, to_number(?) as SCN from dual) S" +
+            " on (W.HWM_CDE_BRANCH = S.BRANCH)" +
+            " when matched then update set W.HWM_NUM_SCN = greatest(W.HWM_NUM_SCN, S.SCN)," +
+            "      W.HWM_TSP_UPDATE = systimestamp" +
+            " when not matched then insert (HWM_CDE_BRANCH, HWM_NUM_SCN) values (S.BRANCH, S.SCN)";
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : IPaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    // AVANT :
+    void loadWorkingTables(List<String> branches) throws SQLException;
+
+    // APRÈS :
+    void loadWorkingTables(List<String> branches) throws SQLException;
+
+    /**
+     * delta = true : ne stage que les IMT changées depuis la marque de leur
+     * branche, ou dans la fenêtre de reprise.
+     */
+    void loadWorkingTables(List<String> branches, boolean delta) throws SQLException;
+
+    /** SCN courant de la base, à lire AVANT loadWorkingTables(). */
+    String getCurrentScn() throws SQLException;
+
+    /**
+     * Pose la marque scn sur chaque branche. À appeler uniquement après un
+     * traitement réussi, avec le SCN lu avant le chargement.
+     */
+    void updateLoadHighWaterMark(List<String> branches, String scn) throws SQLException;
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : PaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    // AVANT :
+    @Override
+    public void loadWorkingTables(List<String> branches) throws SQLException {
+        String inClause = buildInClause(branches.size());
+        Object[] params = toParams(branches);
+        updateQuery(String.format(INSERT_OUT_DIFF, inClause), params);
+        updateQuery(String.format(INSERT_ROLE_DIFF, inClause), params);
+        updateQuery(String.format(INSERT_OUT_DATA, inClause), params);
+        updateQuery(String.format(INSERT_ROLE_DATA, inClause), params);
+    }
+
+    // APRÈS :
+    @Override
+    public void loadWorkingTables(List<String> branches) throws SQLException {
+        loadWorkingTables(branches, false);
+    }
+
+    @Override
+    public void loadWorkingTables(List<String> branches, boolean delta) throws SQLException {
+        String inClause = buildInClause(branches.size());
+        Object[] params = toParams(branches);
+        if (delta) {
+            Object[] deltaParams = Arrays.copyOf(params, params.length + 1);
+            deltaParams[params.length] = P00_ICOR_00_Config.getInstance().loadRetryDays;
+            updateQuery(String.format(INSERT_OUT_DIFF_DELTA, inClause), deltaParams);
+            updateQuery(String.format(INSERT_ROLE_DIFF_DELTA, inClause), deltaParams);
+        } else {
+            updateQuery(String.format(INSERT_OUT_DIFF, inClause), params);
+            updateQuery(String.format(INSERT_ROLE_DIFF, inClause), params);
+        }
+        updateQuery(String.format(INSERT_OUT_DATA, inClause), params);
+        updateQuery(String.format(INSERT_ROLE_DATA, inClause), params);
+    }
+
+    @Override
+    public String getCurrentScn() throws SQLException {
+        try (PreparedStatement ps = this.prepareStatement(SELECT_CURRENT_SCN, new Object[0]);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getString("CURRENT_SCN");
+        }
+    }
+
+    // SCN en texte : prepareStatement() ne binde que String / Integer, et un
+    // SCN dépasse Integer.MAX_VALUE. to_number(?) côté SQL.
+    @Override
+    public void updateLoadHighWaterMark(List<String> branches, String scn) throws SQLException {
+        for (String branch : branches) {
+            updateQuery(MERGE_LOAD_HWM, new Object[]{branch.trim(), scn});
+        }
+    }
+
+//  purgeWorkingTables() ne change pas : PURGE_OUT_DIFF / PURGE_ROLE_DIFF ne
+//  vident que les tables *_DIFF du run précédent, petites en mode DELTA.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 5 : Main.java — process()
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  SCN et marque en mode DELTA seulement : le chemin par défaut (FULL)
+//  n'exécute aucune requête de plus qu'aujourd'hui. 1er run DELTA d'une
+//  branche : pas de marque → chargement complet (nvl(..., -1)), puis marque.
+//  Une marque restée d'une période DELTA antérieure est plus ancienne que
+//  les runs FULL intermédiaires : on restage plus, jamais moins. Mode parallèle (PERF_PARALLEL_BRANCHES.java) : une branche
+//  en échec lève une exception → aucune marque n'avance, les branches OK
+//  sont simplement re-comparées au run suivant.
+
+    // AVANT (PERF_PARALLEL_BRANCHES.java) :
+            // Clean and load payment tables
+            this.sqlHandler.purgeWorkingTables(branches);
+            this.sqlHandler.loadWorkingTables(branches);
+            this.sqlHandler.commit();
+            // Create, control, transform and enrich payments
+            P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+            if (config.parallelWorkers > 1 && this.branches.size() > 1) {
+                return processBranchesInParallel(config.parallelWorkers);
+            }
+            if (config.paymentChunkSize <= 0) {
+                List<Payment> payments = this.paymentProcessor.buildNewPayments();
+                return processPayments(payments);
+            }
+            return processPaymentsByChunk(config.paymentFetchSize, config.paymentChunkSize);
+
+    // APRÈS :
+            // Clean and load payment tables
+            P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+            String loadScn = config.isDeltaLoad() ? this.sqlHandler.getCurrentScn() : null;
+            this.sqlHandler.purgeWorkingTables(branches);
+            this.sqlHandler.loadWorkingTables(branches, config.isDeltaLoad());
+            this.sqlHandler.commit();
+            // Create, control, transform and enrich payments
+            int status;
+            if (config.parallelWorkers > 1 && this.branches.size() > 1) {
+                status = processBranchesInParallel(config.parallelWorkers);
+            } else if (config.paymentChunkSize <= 0) {
+                List<Payment> payments = this.paymentProcessor.buildNewPayments();
+                status = processPayments(payments);
+            } else {
+                status = processPaymentsByChunk(config.paymentFetchSize, config.paymentChunkSize);
+            }
+            // La marque n'avance qu'une fois les paiements traités sans exception
+            if (loadScn != null) {
+                this.sqlHandler.updateLoadHighWaterMark(branches, loadScn);
+            }
+            this.sqlHandler.commit();
+            return status;
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ DDL (DELTA)                      ║ +TBP_IPMT_LOAD_HWM, grant DBMS_FLASHBACK  ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ P00_ICOR_00_Config.java          ║ +loadMode +loadRetryDays +isDeltaLoad()   ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlQueries.java           ║ +2 *_DIFF_DELTA (ORA_ROWSCN + fenêtre)    ║
+  ║                                  ║ +SELECT_CURRENT_SCN +MERGE_LOAD_HWM       ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ IPaymentSqlHandler.java          ║ +loadWorkingTables(branches, delta)       ║
+  ║                                  ║ +getCurrentScn()                          ║
+  ║                                  ║ +updateLoadHighWaterMark(branches, scn)   ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandler.java           ║ implémentation (FULL = code actuel)       ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ Main.java                        ║ process() DELTA : SCN avant chargement,   ║
+  ║                                  ║ marque après traitement                   ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Lecture de la source : inchangée (scan complet, ORA_ROWSCN non indexable).
+  Diff et INSERT : O(historique) → O(lignes changées + fenêtre de reprise).
+*/
@@ -0,0 +1,1039 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : INSTRUMENTATION PAR REQUÊTE, PAR ÉTAPE ET PAR APPEL MQ       ║
+// ║        Histogrammes de latence + nb de lignes, exposés en JMX (MXBean)     ║
+// ║        et résumés en fin de run (1 ligne clé=valeur par compteur)          ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  Seule la durée totale du run est connue : impossible de dire si un run
+//  lent vient de loadWorkingTables, getNewPayments, de l'enrichissement, de
+//  la séquence, des envois MQ ou de ResponseProcessor.
+//
+//  APRÈS : un registre unique, BatchMetrics, avec trois familles de timers :
+//
+//   query  une par CONSTANTE de PaymentSqlQueries (SELECT_NEW_PAYMENTS, ...)
+//          mesurée dans SqlHandler : durée des execute*(), lignes mises
+//          à jour (DML, batch) ; lignes LUES ajoutées par les boucles de
+//          lecture (curseur de paiements, fetchBulk...) sous le même nom
+//   stage  une par étape de Main.process() / PaymentProcessor
+//   mq     une par méthode de IMessageMqService (proxy décorateur)
+//
+//  Chaque timer = count, rows, errors, total, max + histogramme à buckets
+//  fixes (4 sous-buckets par puissance de 2 de µs, précision ≤ 25 %) en
+//  LongAdder / AtomicLongArray : pas de verrou, pas d'allocation par mesure,
+//  utilisable par les workers de PERF_PARALLEL_BRANCHES.java.
+//
+//  Le nom de requête est résolu UNE fois par texte SQL distinct (cache) :
+//  égalité avec une constante, sinon correspondance avec son gabarit %s
+//  (String.format + branchFilter / buildInClause). Aucun texte SQL ni
+//  aucune donnée ne sert de nom : cardinalité bornée au nb de constantes
+//  (+ "OTHER").
+//
+//  Coût : 1 proxy par statement préparé (rien par ligne lue : le ResultSet
+//  reste celui du driver, les boucles ajoutent leur total en un appel),
+//  2 nanoTime() et quelques incréments par exécution — négligeable devant
+//  un aller-retour JDBC ou MQ. metrics.enabled=false rend les objets JDBC
+//  et MQ d'origine.
+//
+//  Résumé de fin de run : valeurs DEPUIS LE RÉSUMÉ PRÉCÉDENT (différence
+//  des compteurs et des histogrammes). En one-shot c'est le run ; en mode
+//  daemon (PERF_DAEMON_MODE.java), le cycle. JMX reste cumulatif.
+//
+//  FICHIERS MODIFIÉS : 7
+//  ─────────────────
+//  1. P00_ICOR_00_Config.java              → +metricsEnabled +metricsJmxEnabled
+//  2. BatchMetrics.java (NOUVEAU)          → registre, timers, proxy JDBC, résumé
+//  3. BatchMetricsMXBean.java (NOUVEAU)    → interface JMX
+//  4. SqlHandler.java                      → prepareStatement / prepareCachedStatement instrumentés,
+//                                            lignes lues (PaymentSqlHandler)
+//  5. InstrumentedMessageMqService.java (NOUVEAU, package mq) → décorateur
+//  6. Main.java                            → étapes, enregistrement JMX, résumé
+//  7. PaymentProcessor.java                → étape enrichPayments (+ getSeqNumber() de PaymentSqlHandler)
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : P00_ICOR_00_Config.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** Instrumentation requêtes / étapes / MQ. false = objets d'origine, aucun proxy. */
+    public boolean metricsEnabled = true;
+    public boolean metricsJmxEnabled = true;
+
+    this.metricsEnabled = Boolean.parseBoolean(props.getProperty("metrics.enabled", "true"));
+    this.metricsJmxEnabled = Boolean.parseBoolean(props.getProperty("metrics.jmx.enabled", "true"));
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : BatchMetrics.java (NOUVEAU — package com.bnpparibas.atlanticc.ipmt.metrics)
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Nouveau package : utilisé par sql.handler.impl, process et mq, il ne doit
+//  dépendre d'aucun des trois.
+
+package com.bnpparibas.atlanticc.ipmt.metrics;
+
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registre des mesures du batch : requêtes SQL par constante, étapes du
+ * traitement, appels MQ. Singleton, thread-safe, sans verrou sur le chemin
+ * de mesure.
+ */
+public final class BatchMetrics implements BatchMetricsMXBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchMetrics.class);
+    private static final BatchMetrics INSTANCE = new BatchMetrics();
+    private static final String OBJECT_NAME = "com.bnpparibas.atlanticc.ipmt:type=BatchMetrics";
+    private static final String OTHER_QUERY = "OTHER";
+    private static final String BULK_PREFIX = "/* ";
+
+    private final boolean enabled = P00_ICOR_00_Config.getInstance().metricsEnabled;
+    private final Map<String, Timer> queries = new ConcurrentHashMap<>();
+    private final Map<String, Timer> stages = new ConcurrentHashMap<>();
+    private final Map<String, Timer> mqCalls = new ConcurrentHashMap<>();
+
+    /** Gabarits des constantes SQL : nom → motif (les %s deviennent .*). */
+    private final Map<String, Pattern> queryTemplates = new ConcurrentHashMap<>();
+    private final Map<String, String> exactQueries = new ConcurrentHashMap<>();
+    /** Texte SQL effectif → nom résolu. Borné par le nb de textes distincts. */
+    private final Map<String, String> queryNames = new ConcurrentHashMap<>();
+    /** "famille/nom" → compteurs au dernier logSummary(), pour les différences. */
+    private final Map<String, Counts> lastSummary = new ConcurrentHashMap<>();
+
+    private BatchMetrics() {
+    }
+
+    public static BatchMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    // ── Enregistrement des constantes SQL ──
+
+    /**
+     * Enregistre les constantes String statiques de la classe comme noms de
+     * requête (PaymentSqlQueries). Appelé une fois au chargement du handler.
+     */
+    public void registerQueries(Class<?> queriesClass) {
+        for (Field field : queriesClass.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class) {
+                continue;
+            }
+            try {
+                field.setAccessible(true);
+                String sql = (String) field.get(null);
+                if (sql == null) {
+                    continue;
+                }
+                if (sql.contains("%s")) {
+                    StringBuilder regex = new StringBuilder();
+                    String[] parts = sql.split("%s", -1);
+                    for (int i = 0; i < parts.length; i++) {
+                        if (i > 0) {
+                            regex.append(".*");
+                        }
+                        regex.append(Pattern.quote(parts[i]));
+                    }
+                    // getMsgKeyForItl concatène le filtre en fin de requête
+                    this.queryTemplates.put(field.getName(), Pattern.compile(regex + ".*", Pattern.DOTALL));
+                } else {
+                    this.exactQueries.put(sql, field.getName());
+                    this.queryTemplates.put(field.getName(), Pattern.compile(Pattern.quote(sql) + " .*", Pattern.DOTALL));
+                }
+            } catch (IllegalAccessException e) {
+                LOG.warn("Cannot read query constant " + field.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Nom de la constante qui a produit ce texte SQL, "OTHER" sinon.
+     * Si plusieurs gabarits correspondent, le plus long (le plus spécifique) gagne.
+     */
+    String queryName(String sql) {
+        String name = this.queryNames.get(sql);
+        if (name == null) {
+            name = this.exactQueries.get(sql);
+            if (name == null) {
+                name = bulkQueryName(sql);
+            }
+            if (name == null) {
+                int best = -1;
+                for (Map.Entry<String, Pattern> template : this.queryTemplates.entrySet()) {
+                    int length = template.getValue().pattern().length();
+                    if (length > best && template.getValue().matcher(sql).matches()) {
+                        name = template.getKey();
+                        best = length;
+                    }
+                }
+            }
+            if (name == null) {
+                name = OTHER_QUERY;
+            }
+            this.queryNames.put(sql, name);
+        }
+        return name;
+    }
+
+    /**
+     * Requête groupée de buildBulkQuery() (PERF_BULK_ENRICHMENT.java) :
+     * préfixe "/* NOM xN" du texte, comptée sous la constante NOM si elle est connue.
+     */
+    private String bulkQueryName(String sql) {
+        if (!sql.startsWith(BULK_PREFIX)) {
+            return null;
+        }
+        int end = sql.indexOf(' ', BULK_PREFIX.length());
+        String name = end < 0 ? null : sql.substring(BULK_PREFIX.length(), end);
+        return name != null && this.queryTemplates.containsKey(name) ? name : null;
+    }
+
+    // ── Points de mesure ──
+
+    /**
+     * Rend un statement dont les execute*() sont mesurés sous le nom de la
+     * constante SQL. À appeler APRÈS le binding des paramètres.
+     */
+    public PreparedStatement instrument(PreparedStatement ps, String sql) {
+        if (!this.enabled) {
+            return ps;
+        }
+        Timer timer = timer(this.queries, queryName(sql));
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new StatementTimer(ps, timer));
+    }
+
+    /**
+     * Lignes lues par une boucle sur le ResultSet de sql, ajoutées au timer
+     * de sa requête (l'exécution, elle, est comptée par instrument()).
+     */
+    public void addRows(String sql, long rows) {
+        if (this.enabled) {
+            timer(this.queries, queryName(sql)).addRows(rows);
+        }
+    }
+
+    /**
+     * Mesure un bloc : try (BatchMetrics.Span span = metrics.stage("loadWorkingTables")) { ... }
+     */
+    public Span stage(String name) {
+        return new Span(this.enabled ? timer(this.stages, name) : null);
+    }
+
+    /** Mesure ponctuelle d'une étape démarrée à startNanos (System.nanoTime()). */
+    public void recordStage(String name, long startNanos, long rows) {
+        if (this.enabled) {
+            timer(this.stages, name).record(System.nanoTime() - startNanos, rows, false);
+        }
+    }
+
+    public void recordMq(String method, long startNanos, boolean error) {
+        if (this.enabled) {
+            timer(this.mqCalls, method).record(System.nanoTime() - startNanos, error ? 0 : 1, error);
+        }
+    }
+
+    private static Timer timer(Map<String, Timer> timers, String name) {
+        Timer timer = timers.get(name);
+        return timer != null ? timer : timers.computeIfAbsent(name, k -> new Timer());
+    }
+
+    // ── JMX ──
+
+    /**
+     * Enregistre le MXBean sur le MBeanServer de la plateforme. Un échec est
+     * journalisé sans interrompre le batch.
+     */
+    public void registerMBean() {
+        if (!this.enabled || !P00_ICOR_00_Config.getInstance().metricsJmxEnabled) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            LOG.warn("Cannot register metrics MBean " + OBJECT_NAME + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, TimerStats> getQueries() {
+        return snapshot(this.queries);
+    }
+
+    @Override
+    public Map<String, TimerStats> getStages() {
+        return snapshot(this.stages);
+    }
+
+    @Override
+    public Map<String, TimerStats> getMqCalls() {
+        return snapshot(this.mqCalls);
+    }
+
+    @Override
+    public void reset() {
+        this.queries.clear();
+        this.stages.clear();
+        this.mqCalls.clear();
+        this.lastSummary.clear();
+    }
+
+    private static Map<String, TimerStats> snapshot(Map<String, Timer> timers) {
+        Map<String, TimerStats> stats = new TreeMap<>();
+        timers.forEach((name, timer) -> stats.put(name, timer.stats()));
+        return stats;
+    }
+
+    // ── Résumé de fin de run ──
+
+    /**
+     * Une ligne "IPMT_METRICS clé=valeur ..." par timer actif depuis le
+     * résumé précédent, triées par famille puis par nom. Valeurs du run (du
+     * cycle en mode daemon) : différence avec les compteurs du résumé
+     * précédent ; maxMs est la borne haute du plus haut bucket du run.
+     * Appelé par un seul thread à la fois (fin de process()).
+     */
+    public void logSummary(String zone, int status, long runMillis) {
+        if (!this.enabled) {
+            return;
+        }
+        LOG.info("IPMT_METRICS kind=run zone=" + zone + " status=" + status + " durationMs=" + runMillis);
+        Map<String, Map<String, Timer>> families = new LinkedHashMap<>();
+        families.put("stage", new TreeMap<>(this.stages));
+        families.put("query", new TreeMap<>(this.queries));
+        families.put("mq", new TreeMap<>(this.mqCalls));
+        families.forEach((kind, timers) -> timers.forEach((name, timer) -> {
+            Counts now = timer.counts();
+            Counts run = now.minus(this.lastSummary.put(kind + "/" + name, now));
+            if (run.count == 0 && run.rows == 0) {
+                return;
+            }
+            TimerStats s = run.stats(run.maxBucketNanos());
+            LOG.info(String.format(
+                    "IPMT_METRICS kind=%s name=%s count=%d rows=%d errors=%d totalMs=%.1f meanMs=%.3f"
+                            + " p50Ms=%.3f p95Ms=%.3f p99Ms=%.3f maxMs=%.3f",
+                    kind, name, s.getCount(), s.getRows(), s.getErrors(), s.getTotalMillis(), s.getMeanMillis(),
+                    s.getP50Millis(), s.getP95Millis(), s.getP99Millis(), s.getMaxMillis()));
+        }));
+    }
+
+    // ════════════════════════════════════════════════════════════════════
+    //  Timer : compteurs + histogramme à buckets fixes
+    // ════════════════════════════════════════════════════════════════════
+
+    static final class Timer {
+
+        /** 4 sous-buckets par puissance de 2 de µs, jusqu'à 2^40 µs (~12 jours). */
+        private static final int SUB_BUCKETS = 4;
+        private static final int BUCKETS = 40 * SUB_BUCKETS;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos, long rowCount, boolean error) {
+            this.count.increment();
+            this.rows.add(rowCount);
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulate(nanos);
+            this.buckets.incrementAndGet(bucket(nanos / 1000));
+            if (error) {
+                this.errors.increment();
+            }
+        }
+
+        /** Lignes lues après l'exécution, sans compter d'exécution. */
+        void addRows(long rowCount) {
+            this.rows.add(rowCount);
+        }
+
+        static int bucket(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) Math.max(micros, 0);
+            }
+            int octave = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >>> (octave - 2)) & (SUB_BUCKETS - 1);
+            return Math.min((octave - 1) * SUB_BUCKETS + sub, BUCKETS - 1);
+        }
+
+        /** Plus grande valeur (µs) rangée dans le bucket. */
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int octave = bucket / SUB_BUCKETS + 1;
+            int sub = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1L) << (octave - 2)) - 1;
+        }
+
+        /** Compteurs bruts à l'instant t (pas atomique entre compteurs : écart d'une mesure au plus). */
+        Counts counts() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = this.buckets.get(i);
+            }
+            return new Counts(this.count.sum(), this.rows.sum(), this.errors.sum(), this.totalNanos.sum(), counts);
+        }
+
+        /** Cumul depuis la création du timer (JMX), avec le max exact. */
+        TimerStats stats() {
+            return counts().stats(this.maxNanos.get());
+        }
+    }
+
+    /** Compteurs bruts d'un timer ; la différence de deux Counts donne un run. */
+    static final class Counts {
+        final long count;
+        final long rows;
+        final long errors;
+        final long totalNanos;
+        final long[] buckets;
+
+        Counts(long count, long rows, long errors, long totalNanos, long[] buckets) {
+            this.count = count;
+            this.rows = rows;
+            this.errors = errors;
+            this.totalNanos = totalNanos;
+            this.buckets = buckets;
+        }
+
+        /** this - previous ; previous null ou postérieur (timer recréé par reset()) → this. */
+        Counts minus(Counts previous) {
+            if (previous == null || previous.count > this.count || previous.rows > this.rows) {
+                return this;
+            }
+            long[] delta = new long[this.buckets.length];
+            for (int i = 0; i < delta.length; i++) {
+                delta[i] = this.buckets[i] - previous.buckets[i];
+            }
+            return new Counts(this.count - previous.count, this.rows - previous.rows,
+                    this.errors - previous.errors, this.totalNanos - previous.totalNanos, delta);
+        }
+
+        /** Borne haute (ns) du plus haut bucket non vide : le max d'un run, à 25 % près. */
+        long maxBucketNanos() {
+            for (int i = this.buckets.length - 1; i >= 0; i--) {
+                if (this.buckets[i] > 0) {
+                    return Timer.upperBound(i) * 1000;
+                }
+            }
+            return 0;
+        }
+
+        TimerStats stats(long maxNanos) {
+            long total = 0;
+            for (long bucketCount : this.buckets) {
+                total += bucketCount;
+            }
+            double totalMillis = this.totalNanos / 1e6;
+            return new TimerStats(this.count, this.rows, this.errors, totalMillis,
+                    this.count == 0 ? 0 : totalMillis / this.count,
+                    percentileMillis(total, 0.50), percentileMillis(total, 0.95),
+                    percentileMillis(total, 0.99), maxNanos / 1e6);
+        }
+
+        private double percentileMillis(long total, double percentile) {
+            long rank = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < this.buckets.length; i++) {
+                seen += this.buckets[i];
+                if (seen >= rank && this.buckets[i] > 0) {
+                    return Timer.upperBound(i) / 1000.0;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Photographie d'un timer, exposée en JMX (CompositeData) et dans le résumé.
+     * Les percentiles sont la borne haute de leur bucket.
+     */
+    public static final class TimerStats {
+
+        private final long count;
+        private final long rows;
+        private final long errors;
+        private final double totalMillis;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p95Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+
+        @ConstructorProperties({"count", "rows", "errors", "totalMillis", "meanMillis",
+                "p50Millis", "p95Millis", "p99Millis", "maxMillis"})
+        public TimerStats(long count, long rows, long errors, double totalMillis, double meanMillis,
+                          double p50Millis, double p95Millis, double p99Millis, double maxMillis) {
+            this.count = count;
+            this.rows = rows;
+            this.errors = errors;
+            this.totalMillis = totalMillis;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p95Millis = p95Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+
+        public long getCount() { return this.count; }
+        public long getRows() { return this.rows; }
+        public long getErrors() { return this.errors; }
+        public double getTotalMillis() { return this.totalMillis; }
+        public double getMeanMillis() { return this.meanMillis; }
+        public double getP50Millis() { return this.p50Millis; }
+        public double getP95Millis() { return this.p95Millis; }
+        public double getP99Millis() { return this.p99Millis; }
+        public double getMaxMillis() { return this.maxMillis; }
+    }
+
+    // ════════════════════════════════════════════════════════════════════
+    //  Span : mesure d'un bloc (try-with-resources)
+    // ════════════════════════════════════════════════════════════════════
+
+    public static final class Span implements AutoCloseable {
+
+        private final Timer timer;
+        private final long start = System.nanoTime();
+        private long rows;
+
+        private Span(Timer timer) {
+            this.timer = timer;
+        }
+
+        /** Nb d'éléments traités par l'étape (paiements, messages, lignes). */
+        public void rows(long rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public void close() {
+            if (this.timer != null) {
+                this.timer.record(System.nanoTime() - this.start, this.rows, false);
+            }
+        }
+    }
+
+    // ════════════════════════════════════════════════════════════════════
+    //  Proxy JDBC : execute*() du statement uniquement
+    // ════════════════════════════════════════════════════════════════════
+
+    /**
+     * Seuls les execute*() sont mesurés ; tout autre appel (setFetchSize,
+     * unwrap, close...) passe au statement d'origine sans mesure. Le
+     * ResultSet rendu est celui du driver : aucun coût par ligne lue.
+     */
+    private static final class StatementTimer implements InvocationHandler {
+
+        private final PreparedStatement target;
+        private final Timer timer;
+
+        StatementTimer(PreparedStatement target, Timer timer) {
+            this.target = target;
+            this.timer = timer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute")) {
+                return call(method, args);
+            }
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = call(method, args);
+            } catch (Throwable t) {
+                this.timer.record(System.nanoTime() - start, 0, true);
+                throw t;
+            }
+            this.timer.record(System.nanoTime() - start, updatedRows(result), false);
+            return result;
+        }
+
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(this.target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Lignes mises à jour (executeUpdate / executeBatch) ; 0 pour un
+         * executeQuery : les lignes lues sont ajoutées par addRows().
+         */
+        private static long updatedRows(Object result) {
+            if (result instanceof Integer || result instanceof Long) {
+                return ((Number) result).longValue();
+            }
+            long rows = 0;
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+                }
+            }
+            return rows;
+        }
+    }
+}
+
+//  ⚠️ Un statement n'est utilisé que par un thread à la fois (une connexion
+//     par worker) : seuls les Timer partagés sont concurrents.
+//  ⚠️ ps.unwrap() passe au delegate : les appels à l'API Oracle
+//     (createOracleArray...) et setFetchSize() fonctionnent inchangés.
+//  Latence d'un SELECT = executeQuery(), qui comprend l'exécution et le
+//  1er aller-retour de fetch (prefetch). La suite du fetch est comptée dans
+//  l'étape qui lit le ResultSet (buildPayments, enrichPayments...). Les
+//  lignes lues sont ajoutées au timer de la requête par la boucle de
+//  lecture (addRows(), ÉTAPE 4d) : un appel par boucle, pas par ligne.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : BatchMetricsMXBean.java (NOUVEAU, même package)
+// ════════════════════════════════════════════════════════════════════════════════
+
+package com.bnpparibas.atlanticc.ipmt.metrics;
+
+import java.util.Map;
+
+/**
+ * Vue JMX de BatchMetrics (com.bnpparibas.atlanticc.ipmt:type=BatchMetrics).
+ * Chaque Map est exposée en TabularData : nom → TimerStats.
+ */
+public interface BatchMetricsMXBean {
+
+    Map<String, BatchMetrics.TimerStats> getQueries();
+
+    Map<String, BatchMetrics.TimerStats> getStages();
+
+    Map<String, BatchMetrics.TimerStats> getMqCalls();
+
+    void reset();
+}
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : SqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// Ajouter l'import :
+import com.bnpparibas.atlanticc.ipmt.metrics.BatchMetrics;
+
+    private static final BatchMetrics METRICS = BatchMetrics.getInstance();
+
+// ── 4a. prepareStatement() : le statement rendu est instrumenté ──
+
+    // AVANT :
+    ps = this.liqbatchConnection.prepareStatement(query);
+    bindParameters(ps, parameters);
+    return ps;
+
+    // APRÈS :
+    ps = this.liqbatchConnection.prepareStatement(query);
+    bindParameters(ps, parameters);
+    return METRICS.instrument(ps, query);
+
+// ── 4b. prepareCachedStatement() (PERF_STATEMENT_CACHE.java) ──
+//   Le cache garde le statement BRUT (binding sans proxy) ; le proxy est
+//   créé à chaque retour.
+
+    // AVANT :
+    bindParameters(ps, parameters);
+    return ps;
+
+    // APRÈS :
+    bindParameters(ps, parameters);
+    return METRICS.instrument(ps, query);
+
+//  updateQuery() / updateCachedQuery() passent par ces deux méthodes :
+//  executeUpdate() est mesuré avec le nb de lignes retourné, sans autre
+//  modification. executeBatch() (updateStatuses, PERF_BATCH_STATUS_UPDATE.java)
+//  compte SUCCESS_NO_INFO pour 1 ligne.
+
+// ── 4c. PaymentSqlHandler : enregistrement des constantes ──
+
+    static {
+        BatchMetrics.getInstance().registerQueries(PaymentSqlQueries.class);
+    }
+
+// ── 4d. PaymentSqlHandler : lignes lues, sous le nom de la requête ──
+//   Un appel addRows() par boucle de lecture, APRÈS la boucle, avec le texte
+//   passé à prepareStatement() : le nom résolu est celui de l'exécution
+//   (constante, template, ou constante du préfixe "/* NOM xN" des requêtes
+//   groupées). METRICS : champ déclaré à l'ÉTAPE 7.
+
+    // getNewPayments() :
+        while (rs.next()) {
+            payments.add(mapPayment(rs, col));
+        }
+        METRICS.addRows(query, payments.size());
+
+    // NewPaymentCursor (PERF_STREAMING_PAYMENTS.java) : garde le texte de la
+    // requête, chaque lot ajoute ses lignes.
+            return new NewPaymentCursor(ps, rs, resolveColumns(rs, PAYMENT_COLUMNS), query);
+
+        private final String query;
+
+        private NewPaymentCursor(PreparedStatement ps, ResultSet rs, int[] col, String query) {
+            // ... (affectations actuelles)
+            this.query = query;
+        }
+
+        // nextChunk(), avant return chunk :
+            METRICS.addRows(query, chunk.size());
+
+    // fetchBulk() / loadProcessingAreas() (PERF_BULK_ENRICHMENT.java) :
+    // toutes les lignes du ResultSet, lignes de padding comprises.
+        int read = 0;
+        while (rs.next()) {
+            read++;
+            // ... (corps actuel, inchangé)
+        }
+        METRICS.addRows(query, read);
+
+//  Lectures unitaires (getRoles, getProcessingArea, getSeqNumber...) : même
+//  schéma, compteur incrémenté dans la boucle existante puis
+//  METRICS.addRows(CONSTANTE, n). Sans addRows(), un SELECT reste compté
+//  (count, durée) avec rows=0.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 5 : InstrumentedMessageMqService.java (NOUVEAU — package mq)
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Proxy dynamique sur IMessageMqService : CHAQUE méthode de l'interface
+//  (envoi, transaction, connexion, lectures ITL, et toute méthode ajoutée
+//  plus tard) est déléguée et mesurée, sans liste à tenir à jour. Le coût
+//  d'un appel réflexif est négligeable devant un aller-retour MQ.
+//  openConnection() rend une connexion elle-même décorée : les workers de
+//  PERF_PARALLEL_BRANCHES.java et MqPublisher sont mesurés aussi.
+
+import com.bnpparibas.atlanticc.ipmt.metrics.BatchMetrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Décorateur qui mesure chaque appel MQ (latence, erreurs) sous le nom de
+ * la méthode. Les exceptions remontent inchangées.
+ */
+public final class InstrumentedMessageMqService implements InvocationHandler {
+
+    private static final BatchMetrics METRICS = BatchMetrics.getInstance();
+
+    private final IMessageMqService delegate;
+
+    private InstrumentedMessageMqService(IMessageMqService delegate) {
+        this.delegate = delegate;
+    }
+
+    /** Rend le service décoré, ou le service d'origine si les métriques sont désactivées. */
+    public static IMessageMqService wrap(IMessageMqService delegate) {
+        if (!METRICS.isEnabled() || delegate == null || Proxy.isProxyClass(delegate.getClass())) {
+            return delegate;
+        }
+        return (IMessageMqService) Proxy.newProxyInstance(IMessageMqService.class.getClassLoader(),
+                new Class<?>[]{IMessageMqService.class}, new InstrumentedMessageMqService(delegate));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this.delegate, args);
+        }
+        long start = System.nanoTime();
+        boolean error = true;
+        try {
+            Object result = method.invoke(this.delegate, args);
+            error = false;
+            return result instanceof IMessageMqService ? wrap((IMessageMqService) result) : result;
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            METRICS.recordMq(method.getName(), start, error);
+        }
+    }
+}
+
+//  Une lecture qui rend null (file vide) compte comme un appel sans erreur.
+//  Le nom de métrique est le nom de la méthode : cardinalité bornée par
+//  l'interface.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 6 : Main.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// Ajouter l'import :
+import com.bnpparibas.atlanticc.ipmt.metrics.BatchMetrics;
+
+    private static final BatchMetrics METRICS = BatchMetrics.getInstance();
+
+// ── 6a. Construction du service MQ + JMX (initProcessors) ──
+
+    // AVANT :
+    this.mqService = mqService;
+    // APRÈS :
+    this.mqService = InstrumentedMessageMqService.wrap(mqService);
+    METRICS.registerMBean();
+
+//  Le décorateur est posé AVANT la création de MqPublisher /
+//  PaymentProcessor / ResponseProcessor : tous reçoivent le service décoré.
+
+// ── 6b. process() : une étape par bloc ──
+//   Séquence existante inchangée (état après PERF_CHUNKED_COMMIT_RESTART.java
+//   et PERF_ASYNC_AUDIT_WRITER.java) : chaque appel est seulement entouré
+//   d'un Span. Les paires flush() + commit() deviennent flushAndCommit().
+
+    /** flush de l'audit + commit, mesurés ensemble (étape "commit"). */
+    private void flushAndCommit() throws PaymentException, SQLException {
+        try (BatchMetrics.Span span = METRICS.stage("commit")) {
+            this.auditHandler.flush();
+            this.sqlHandler.commit();
+        }
+    }
+
+    // AVANT :
+            // process responses
+            if (parameter.isMqActivate()) {
+                this.responseProcessor.start();
+                this.auditHandler.flush();
+                this.sqlHandler.commit();
+            }
+            // Clean and load payment tables
+            P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+            boolean checkpointed = isCheckpointedRun(config);
+            String loadScn = null;
+            if (checkpointed && this.sqlHandler.isRestartPending(branches)) {
+                LOG.warn("Resuming interrupted run on branches " + branches + " after the last committed chunk");
+                this.paymentProcessor.resendInFlight();
+            } else {
+                loadScn = config.isDeltaLoad() ? this.sqlHandler.getCurrentScn() : null;
+                this.sqlHandler.purgeWorkingTables(branches);
+                this.sqlHandler.loadWorkingTables(branches, config.isDeltaLoad());
+                if (checkpointed) {
+                    this.sqlHandler.startCheckpoints(branches);
+                }
+            }
+            this.auditHandler.flush();
+            this.sqlHandler.commit();
+            // Create, control, transform and enrich payments
+            int status;
+            if (checkpointed) {
+                status = processPaymentsWithCheckpoints(config.paymentFetchSize, config.paymentChunkSize);
+                this.sqlHandler.endCheckpoints(branches);
+            } else if (config.parallelWorkers > 1 && this.branches.size() > 1) {
+                status = processBranchesInParallel(config.parallelWorkers);
+            } else if (config.paymentChunkSize <= 0) {
+                List<Payment> payments = this.paymentProcessor.buildNewPayments();
+                status = processPayments(payments);
+            } else {
+                status = processPaymentsByChunk(config.paymentFetchSize, config.paymentChunkSize);
+            }
+            // La marque n'avance qu'une fois les paiements traités sans exception
+            if (loadScn != null) {
+                this.sqlHandler.updateLoadHighWaterMark(branches, loadScn);
+            }
+            this.auditHandler.flush();
+            this.sqlHandler.commit();
+            return status;
+
+    // APRÈS :
+            // process responses
+            if (parameter.isMqActivate()) {
+                try (BatchMetrics.Span span = METRICS.stage("processResponses")) {
+                    this.responseProcessor.start();
+                }
+                flushAndCommit();
+            }
+            // Clean and load payment tables
+            P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+            boolean checkpointed = isCheckpointedRun(config);
+            String loadScn = null;
+            if (checkpointed && this.sqlHandler.isRestartPending(branches)) {
+                LOG.warn("Resuming interrupted run on branches " + branches + " after the last committed chunk");
+                this.paymentProcessor.resendInFlight();
+            } else {
+                loadScn = config.isDeltaLoad() ? this.sqlHandler.getCurrentScn() : null;
+                try (BatchMetrics.Span span = METRICS.stage("purgeWorkingTables")) {
+                    this.sqlHandler.purgeWorkingTables(branches);
+                }
+                try (BatchMetrics.Span span = METRICS.stage("loadWorkingTables")) {
+                    this.sqlHandler.loadWorkingTables(branches, config.isDeltaLoad());
+                }
+                if (checkpointed) {
+                    this.sqlHandler.startCheckpoints(branches);
+                }
+            }
+            flushAndCommit();
+            // Create, control, transform and enrich payments
+            int status;
+            try (BatchMetrics.Span span = METRICS.stage("payments")) {
+                if (checkpointed) {
+                    status = processPaymentsWithCheckpoints(config.paymentFetchSize, config.paymentChunkSize);
+                    this.sqlHandler.endCheckpoints(branches);
+                } else if (config.parallelWorkers > 1 && this.branches.size() > 1) {
+                    status = processBranchesInParallel(config.parallelWorkers);
+                } else if (config.paymentChunkSize <= 0) {
+                    List<Payment> payments;
+                    try (BatchMetrics.Span build = METRICS.stage("buildPayments")) {
+                        payments = this.paymentProcessor.buildNewPayments();
+                        build.rows(payments.size());
+                    }
+                    status = processPayments(payments);
+                } else {
+                    status = processPaymentsByChunk(config.paymentFetchSize, config.paymentChunkSize);
+                }
+            }
+            // La marque n'avance qu'une fois les paiements traités sans exception
+            if (loadScn != null) {
+                this.sqlHandler.updateLoadHighWaterMark(branches, loadScn);
+            }
+            flushAndCommit();
+            return status;
+
+//  processPaymentsByChunk() / processPaymentsWithCheckpoints() : même Span
+//  "buildPayments" autour de buildPayments(newPayments), rows = taille du lot.
+//  "payments" couvre aussi processPayments() : envois MQ (mesurés par le
+//  décorateur), fichiers, statuts. Les requêtes unitaires (rôles, séquence,
+//  statuts...) sont mesurées sous leur constante SQL.
+
+
+// ── 6c. Résumé de fin de run ──
+
+    // APRÈS (finally de process()) :
+    METRICS.logSummary(this.cdeName, status, (System.nanoTime() - runStart) / 1_000_000);
+
+//  runStart = System.nanoTime() au début de process(). Chaque résumé porte
+//  les valeurs depuis le résumé précédent : en mode daemon
+//  (PERF_DAEMON_MODE.java), une ligne par timer actif pendant le CYCLE, les
+//  timers inactifs sont omis. Les vues JMX restent cumulatives depuis le
+//  démarrage (les outils calculent les débits par différence) ; reset() via
+//  JMX remet tout à zéro, le résumé suivant repart de zéro.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 7 : PaymentProcessor.java / PaymentSqlHandler.java — sous-étapes
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Mesures ponctuelles (recordStage) aux appels existants : pas d'objet par
+//  paiement, aucune méthode nouvelle.
+
+// Dans les deux classes :
+import com.bnpparibas.atlanticc.ipmt.metrics.BatchMetrics;
+
+    private static final BatchMetrics METRICS = BatchMetrics.getInstance();
+
+// ── 7a. PaymentProcessor.buildPayments() (PERF_STREAMING_PAYMENTS.java) ──
+
+    // AVANT :
+        try {
+            this.sqlHandler.enrichPayments(newPayments);
+        } catch (PaymentException e) {
+            LOG.warn("Bulk enrichment failed, falling back to per-payment lookups", e);
+        }
+
+    // APRÈS :
+        long start = System.nanoTime();
+        try {
+            this.sqlHandler.enrichPayments(newPayments);
+        } catch (PaymentException e) {
+            LOG.warn("Bulk enrichment failed, falling back to per-payment lookups", e);
+        } finally {
+            METRICS.recordStage("enrichPayments", start, newPayments.size());
+        }
+
+// ── 7b. PaymentSqlHandler.getSeqNumber() (PERF_SEQUENCE_BLOCK_ALLOCATION.java) ──
+//   Allocation par bloc ou lecture unitaire : même étape "sequence".
+
+    // APRÈS :
+    public String getSeqNumber() throws ... {
+        long start = System.nanoTime();
+        try {
+            // ... (corps actuel, inchangé)
+        } finally {
+            METRICS.recordStage("sequence", start, 1);
+        }
+    }
+
+//  Le reste de la boucle control / transform / enrich de buildPayments()
+//  est couvert par le Span "buildPayments" de Main ; la construction du
+//  texte SWIFT est dans "payments" (processPayments()).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  EXEMPLE DE RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  IPMT_METRICS kind=run zone=EMEA status=0 durationMs=48210
+  IPMT_METRICS kind=stage name=loadWorkingTables count=1 rows=0 errors=0 totalMs=21408.3 meanMs=21408.300 p50Ms=22020.095 ...
+  IPMT_METRICS kind=query name=INSERT_OUT_DIFF count=1 rows=18342 errors=0 totalMs=15012.7 ...
+  IPMT_METRICS kind=query name=SELECT_NEW_PAYMENTS count=1 rows=18342 errors=0 totalMs=3120.4 ...
+  IPMT_METRICS kind=mq name=sendInTransaction count=18342 rows=18342 errors=0 totalMs=5530.9 ...
+*/
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ P00_ICOR_00_Config.java          ║ +metricsEnabled +metricsJmxEnabled        ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ BatchMetrics.java                ║ NOUVEAU : timers sans verrou, histogramme ║
+  ║                                  ║ proxy JDBC (execute*), Span, addRows,     ║
+  ║                                  ║ résumé par run / cycle (différences)      ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ BatchMetricsMXBean.java          ║ NOUVEAU : queries / stages / mqCalls      ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ SqlHandler.java                  ║ prepareStatement / prepareCachedStatement ║
+  ║                                  ║ → METRICS.instrument(ps, query)           ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ InstrumentedMessageMqService     ║ NOUVEAU : proxy décorateur, toutes les    ║
+  ║                                  ║ méthodes de IMessageMqService             ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ Main.java                        ║ Span par étape, registerMBean, résumé     ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentProcessor.java            ║ enrichPayments                            ║
+  ║ PaymentSqlHandler.java           ║ getSeqNumber() → sequence                 ║
+  ║                                  ║ boucles de lecture → METRICS.addRows()    ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Fortify : les noms de métriques viennent des noms de constantes et de
+  littéraux du code, jamais du texte SQL ni des données.
+*/
@@ -0,0 +1,1655 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : MODULE DE BENCHMARKS JMH (H2 MODE ORACLE + MQ EN MÉMOIRE)     ║
+// ║        getNewPayments, enrichissement, séquence, SWIFT, timeout, process() ║
+// ║        Débit + taux d'allocation (-prof gc), baseline JSON comparable      ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  Aucune mesure n'est possible hors production : chaque optimisation de
+//  PaymentSqlHandler (PERF_*.java) est validée "à l'œil" sur un run réel.
+//
+//  APRÈS : un module Maven séparé, ipmt-benchmarks, qui dépend de l'artefact
+//  du batch et n'est PAS livré. Il monte :
+//   - une base H2 en mémoire, MODE=Oracle, sur une DDL VERSIONNÉE dans le
+//     module (bench-schema.sql : tables de travail, rôles, TBP_IPMT_DAY_SEQ,
+//     référentiel et sources Loan IQ lus par PaymentSqlQueries)
+//   - un référentiel et des sources Loan IQ SYNTHÉTIQUES, générés au
+//     démarrage : aucune donnée de recette, ni sur disque ni dans git, et
+//     aucun accès à la recette pour lancer les benchmarks (CI comprise)
+//   - un générateur N branches × M paiements qui recopie les paiements que le
+//     vrai loadWorkingTables() charge depuis ces sources (clé renouvelée,
+//     branche réaffectée)
+//   - InMemoryMessageMqService (PERF_ASYNC_MQ_PUBLISHING.java) comme MQ
+//  et mesure, en débit (ops/s) et allocation (octets/op, -prof gc) :
+//
+//   PaymentSqlHandlerBenchmark  getNewPayments, enrichPerPayment, enrichBulk,
+//                               getSeqNumber, updatePendingSwiftMsgtoFailInDB
+//   SwiftMessageBenchmark       processPayments() : messages SWIFT + statuts
+//   EndToEndBenchmark           Main.process() complet (SingleShotTime)
+//
+//  H2 ≠ Oracle : les valeurs absolues ne préjugent pas de la prod (pas de
+//  réseau, pas de parse partagé). Le module sert à COMPARER deux versions du
+//  code sur les mêmes données : round trips, allocations, coût Java.
+//
+//  Les modes optionnels (séquence par bloc, audit asynchrone, workers
+//  parallèles, chargement delta, commit par lot, filtre de branches) tournent
+//  sur H2 : leurs connexions annexes sont ouvertes sur la base du benchmark,
+//  et chacun est un @Param dont la valeur par défaut est celle du batch.
+//
+//  FICHIERS MODIFIÉS : 3 (code du batch) + module NOUVEAU
+//  ─────────────────
+//  1. PaymentSqlHandler.java          → +PaymentSqlHandler(Connection) public
+//  2. SqlHandler.java                 → openConnection() par une fabrique remplaçable
+//  3. Main.java                       → +buildNewPayments(), processPayments() package-private
+//  4. ipmt-benchmarks/ (NOUVEAU)      → pom, DDL H2, générateurs, 3 benchmarks,
+//                                        export de DDL (outil optionnel)
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 0 : Structure du module
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ipmt-benchmarks/
+  ├── pom.xml
+  ├── src/main/resources/bench/
+  │   └── bench-schema.sql                  (VERSIONNÉ : DDL H2, relue comme du code)
+  └── src/main/java/com/bnpparibas/atlanticc/ipmt/
+      ├── bench/
+      │   ├── BenchmarkSchemaExport.java    (outil optionnel : DDL seule, jamais de données)
+      │   ├── BenchmarkDatabase.java
+      │   ├── ReferenceDataGenerator.java
+      │   ├── PaymentDataGenerator.java
+      │   ├── PaymentSqlHandlerBenchmark.java
+      │   ├── SwiftMessageBenchmark.java
+      │   └── EndToEndBenchmark.java
+      └── process/
+          └── BenchmarkMain.java            (même package que Main : process(),
+                                             buildNewPayments(), processPayments())
+
+  pom.xml (packaging jar) :
+   - dépendances : l'artefact du batch (même version), org.openjdk.jmh:jmh-core
+     et jmh-generator-annprocess (scope provided), com.h2database:h2
+   - maven-shade-plugin : target/benchmarks.jar, Main-Class
+     org.openjdk.jmh.Main, transformer ServicesResourceTransformer
+   - pas de tests, pas de déploiement (maven.deploy.skip=true)
+   - configuration du batch des benchmarks : liqBatchSchema = LIQBATCH, le
+     schéma de bench-schema.sql
+
+  Mesure (-D transmis aux forks JMH ; rien d'autre à préparer, CI comprise) :
+   mvn -pl ipmt-benchmarks package
+   java -Dbench.rows=1000 \
+     -jar ipmt-benchmarks/target/benchmarks.jar -prof gc -rf json -rff results/baseline.json
+   ... modification ...
+   java ... -rff results/after.json
+
+  Mode optionnel contre mode par défaut, même code (-p : valeurs de @Param) :
+   java ... -jar ipmt-benchmarks/target/benchmarks.jar EndToEndBenchmark \
+     -p parallelWorkers=1,4 -p auditAsync=false,true -rf json -rff results/modes.json
+
+  Comparaison (score et gc.alloc.rate.norm = octets alloués par opération) :
+   jq -r '.[] | [.benchmark, (.params|tostring), .primaryMetric.score,
+          .secondaryMetrics["·gc.alloc.rate.norm"].score] | @tsv' results/*.json
+
+  Mise à jour de bench-schema.sql (OPTIONNEL, quand une requête lit une
+  nouvelle table ou colonne ; un oubli se voit au 1er run : "Column not
+  found") — avec la configuration de recette du batch et le driver Oracle :
+   BENCH_EXPORT_PASSWORD=... java -cp ipmt-benchmarks/target/benchmarks.jar:<driver Oracle> \
+     -Dbench.export.url=jdbc:oracle:thin:@<recette> -Dbench.export.user=<user> \
+     com.bnpparibas.atlanticc.ipmt.bench.BenchmarkSchemaExport \
+     ipmt-benchmarks/src/main/resources/bench/bench-schema.sql
+   git diff : relire, puis commiter avec la modification de la requête.
+*/
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : PaymentSqlHandler.java / SqlHandler.java — connexions fournies
+// ════════════════════════════════════════════════════════════════════════════════
+
+// ── 1a. PaymentSqlHandler : constructeur sur connexion fournie ──
+//
+//  PaymentSqlHandler(Connection, sequenceHandler) (PERF_PARALLEL_BRANCHES.java)
+//  crée un handler de WORKER. Le benchmark a besoin d'un handler PRINCIPAL sur
+//  la connexion H2 : sequenceHandler = null, comme PaymentSqlHandler(), donc
+//  getSeqNumber() lit / écrit TBP_IPMT_DAY_SEQ sur cette connexion. (this
+//  ferait boucler getSeqNumber() → nextCommittedSeqNumber() → getSeqNumber().)
+
+    // APRÈS :
+    /** Handler principal sur une connexion déjà ouverte (benchmarks, outils). */
+    public PaymentSqlHandler(Connection connection) {
+        super(connection);
+        this.sequenceHandler = null;
+    }
+
+// ── 1b. SqlHandler : ouverture des connexions annexes ──
+//   L'allocateur de séquence (PERF_SEQUENCE_BLOCK_ALLOCATION.java), l'AuditWriter
+//   (PERF_ASYNC_AUDIT_WRITER.java), le pool des workers
+//   (PERF_PARALLEL_BRANCHES.java) et PaymentSqlHandler() ouvrent leur connexion
+//   par openConnection(). Une fabrique posée par BenchmarkDatabase les ouvre
+//   toutes sur H2 ; sans fabrique (prod), code d'ouverture inchangé.
+
+    /** Ouverture d'une connexion à la place de l'URL de la configuration. */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    private static volatile ConnectionFactory connectionFactory;
+
+    /** null : retour à l'URL de la configuration. */
+    public static void setConnectionFactory(ConnectionFactory factory) {
+        connectionFactory = factory;
+    }
+
+    // AVANT :
+    protected static Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        // ... (reste du code existant)
+        return connection;
+    }
+
+    // APRÈS :
+    protected static Connection openConnection() throws SQLException {
+        ConnectionFactory factory = connectionFactory;
+        if (factory != null) {
+            return factory.open();
+        }
+        Connection connection = DriverManager.getConnection(url, user, password);
+        // ... (reste du code existant)
+        return connection;
+    }
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : Main.java — étapes du run accessibles au package
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  La construction des messages SWIFT n'a pas de point d'entrée propre : elle
+//  est faite dans processPayments(), avec le put MQ et les statuts. Le
+//  benchmark SWIFT passe donc par processPayments() sur des paiements déjà
+//  construits, via BenchmarkMain (package process).
+
+// ── 2a. Paiements du run, sans envoi ──
+
+    /** Lecture, contrôle, transformation et enrichissement des paiements du run. */
+    List<Payment> buildNewPayments() throws ... {
+        return this.paymentProcessor.buildNewPayments();
+    }
+
+// ── 2b. processPayments() : visibilité package ──
+
+    // APRÈS (modificateur d'accès retiré, signature et corps inchangés) :
+    int processPayments(List<Payment> payments) throws ... {
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : BenchmarkSchemaExport.java (NOUVEAU — outil optionnel, DDL seule)
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Les benchmarks n'en ont pas besoin : ils lisent bench-schema.sql versionné
+//  (ÉTAPE 3b). L'outil le régénère depuis la recette quand PaymentSqlQueries
+//  change ; il n'écrit QUE de la DDL (tables, colonnes, clés, index), jamais
+//  une ligne de données.
+//
+//  Tables : EXPLAIN PLAN de chaque constante String des classes de requêtes
+//  (PaymentSqlQueries par défaut ; ajouter en argument les autres classes de
+//  requêtes du batch, celle de INSERT_AUDIT par exemple). Un accès par index
+//  est ramené à sa table ; une opération d'écriture (insert, update, delete,
+//  merge) marque sa table comme écrite par le batch.
+//  Les %s des requêtes filtrées par branche sont remplacés par "in (?)" puis,
+//  si le plan échoue, par "?" (PURGE_* : "IN (%s)"). Une constante qui n'est
+//  pas une requête (nom de table, statut...) échoue aux deux et est ignorée ;
+//  la liste est loggée pour vérification.
+//
+//  Tables écrites par le batch (tables de travail, historique,
+//  TBP_IPMT_DAY_SEQ...) : marquées par un COMMENT ON TABLE, elles partent
+//  vides ; ReferenceDataGenerator (ÉTAPE 5) remplit toutes les autres.
+
+package com.bnpparibas.atlanticc.ipmt.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Régénère bench-schema.sql depuis la recette : DDL des tables utilisées par
+ * les requêtes du batch, tables écrites marquées. Aucune donnée exportée.
+ *
+ * Usage : BenchmarkSchemaExport fichier [classe de requêtes...]
+ * Connexion : -Dbench.export.url, -Dbench.export.user, mot de passe dans la
+ * variable d'environnement BENCH_EXPORT_PASSWORD.
+ */
+public final class BenchmarkSchemaExport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BenchmarkSchemaExport.class);
+
+    private static final String PLAN_ID = "IPMT_BENCH";
+
+    /** Opérations du plan qui écrivent dans leur object_name. */
+    private static final Set<String> WRITE_OPERATIONS = new HashSet<>(Arrays.asList(
+            "LOAD TABLE CONVENTIONAL", "LOAD AS SELECT", "UPDATE", "DELETE", "MERGE"));
+
+    /** Remplacements essayés pour le %s des requêtes filtrées par branche. */
+    private static final String[] BRANCH_FILTERS = {"in (?)", "?"};
+
+    private final Connection connection;
+
+    /** OWNER.TABLE de toutes les tables des plans. */
+    private final Set<String> tables = new TreeSet<>();
+
+    /** OWNER.TABLE des tables écrites par au moins une requête. */
+    private final Set<String> written = new TreeSet<>();
+
+    private BenchmarkSchemaExport(Connection connection) {
+        this.connection = connection;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            LOG.error("Usage: BenchmarkSchemaExport <schema file> [query class...]");
+            System.exit(1);
+        }
+        List<String> queryClasses = args.length > 1
+                ? Arrays.asList(args).subList(1, args.length)
+                : Collections.singletonList(PaymentSqlQueries.class.getName());
+        Path file = Paths.get(args[0]);
+        try (Connection connection = DriverManager.getConnection(System.getProperty("bench.export.url"),
+                System.getProperty("bench.export.user"), System.getenv("BENCH_EXPORT_PASSWORD"))) {
+            BenchmarkSchemaExport export = new BenchmarkSchemaExport(connection);
+            for (String queryClass : queryClasses) {
+                export.explainQueries(Class.forName(queryClass));
+            }
+            export.writeSchema(file);
+        }
+    }
+
+    private void explainQueries(Class<?> queries) throws SQLException, IllegalAccessException {
+        List<String> skipped = new ArrayList<>();
+        for (Field field : queries.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class) {
+                continue;
+            }
+            field.setAccessible(true);
+            if (!explain((String) field.get(null))) {
+                skipped.add(field.getName());
+            }
+        }
+        LOG.info(queries.getSimpleName() + ": constants without a plan (not SQL?): " + skipped);
+    }
+
+    /** @return false si aucune forme de la requête n'a de plan */
+    private boolean explain(String sql) throws SQLException {
+        List<String> candidates = new ArrayList<>();
+        if (sql.contains("%s")) {
+            for (String filter : BRANCH_FILTERS) {
+                candidates.add(sql.replace("%s", filter));
+            }
+        } else {
+            candidates.add(sql);
+        }
+        for (String candidate : candidates) {
+            try (Statement statement = this.connection.createStatement()) {
+                statement.execute("delete from plan_table where statement_id = '" + PLAN_ID + "'");
+                statement.execute("explain plan set statement_id = '" + PLAN_ID + "' for " + candidate);
+            } catch (SQLException e) {
+                continue;
+            }
+            readPlan();
+            return true;
+        }
+        return false;
+    }
+
+    private void readPlan() throws SQLException {
+        try (Statement statement = this.connection.createStatement();
+             ResultSet rs = statement.executeQuery("select p.operation, p.object_type, p.object_owner,"
+                     + " p.object_name, i.table_owner, i.table_name from plan_table p"
+                     + " left join all_indexes i on i.owner = p.object_owner and i.index_name = p.object_name"
+                     + " where p.statement_id = '" + PLAN_ID + "' and p.object_name is not null")) {
+            while (rs.next()) {
+                String operation = rs.getString(1);
+                String type = rs.getString(2);
+                String table;
+                if (type != null && type.startsWith("INDEX")) {
+                    table = rs.getString(5) + "." + rs.getString(6);
+                } else if (WRITE_OPERATIONS.contains(operation) || (type != null && type.startsWith("TABLE"))) {
+                    table = rs.getString(3) + "." + rs.getString(4);
+                } else {
+                    continue;   // séquence, vue de dictionnaire...
+                }
+                this.tables.add(table);
+                if (WRITE_OPERATIONS.contains(operation)) {
+                    this.written.add(table);
+                }
+            }
+        }
+    }
+
+    private void writeSchema(Path file) throws SQLException, IOException {
+        DatabaseMetaData meta = this.connection.getMetaData();
+        Set<String> owners = new TreeSet<>();
+        for (String table : this.tables) {
+            owners.add(table.substring(0, table.indexOf('.')));
+        }
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("-- Généré par BenchmarkSchemaExport (DDL seule) : relu et versionné, ne pas modifier à la main\n");
+            for (String owner : owners) {
+                out.write("CREATE SCHEMA IF NOT EXISTS " + owner + ";\n");
+            }
+            for (String table : this.tables) {
+                int dot = table.indexOf('.');
+                writeTable(meta, table.substring(0, dot), table.substring(dot + 1), out);
+                if (this.written.contains(table)) {
+                    out.write("COMMENT ON TABLE " + table + " IS '" + ReferenceDataGenerator.WRITTEN_REMARK + "';\n");
+                }
+            }
+        }
+        LOG.info(this.tables.size() + " tables written to " + file + ", " + this.written.size()
+                + " written by the batch: " + this.written);
+    }
+
+    /** Colonnes, NOT NULL, clé primaire et index sur colonnes (pas d'index sur expression). */
+    private static void writeTable(DatabaseMetaData meta, String owner, String table, Writer out)
+            throws SQLException, IOException {
+        List<String> definitions = new ArrayList<>();
+        try (ResultSet rs = meta.getColumns(null, owner, table, null)) {
+            while (rs.next()) {
+                definitions.add(rs.getString("COLUMN_NAME") + " " + columnType(rs)
+                        + (rs.getInt("NULLABLE") == DatabaseMetaData.columnNoNulls ? " NOT NULL" : ""));
+            }
+        }
+        Map<Short, String> primaryKey = new TreeMap<>();
+        try (ResultSet rs = meta.getPrimaryKeys(null, owner, table)) {
+            while (rs.next()) {
+                primaryKey.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+            }
+        }
+        if (!primaryKey.isEmpty()) {
+            definitions.add("PRIMARY KEY (" + String.join(", ", primaryKey.values()) + ")");
+        }
+        out.write("CREATE TABLE " + owner + "." + table + " (\n    "
+                + String.join(",\n    ", definitions) + "\n);\n");
+
+        Map<String, Map<Short, String>> indexes = new TreeMap<>();
+        Set<String> uniqueIndexes = new HashSet<>();
+        Set<String> expressionIndexes = new HashSet<>();
+        try (ResultSet rs = meta.getIndexInfo(null, owner, table, false, true)) {
+            while (rs.next()) {
+                String index = rs.getString("INDEX_NAME");
+                if (index == null) {
+                    continue;   // ligne de statistiques de la table
+                }
+                String column = rs.getString("COLUMN_NAME");
+                if (column == null || column.startsWith("SYS_NC")) {
+                    expressionIndexes.add(index);
+                }
+                if (!rs.getBoolean("NON_UNIQUE")) {
+                    uniqueIndexes.add(index);
+                }
+                indexes.computeIfAbsent(index, k -> new TreeMap<>()).put(rs.getShort("ORDINAL_POSITION"), column);
+            }
+        }
+        for (Map.Entry<String, Map<Short, String>> index : indexes.entrySet()) {
+            List<String> columns = new ArrayList<>(index.getValue().values());
+            if (expressionIndexes.contains(index.getKey())
+                    || columns.equals(new ArrayList<>(primaryKey.values()))) {
+                continue;
+            }
+            out.write("CREATE " + (uniqueIndexes.contains(index.getKey()) ? "UNIQUE " : "") + "INDEX "
+                    + owner + "." + index.getKey() + " ON " + owner + "." + table
+                    + " (" + String.join(", ", columns) + ");\n");
+        }
+    }
+
+    private static String columnType(ResultSet column) throws SQLException {
+        String type = column.getString("TYPE_NAME");
+        int size = column.getInt("COLUMN_SIZE");
+        int digits = column.getInt("DECIMAL_DIGITS");
+        switch (type) {
+            case "VARCHAR2":
+            case "NVARCHAR2":
+            case "CHAR":
+            case "NCHAR":
+            case "RAW":
+                return type + "(" + size + ")";
+            case "NUMBER":
+                // NUMBER sans précision : COLUMN_SIZE = 0
+                return size == 0 ? "NUMBER" : "NUMBER(" + size + "," + Math.max(digits, 0) + ")";
+            default:
+                return type;    // DATE, TIMESTAMP(6), CLOB, BLOB : acceptés tels quels par H2 MODE=Oracle
+        }
+    }
+}
+
+//  Tables des modes optionnels : checkpoints et marque de chargement delta
+//  sont lues par des constantes de PaymentSqlQueries et donc dans la DDL. La
+//  table temporaire STAGING et les objets Oracle (ORA_ROWSCN,
+//  DBMS_FLASHBACK) sont émulés par BenchmarkDatabase (ÉTAPE 4).
+
+// ── 3b. src/main/resources/bench/bench-schema.sql (NOUVEAU, versionné) ──
+//   Sortie de l'outil ci-dessus, relue puis commitée. Extrait : tables de
+//   travail, rôles et séquence ; le reste (référentiel, sources Loan IQ,
+//   audit, checkpoints, marque delta) a la même forme.
+/*
+  -- Généré par BenchmarkSchemaExport (DDL seule) : relu et versionné, ne pas modifier à la main
+  CREATE SCHEMA IF NOT EXISTS LIQBATCH;
+  CREATE SCHEMA IF NOT EXISTS LIQCREATOR;
+  CREATE TABLE LIQBATCH.TBP_IPMT_DAY_SEQ (
+      ...                      -- jour, CDE_SEQ_NUMBER (ordre de INSERT_SEQUENCE)
+      PRIMARY KEY (...)        -- le jour : 1 ligne par jour
+  );
+  COMMENT ON TABLE LIQBATCH.TBP_IPMT_DAY_SEQ IS 'IPMT_BENCH:WRITTEN';
+  CREATE TABLE LIQBATCH.TBP_IPMT_IMT_OUT_DIFF (
+      IMT_RID_IMT_OUT VARCHAR2(8) NOT NULL,
+      IMT_CDE_BRANCH VARCHAR2(8),
+      IMT_CDE_MSG_TYPE VARCHAR2(...),
+      IMT_PID_DEAL VARCHAR2(8),
+      IMT_PID_FACILITY VARCHAR2(8),
+      IMT_AMT_OUT_TOT NUMBER(...),
+      IMT_DTE_VALUE_DATE DATE,
+      IMT_DTE_BUSINESS DATE,
+      ...                      -- toutes les colonnes de la table (M.* des requêtes)
+      PRIMARY KEY (IMT_RID_IMT_OUT)
+  );
+  COMMENT ON TABLE LIQBATCH.TBP_IPMT_IMT_OUT_DIFF IS 'IPMT_BENCH:WRITTEN';
+  -- Rôles : cible de INSERT_ROLE_DIFF (IOR_RID_OUTGNG_IMT, IOR_CDE_SWFT_ID,
+  -- IOR_CDE_SWFT_RTYP, IOR_TXT_ACCT_NO, IOR_TXT_DESC...) et de
+  -- INSERT_ROLE_DATA, même forme, marquées WRITTEN.
+  CREATE TABLE LIQCREATOR.VLS_DEAL (
+      DEA_PID_DEAL VARCHAR2(8) NOT NULL,
+      DEA_NME_DEAL VARCHAR2(...),
+      ...
+      PRIMARY KEY (DEA_PID_DEAL)
+  );
+  ...
+*/
+//  Types et tailles : ceux de la recette, tels que les écrit columnType().
+//  Données : AUCUNE dans ce fichier, elles sont générées (ÉTAPE 5).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : BenchmarkDatabase.java (NOUVEAU)
+// ════════════════════════════════════════════════════════════════════════════════
+
+package com.bnpparibas.atlanticc.ipmt.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.h2.tools.RunScript;
+
+/**
+ * Base H2 en mémoire (MODE=Oracle) sur la DDL versionnée, référentiel et
+ * sources Loan IQ synthétiques. Une base par trial, détruite à close(). Toutes les connexions du batch, annexes
+ * comprises (séquence, audit, workers), sont ouvertes sur cette base : les
+ * modes optionnels de la configuration tournent tels quels.
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+
+    /** Zone mesurée, créée par ReferenceDataGenerator. */
+    public static final String ZONE = "BENCH";
+
+    /** Schéma du batch dans bench-schema.sql : liqBatchSchema de la configuration. */
+    private static final String BATCH_SCHEMA = "LIQBATCH";
+
+    private static final String SCHEMA_RESOURCE = "/bench/bench-schema.sql";
+
+    /** Branches de la zone (-Dbench.branches) : au moins le plus grand @Param branches. */
+    private static final int BRANCHES = Integer.getInteger("bench.branches", 10);
+
+    /** Lignes par table de référentiel / source Loan IQ (-Dbench.rows) : volume d'EndToEndBenchmark. */
+    private static final int ROWS = Integer.getInteger("bench.rows", 1000);
+
+    /** SCN rendu par SELECT_CURRENT_SCN : au-dessus de l'ORA_ROWSCN (0) de toutes les lignes. */
+    private static final long CURRENT_SCN = 1;
+
+    /** "ALIAS.ORA_ROWSCN" dans une requête *_DELTA. */
+    private static final Pattern ROW_SCN = Pattern.compile("(\\w+)\\.ORA_ROWSCN");
+
+    private final String url;
+    private final Connection keepAlive;
+    private Path snapshot;
+
+    private BenchmarkDatabase(String url) throws SQLException {
+        this.url = url;
+        this.keepAlive = DriverManager.getConnection(url, "sa", "");
+    }
+
+    public static BenchmarkDatabase start() throws SQLException {
+        P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+        if (!BATCH_SCHEMA.equals(config.liqBatchSchema)) {
+            throw new IllegalStateException("liqBatchSchema is " + config.liqBatchSchema + ", bench-schema.sql uses "
+                    + BATCH_SCHEMA + ": fix the benchmark configuration");
+        }
+        config.metricsJmxEnabled = false;   // un MBean par Main construit
+        // "mem:" + nom unique : deux forks JMH ne partagent jamais une base
+        BenchmarkDatabase db = new BenchmarkDatabase("jdbc:h2:mem:ipmt" + System.nanoTime()
+                + ";MODE=Oracle;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+        db.runScript(SCHEMA_RESOURCE);
+        try (Connection connection = db.openConnection()) {
+            new ReferenceDataGenerator(connection, ZONE, ReferenceDataGenerator.branchCodes(BRANCHES)).generate(ROWS);
+        }
+        // Après la génération : ORA_ROWSCN ajoutée à 0, sous le SCN courant
+        db.emulateOracle();
+        SqlHandler.setConnectionFactory(db::openConnection);
+        return db;
+    }
+
+    /**
+     * Nouvelle connexion, autocommit désactivé comme la connexion du batch.
+     * Porte sa table de branches STAGING (PERF_BRANCH_FILTER.java) : table
+     * temporaire de session, comme la GTT Oracle.
+     */
+    public Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(this.url, "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create local temporary table if not exists "
+                    + P00_ICOR_00_Config.getInstance().liqBatchSchema + ".TBP_IPMT_BRANCH_FILTER"
+                    + " (BRF_CDE_BRANCH VARCHAR2(8) NOT NULL PRIMARY KEY) transactional");
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        connection.setAutoCommit(false);
+        return connection;
+    }
+
+    /**
+     * Objets Oracle lus par le chargement delta (PERF_DELTA_LOAD.java) :
+     * DBMS_FLASHBACK.GET_SYSTEM_CHANGE_NUMBER devient une constante H2,
+     * ORA_ROWSCN une colonne à 0 des tables sources des requêtes *_DELTA. Une
+     * branche sans marque recharge donc tout, une branche marquée ne recharge
+     * que la fenêtre de reprise, comme après un run sans modification.
+     */
+    private void emulateOracle() throws SQLException {
+        try (Statement statement = this.keepAlive.createStatement()) {
+            statement.execute("create schema if not exists DBMS_FLASHBACK");
+            statement.execute("create constant if not exists DBMS_FLASHBACK.GET_SYSTEM_CHANGE_NUMBER value "
+                    + CURRENT_SCN);
+            for (String table : rowScnTables(INSERT_OUT_DIFF_DELTA, INSERT_ROLE_DIFF_DELTA)) {
+                statement.execute("alter table " + table + " add column if not exists ORA_ROWSCN NUMBER default 0 not null");
+            }
+        }
+    }
+
+    /** Tables dont la requête lit ALIAS.ORA_ROWSCN : "from TABLE ALIAS" / "join TABLE ALIAS". */
+    private static Set<String> rowScnTables(String... queries) {
+        Set<String> tables = new LinkedHashSet<>();
+        for (String query : queries) {
+            Matcher scn = ROW_SCN.matcher(query);
+            while (scn.find()) {
+                Matcher table = Pattern.compile("(?i)(?:from|join)\\s+([\\w.$#]+)\\s+" + scn.group(1) + "\\b")
+                        .matcher(query);
+                if (!table.find()) {
+                    throw new IllegalStateException("No table for alias " + scn.group(1) + " in " + query);
+                }
+                tables.add(table.group(1).toUpperCase());
+            }
+        }
+        return tables;
+    }
+
+    /** Photographie de toute la base (schéma et données) ; restore() y revient. */
+    public void snapshot() throws SQLException {
+        try {
+            this.snapshot = Files.createTempFile("ipmt-bench", ".sql");
+        } catch (IOException e) {
+            throw new SQLException("Cannot create snapshot file", e);
+        }
+        try (Statement statement = this.keepAlive.createStatement()) {
+            statement.execute("script to '" + this.snapshot.toAbsolutePath() + "'");
+        }
+    }
+
+    /**
+     * Objets supprimés puis recréés et rechargés depuis la photographie :
+     * référentiel et émulations compris, rien à re-générer. Les autres
+     * connexions ne doivent pas avoir de transaction ouverte ; leurs tables
+     * temporaires de session ne sont pas touchées.
+     */
+    public void restore() throws SQLException {
+        try (Statement statement = this.keepAlive.createStatement()) {
+            statement.execute("drop all objects");
+            statement.execute("runscript from '" + this.snapshot.toAbsolutePath() + "'");
+        }
+    }
+
+    private void runScript(String resource) throws SQLException {
+        InputStream in = BenchmarkDatabase.class.getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalStateException(resource + " is not on the classpath");
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            RunScript.execute(this.keepAlive, reader);
+        } catch (IOException e) {
+            throw new SQLException("Cannot read " + resource, e);
+        }
+    }
+
+    /**
+     * Ferme aussi l'allocateur de séquence partagé (sa connexion est sur
+     * cette base) et retire la fabrique de connexions.
+     */
+    @Override
+    public void close() throws SQLException {
+        PaymentSqlHandler.closeSequenceAllocator();
+        SqlHandler.setConnectionFactory(null);
+        try (Statement statement = this.keepAlive.createStatement()) {
+            statement.execute("shutdown");
+        }
+        this.keepAlive.close();
+        if (this.snapshot != null) {
+            try {
+                Files.deleteIfExists(this.snapshot);
+            } catch (IOException e) {
+                throw new SQLException("Cannot delete " + this.snapshot, e);
+            }
+        }
+    }
+}
+
+//  Les PreparedStatement du cache de SqlHandler (PERF_STATEMENT_CACHE.java)
+//  survivent à restore() : H2 les recompile quand la table a été recréée.
+//  Pool des workers : statique, ses connexions d'un trial précédent (base
+//  fermée) sont invalides et remplacées à l'emprunt par la fabrique.
+//  Imports : INSERT_OUT_DIFF_DELTA / INSERT_ROLE_DIFF_DELTA en import
+//  statique de PaymentSqlQueries, SqlHandler et PaymentSqlHandler du batch.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 5 : ReferenceDataGenerator.java (NOUVEAU)
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Toutes les tables de bench-schema.sql non marquées WRITTEN (paramétrage
+//  de zone, branches, deals, facilities, clients, adresses, sources Loan
+//  IQ...) reçoivent rows lignes synthétiques. Rien n'est écrit à la main par
+//  table : une table ajoutée à la DDL est remplie sans modifier le code.
+//  Jointures : les colonnes Loan IQ se nomment PRÉFIXE_DOMAINE (DEA_PID_DEAL,
+//  IMT_PID_DEAL → PID_DEAL). La ligne r de chaque table porte la valeur r de
+//  chaque domaine : le paiement r a le deal r, la facility r, le client r.
+
+package com.bnpparibas.atlanticc.ipmt.bench;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Référentiel et sources Loan IQ synthétiques, déterministes : même DDL →
+ * mêmes lignes. Aucune valeur ne vient de la recette (noms de clients :
+ * "FULL NAME 42").
+ */
+public final class ReferenceDataGenerator {
+
+    /** Commentaire de table posé par BenchmarkSchemaExport : table écrite par le batch, laissée vide. */
+    static final String WRITTEN_REMARK = "IPMT_BENCH:WRITTEN";
+
+    private static final int BATCH_SIZE = 1000;
+
+    /** Largeur des valeurs texte d'un domaine : une même valeur dans des colonnes de tailles différentes. */
+    private static final int KEY_WIDTH = 8;
+
+    /** Domaines qui se référencent sous deux noms (rôle → paiement, SELECT_MSG_ROLES). */
+    private static final Map<String, String> DOMAIN_ALIASES = Collections.singletonMap("RID_OUTGNG_IMT", "RID_IMT_OUT");
+
+    /** Codes de message acceptés par SwiftType.getSwiftType(), en alternance. */
+    private static final List<String> MESSAGE_TYPES = Arrays.asList("103", "202");
+
+    private final Connection connection;
+
+    /** Valeurs imposées par domaine : codes lus ou filtrés par le batch. */
+    private final Map<String, List<String>> imposed = new HashMap<>();
+
+    private final List<String> zone;
+
+    /**
+     * @param connection écriture des lignes (autocommit désactivé)
+     * @param branches   branches de la zone, affectées aux lignes en alternance
+     */
+    public ReferenceDataGenerator(Connection connection, String zone, List<String> branches) {
+        this.connection = connection;
+        this.zone = Collections.singletonList(zone);
+        this.imposed.put("CDE_BRANCH", branches);
+        this.imposed.put("CDE_MSG_TYPE", MESSAGE_TYPES);
+        this.imposed.put("CDE_CURRENCY", Arrays.asList("EUR", "USD", "GBP"));
+        this.imposed.put("CDE_COUNTRY", Arrays.asList("FR", "GB", "US"));
+    }
+
+    /** BR01, BR02... : codes des count branches de la zone. */
+    public static List<String> branchCodes(int count) {
+        List<String> branches = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            branches.add(String.format("BR%02d", i));
+        }
+        return branches;
+    }
+
+    /** @param rows lignes par table, moins de 10 000 (valeurs distinctes par domaine) */
+    public void generate(int rows) throws SQLException {
+        if (rows <= 0 || rows >= 10_000) {
+            throw new IllegalArgumentException("rows must be in [1, 9999]: " + rows);
+        }
+        DatabaseMetaData meta = this.connection.getMetaData();
+        List<String[]> tables = new ArrayList<>();
+        try (ResultSet rs = meta.getTables(null, null, null, new String[]{"TABLE", "BASE TABLE"})) {
+            while (rs.next()) {
+                String schema = rs.getString("TABLE_SCHEM");
+                if (!"INFORMATION_SCHEMA".equals(schema) && !WRITTEN_REMARK.equals(rs.getString("REMARKS"))) {
+                    tables.add(new String[]{schema, rs.getString("TABLE_NAME")});
+                }
+            }
+        }
+        for (String[] table : tables) {
+            fill(meta, table[0], table[1], rows);
+        }
+        this.connection.commit();
+    }
+
+    /**
+     * rows lignes dans la table. Avec une clé primaire : merge sur la clé, une
+     * valeur imposée qui se répète (branche, zone) ne donne qu'une ligne.
+     */
+    private void fill(DatabaseMetaData meta, String schema, String table, int rows) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        List<Integer> types = new ArrayList<>();
+        List<Integer> digits = new ArrayList<>();
+        try (ResultSet rs = meta.getColumns(null, schema, table, null)) {
+            while (rs.next()) {
+                columns.add(rs.getString("COLUMN_NAME"));
+                types.add(rs.getInt("DATA_TYPE"));
+                // Chiffres de la partie entière pour un nombre, longueur pour un texte (0 = non bornée)
+                digits.add(rs.getInt("COLUMN_SIZE") - Math.max(rs.getInt("DECIMAL_DIGITS"), 0));
+            }
+        }
+        List<String> key = new ArrayList<>();
+        try (ResultSet rs = meta.getPrimaryKeys(null, schema, table)) {
+            while (rs.next()) {
+                key.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        String sql = (key.isEmpty() ? "insert into " : "merge into ") + schema + "." + table
+                + " (" + String.join(", ", columns) + ")"
+                + (key.isEmpty() ? "" : " key (" + String.join(", ", key) + ")")
+                + " values (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        try (PreparedStatement ps = this.connection.prepareStatement(sql)) {
+            for (int row = 0; row < rows; row++) {
+                for (int i = 0; i < columns.size(); i++) {
+                    ps.setObject(i + 1, value(columns.get(i), types.get(i), digits.get(i), row));
+                }
+                ps.addBatch();
+                if ((row + 1) % BATCH_SIZE == 0) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private Object value(String column, int type, int size, int row) {
+        String domain = domain(column);
+        List<String> values = domain.contains("ZONE") ? this.zone : this.imposed.get(domain);
+        if (values != null) {
+            return values.get(row % values.size());
+        }
+        // Derniers chiffres de offset + row : même valeur quelle que soit la taille au-delà de KEY_WIDTH
+        int width = size > 0 ? Math.min(size, KEY_WIDTH) : KEY_WIDTH;
+        String code = String.format("%0" + KEY_WIDTH + "d", offset(domain) + row).substring(KEY_WIDTH - Math.max(width, 1));
+        switch (type) {
+            case Types.DATE:
+                return Date.valueOf(LocalDate.now());
+            case Types.TIMESTAMP:
+                return Timestamp.valueOf(LocalDate.now().atStartOfDay());
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.SMALLINT:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new BigDecimal(code);
+            default:
+                if (domain.startsWith("NME_")) {
+                    String name = domain.substring(4).replace('_', ' ') + " " + row;
+                    return size > 0 && name.length() > size ? name.substring(name.length() - size) : name;
+                }
+                return code;
+        }
+    }
+
+    /** Nom sans le préfixe de table : DEA_PID_DEAL → PID_DEAL. */
+    private static String domain(String column) {
+        int underscore = column.indexOf('_');
+        String domain = underscore < 0 ? column : column.substring(underscore + 1);
+        return DOMAIN_ALIASES.getOrDefault(domain, domain);
+    }
+
+    /**
+     * Décalage propre au domaine, sur KEY_WIDTH chiffres avec row < 10 000 :
+     * deux domaines n'ont pas les mêmes valeurs (PaymentDataGenerator
+     * retrouve la clé des paiements par ses valeurs).
+     */
+    private static long offset(String domain) {
+        return Math.floorMod(domain.hashCode(), 9000) * 10_000L;
+    }
+}
+
+//  ⚠️ Filtres sur une valeur fixe (statut, type d'adresse bindé par
+//  SELECT_MSG_ROLES...) : ajouter le domaine et ses valeurs à imposed. Un
+//  oubli ne passe pas inaperçu : PaymentDataGenerator échoue si
+//  loadWorkingTables() ne charge rien, branches() si la zone est vide, et
+//  SwiftMessageBenchmark vérifie le nombre de paiements construits.
+//  MESSAGE_TYPES : à aligner sur les codes de SwiftType du batch.
+//  Clé unique hors clé primaire portée par une valeur imposée : l'insertion
+//  échoue sur la contrainte (erreur H2 explicite).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 6 : PaymentDataGenerator.java (NOUVEAU)
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Noms de tables et de colonnes pris des requêtes : tables de travail =
+//  cibles de INSERT_OUT_DIFF / INSERT_ROLE_DIFF, IMT_CDE_BRANCH (filtre de
+//  SELECT_NEW_PAYMENTS), IOR_RID_OUTGNG_IMT (rôle → paiement, SELECT_MSG_ROLES).
+//  La colonne du paiement que référence IOR_RID_OUTGNG_IMT est trouvée dans
+//  les données, les colonnes uniques dans bench-schema.sql.
+
+package com.bnpparibas.atlanticc.ipmt.bench;
+
+import static com.bnpparibas.atlanticc.ipmt.sql.PaymentSqlQueries.INSERT_OUT_DIFF;
+import static com.bnpparibas.atlanticc.ipmt.sql.PaymentSqlQueries.INSERT_ROLE_DIFF;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * N branches × M paiements à partir des sources synthétiques
+ * (ReferenceDataGenerator) : le vrai purge / loadWorkingTables() remplit les
+ * tables de travail, puis chaque paiement (et ses rôles) est recopié jusqu'à
+ * N × M, colonnes uniques renouvelées et branche réaffectée. Les autres
+ * colonnes (deal, facility, type de message, montants...) restent celles
+ * de la source : mêmes lookups et mêmes contrôles que le run. Mêmes
+ * sources → mêmes lignes.
+ */
+public final class PaymentDataGenerator {
+
+    private static final int BATCH_SIZE = 1000;
+
+    /** Colonne branche de la table de travail des paiements (SELECT_NEW_PAYMENTS). */
+    private static final String BRANCH_COLUMN = "IMT_CDE_BRANCH";
+
+    /** Colonne des rôles qui référence le paiement (SELECT_MSG_ROLES). */
+    private static final String ROLE_PAYMENT_COLUMN = "IOR_RID_OUTGNG_IMT";
+
+    private static final Pattern INSERT_TARGET = Pattern.compile("(?i)insert\\s+into\\s+([\\w.$#]+)");
+
+    private final PaymentSqlHandler handler;
+    private final Connection connection;
+
+    /**
+     * @param handler    chargement des tables de travail et branches de la zone
+     * @param connection écriture des copies (autocommit désactivé)
+     */
+    public PaymentDataGenerator(PaymentSqlHandler handler, Connection connection) {
+        this.handler = handler;
+        this.connection = connection;
+    }
+
+    /** Les count premières branches de la zone mesurée, par ordre alphabétique. */
+    public List<String> branches(int count) throws Exception {
+        List<String> branches = new ArrayList<>(this.handler.getBranches(BenchmarkDatabase.ZONE));
+        Collections.sort(branches);
+        if (branches.size() < count) {
+            throw new IllegalStateException("Zone " + BenchmarkDatabase.ZONE + " has " + branches.size()
+                    + " branches, " + count + " requested");
+        }
+        return new ArrayList<>(branches.subList(0, count));
+    }
+
+    /**
+     * Charge les tables de travail depuis les sources puis les porte à
+     * paymentsPerBranch paiements par branche.
+     *
+     * @return le nombre de paiements générés
+     */
+    public int generate(List<String> branches, int paymentsPerBranch) throws Exception {
+        this.handler.purgeWorkingTables(branches);
+        this.handler.loadWorkingTables(branches, false);
+        this.handler.commit();
+
+        String paymentTable = insertTarget(INSERT_OUT_DIFF);
+        String roleTable = insertTarget(INSERT_ROLE_DIFF);
+        List<Map<String, Object>> payments = readRows(paymentTable);
+        List<Map<String, Object>> roles = readRows(roleTable);
+        if (payments.isEmpty()) {
+            throw new IllegalStateException("loadWorkingTables() loaded no payment for " + branches
+                    + ": check the values imposed by ReferenceDataGenerator");
+        }
+        String keyColumn = paymentKeyColumn(payments, roles);
+        Map<Object, List<Map<String, Object>>> rolesByPayment = roles.stream()
+                .filter(role -> role.get(ROLE_PAYMENT_COLUMN) != null)
+                .collect(Collectors.groupingBy(role -> role.get(ROLE_PAYMENT_COLUMN)));
+
+        Set<String> paymentKeys = uniqueColumns(paymentTable);
+        paymentKeys.add(keyColumn);
+        paymentKeys.remove(BRANCH_COLUMN);
+        Set<String> roleKeys = uniqueColumns(roleTable);
+        roleKeys.remove(ROLE_PAYMENT_COLUMN);
+        Map<String, KeyGenerator> paymentGenerators = generators(payments, paymentKeys);
+        Map<String, KeyGenerator> roleGenerators = generators(roles, roleKeys);
+
+        try (Statement statement = this.connection.createStatement()) {
+            statement.executeUpdate("delete from " + roleTable);
+            statement.executeUpdate("delete from " + paymentTable);
+        }
+        int total = branches.size() * paymentsPerBranch;
+        try (PreparedStatement paymentInsert = prepareInsert(paymentTable, payments.get(0).keySet());
+             PreparedStatement roleInsert = roles.isEmpty() ? null : prepareInsert(roleTable, roles.get(0).keySet())) {
+            for (int n = 0; n < total; n++) {
+                boolean original = n < payments.size();
+                Map<String, Object> template = payments.get(n % payments.size());
+                Map<String, Object> payment = original ? new LinkedHashMap<>(template)
+                        : renew(template, paymentGenerators);
+                payment.put(BRANCH_COLUMN, branches.get(n / paymentsPerBranch));
+                addBatch(paymentInsert, payment);
+                for (Map<String, Object> templateRole
+                        : rolesByPayment.getOrDefault(template.get(keyColumn), Collections.emptyList())) {
+                    Map<String, Object> role = original ? new LinkedHashMap<>(templateRole)
+                            : renew(templateRole, roleGenerators);
+                    role.put(ROLE_PAYMENT_COLUMN, payment.get(keyColumn));
+                    addBatch(roleInsert, role);
+                }
+                if ((n + 1) % BATCH_SIZE == 0) {
+                    executeBatches(paymentInsert, roleInsert);
+                }
+            }
+            executeBatches(paymentInsert, roleInsert);
+        }
+        this.connection.commit();
+        return total;
+    }
+
+    /** Table cible d'une requête INSERT ... SELECT de PaymentSqlQueries. */
+    private static String insertTarget(String insertQuery) {
+        Matcher matcher = INSERT_TARGET.matcher(insertQuery);
+        if (!matcher.find()) {
+            throw new IllegalStateException("No insert target in " + insertQuery);
+        }
+        return matcher.group(1).toUpperCase();
+    }
+
+    /**
+     * Colonne des paiements référencée par IOR_RID_OUTGNG_IMT : unique par
+     * paiement et contenant toutes les valeurs lues dans les rôles.
+     */
+    private static String paymentKeyColumn(List<Map<String, Object>> payments, List<Map<String, Object>> roles) {
+        Set<Object> referenced = roles.stream()
+                .map(role -> role.get(ROLE_PAYMENT_COLUMN))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        List<String> candidates = new ArrayList<>();
+        for (String column : payments.get(0).keySet()) {
+            Set<Object> values = payments.stream().map(payment -> payment.get(column)).collect(Collectors.toSet());
+            if (values.size() == payments.size() && !values.contains(null) && values.containsAll(referenced)) {
+                candidates.add(column);
+            }
+        }
+        if (referenced.isEmpty() || candidates.size() != 1) {
+            throw new IllegalStateException("Cannot tell which payment column " + ROLE_PAYMENT_COLUMN
+                    + " references (" + roles.size() + " roles, candidates " + candidates + ")");
+        }
+        return candidates.get(0);
+    }
+
+    /** Colonnes qui portent seules une contrainte d'unicité (clé primaire comprise). */
+    private Set<String> uniqueColumns(String table) throws SQLException {
+        int dot = table.indexOf('.');
+        Map<String, List<String>> indexes = new HashMap<>();
+        try (ResultSet rs = this.connection.getMetaData().getIndexInfo(null, table.substring(0, dot),
+                table.substring(dot + 1), true, false)) {
+            while (rs.next()) {
+                indexes.computeIfAbsent(rs.getString("INDEX_NAME"), k -> new ArrayList<>())
+                        .add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        return indexes.values().stream()
+                .filter(columns -> columns.size() == 1)
+                .map(columns -> columns.get(0))
+                .collect(Collectors.toSet());
+    }
+
+    private List<Map<String, Object>> readRows(String table) throws SQLException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try (Statement statement = this.connection.createStatement();
+             ResultSet rs = statement.executeQuery("select * from " + table + " order by 1")) {
+            ResultSetMetaData meta = rs.getMetaData();
+            while (rs.next()) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    row.put(meta.getColumnLabel(i), rs.getObject(i));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static Map<String, KeyGenerator> generators(Collection<Map<String, Object>> rows, Set<String> columns) {
+        Map<String, KeyGenerator> generators = new HashMap<>();
+        for (String column : columns) {
+            generators.put(column, new KeyGenerator(rows.stream()
+                    .map(row -> row.get(column))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet())));
+        }
+        return generators;
+    }
+
+    private static Map<String, Object> renew(Map<String, Object> template, Map<String, KeyGenerator> generators) {
+        Map<String, Object> row = new LinkedHashMap<>(template);
+        generators.forEach((column, generator) -> {
+            Object value = template.get(column);
+            if (value != null) {
+                row.put(column, generator.next(value));
+            }
+        });
+        return row;
+    }
+
+    private PreparedStatement prepareInsert(String table, Set<String> columns) throws SQLException {
+        return this.connection.prepareStatement("insert into " + table + " (" + String.join(", ", columns)
+                + ") values (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")");
+    }
+
+    private static void addBatch(PreparedStatement ps, Map<String, Object> row) throws SQLException {
+        int index = 1;
+        for (Object value : row.values()) {
+            ps.setObject(index++, value);
+        }
+        ps.addBatch();
+    }
+
+    private static void executeBatches(PreparedStatement paymentInsert, PreparedStatement roleInsert)
+            throws SQLException {
+        paymentInsert.executeBatch();
+        if (roleInsert != null) {
+            roleInsert.executeBatch();
+        }
+    }
+
+    /**
+     * Nouvelles valeurs d'une colonne unique : même type et même longueur que
+     * la valeur source, jamais une valeur déjà présente.
+     */
+    private static final class KeyGenerator {
+
+        private final Set<Object> existing;
+        private long next;
+
+        KeyGenerator(Set<Object> existing) {
+            this.existing = existing;
+        }
+
+        Object next(Object template) {
+            Object value;
+            do {
+                value = format(template, this.next++);
+            } while (this.existing.contains(value));
+            return value;
+        }
+
+        private static Object format(Object template, long n) {
+            if (template instanceof String) {
+                int length = ((String) template).length();
+                String value = String.format("%0" + Math.max(length, 1) + "X", n);
+                if (value.length() > length) {
+                    throw new IllegalStateException("No more " + length + "-character keys after " + n);
+                }
+                return value;
+            }
+            if (template instanceof Number) {
+                return BigDecimal.valueOf(n);
+            }
+            throw new IllegalStateException("Unsupported key type " + template.getClass().getName());
+        }
+    }
+}
+
+//  Import statique : package de PaymentSqlQueries dans le batch.
+//  Copies des valeurs sources : si une colonne unique de bench-schema.sql
+//  porte sur plusieurs colonnes dont aucune n'est renouvelée, l'insertion
+//  échoue sur la contrainte (erreur H2 explicite, pas de données fausses).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 7 : BenchmarkMain.java (NOUVEAU — package process)
+// ════════════════════════════════════════════════════════════════════════════════
+
+package com.bnpparibas.atlanticc.ipmt.process;
+
+import com.bnpparibas.atlanticc.ipmt.bench.BenchmarkDatabase;
+import java.util.List;
+
+/**
+ * Étapes package-private de Main pour les benchmarks, sur un handler et un
+ * service MQ fournis. Main.setInstance() avant chaque appel, comme le mode
+ * daemon.
+ */
+public final class BenchmarkMain {
+
+    private final Main main;
+
+    public BenchmarkMain(PaymentSqlHandler sqlHandler, IMessageMqService mqService) throws Exception {
+        this.main = new Main(new String[]{BenchmarkDatabase.ZONE}, sqlHandler, mqService);
+    }
+
+    /** Main.process() complet. */
+    public int process() {
+        Main.setInstance(this.main);
+        return this.main.process();
+    }
+
+    /** Paiements du run lus, contrôlés, transformés et enrichis, sans envoi. */
+    public List<Payment> buildNewPayments() throws Exception {
+        Main.setInstance(this.main);
+        return this.main.buildNewPayments();
+    }
+
+    /** Messages SWIFT, envoi MQ et statuts de paiements déjà construits. */
+    public int processPayments(List<Payment> payments) throws Exception {
+        Main.setInstance(this.main);
+        return this.main.processPayments(payments);
+    }
+}
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 8 : PaymentSqlHandlerBenchmark.java (NOUVEAU)
+// ════════════════════════════════════════════════════════════════════════════════
+
+package com.bnpparibas.atlanticc.ipmt.bench;
+
+import com.bnpparibas.atlanticc.ipmt.process.BenchmarkMain;
+import java.sql.Connection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Requêtes de PaymentSqlHandler sur H2. Une opération = un appel sur TOUT
+ * le jeu (N × M paiements) sauf getSeqNumber (un numéro).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class PaymentSqlHandlerBenchmark {
+
+    @Param({"10"})
+    private int branches;
+
+    @Param({"1000"})
+    private int paymentsPerBranch;
+
+    /** 0 = pas de cache référentiel (PERF_REFERENCE_DATA_CACHE.java). */
+    @Param({"0"})
+    private int refDataCacheSize;
+
+    /** 1 = lecture unitaire de TBP_IPMT_DAY_SEQ (PERF_SEQUENCE_BLOCK_ALLOCATION.java). */
+    @Param({"1"})
+    private int sequenceBlockSize;
+
+    /** IN_LIST, ARRAY ou STAGING (PERF_BRANCH_FILTER.java). */
+    @Param({"IN_LIST"})
+    private String branchFilterMode;
+
+    private BenchmarkDatabase db;
+    private PaymentSqlHandler handler;
+    private List<String> branchCodes;
+    private List<Payment> payments;
+
+    /** Messages envoyés au setup : cible de updatePendingSwiftMsgtoFailInDB. */
+    private List<String> pendingKeys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.db = BenchmarkDatabase.start();
+        P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+        config.refDataCacheSize = this.refDataCacheSize;
+        config.sequenceBlockSize = this.sequenceBlockSize;
+        config.branchFilterMode = this.branchFilterMode;
+        this.handler = new PaymentSqlHandler(this.db.openConnection());
+        this.handler.useReferenceDataZone(BenchmarkDatabase.ZONE);
+        try (Connection connection = this.db.openConnection()) {
+            PaymentDataGenerator generator = new PaymentDataGenerator(this.handler, connection);
+            this.branchCodes = generator.branches(this.branches);
+            generator.generate(this.branchCodes, this.paymentsPerBranch);
+        }
+        this.payments = this.handler.getNewPayments(this.branchCodes);
+        this.pendingKeys = sendAll();
+    }
+
+    /**
+     * Envoie tous les paiements par le vrai processPayments() (MQ en mémoire,
+     * aucun ACK ITL) : ils restent en STATUS_DELV. Vérifie que le balayage de
+     * timeout les sélectionne tous, sinon il serait mesuré à vide.
+     */
+    private List<String> sendAll() throws Exception {
+        BenchmarkMain main = new BenchmarkMain(this.handler, new InMemoryMessageMqService(0, 0));
+        List<Payment> sent = main.buildNewPayments();
+        main.processPayments(sent);
+        List<String> keys = sent.stream()
+                .map(Payment::getMsgKey)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        int timedOut = this.handler.updatePendingSwiftMsgtoFailInDB(this.branchCodes);
+        this.handler.rollback();
+        if (keys.isEmpty() || timedOut != keys.size()) {
+            throw new IllegalStateException("SELECT_PENDING_SWIFT_MSG selected " + timedOut + " of "
+                    + keys.size() + " messages sent in STATUS_DELV");
+        }
+        return keys;
+    }
+
+    /** Les caches de la zone ne doivent pas survivre d'une itération à l'autre. */
+    @Setup(Level.Iteration)
+    public void resetCaches() {
+        this.handler.invalidateReferenceData();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        this.handler.closeDbConnection();
+        this.db.close();
+    }
+
+    @Benchmark
+    public List<Payment> getNewPayments() throws Exception {
+        return this.handler.getNewPayments(this.branchCodes);
+    }
+
+    /** Baseline : 4 lookups unitaires par paiement. */
+    @Benchmark
+    public void enrichPerPayment(Blackhole bh) throws Exception {
+        for (Payment payment : this.payments) {
+            bh.consume(this.handler.getRoles(payment.getMsgId()));
+            bh.consume(this.handler.getEventIncr(payment.getMsgId()));
+            this.handler.setProcessingAreaData(payment);
+            bh.consume(this.handler.getPrimayBorrowerFullNme(payment.getPidDeal()));
+        }
+    }
+
+    /** PERF_BULK_ENRICHMENT.java : 4 requêtes "union all" par lot de 64 clés distinctes. */
+    @Benchmark
+    public List<Payment> enrichBulk() throws Exception {
+        this.handler.enrichPayments(this.payments);
+        return this.payments;
+    }
+
+    /**
+     * Un numéro puis commit, comme nextCommittedSeqNumber() : la ligne du jour
+     * de TBP_IPMT_DAY_SEQ n'est verrouillée que le temps d'une opération.
+     */
+    @Benchmark
+    public String getSeqNumber() throws Exception {
+        String seq = this.handler.getSeqNumber();
+        this.handler.commit();
+        return seq;
+    }
+
+    @Benchmark
+    public Integer updatePendingSwiftMsgtoFailInDB(PendingState pending) throws Exception {
+        return this.handler.updatePendingSwiftMsgtoFailInDB(this.branchCodes);
+    }
+
+    /**
+     * Remet les messages envoyés au setup en STATUS_DELV avant CHAQUE appel
+     * (hors mesure), par updateStatuses() : sans cela seul le 1er appel aurait
+     * des lignes à basculer. Level.Invocation est acceptable ici, une
+     * opération dure plusieurs ms.
+     */
+    @State(Scope.Thread)
+    public static class PendingState {
+
+        @Setup(Level.Invocation)
+        public void resetPending(PaymentSqlHandlerBenchmark bench) throws Exception {
+            bench.handler.rollback();
+            bench.handler.updateStatuses(bench.pendingKeys, STATUS_DELV, null);
+            bench.handler.commit();
+        }
+    }
+}
+
+//  STATUS_DELV : même import statique que dans PaymentSqlHandler.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 9 : SwiftMessageBenchmark.java (NOUVEAU)
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  processPayments() (ÉTAPE 2) sur des paiements déjà construits, MQ en
+//  mémoire sans latence : reste la construction des messages SWIFT et les
+//  statuts en base. L'allocation par opération (-prof gc) est la métrique
+//  principale ici. Base restaurée à chaque itération : l'historique et
+//  TBP_IPMT_DAY_SEQ ne grossissent pas d'une itération à l'autre.
+
+package com.bnpparibas.atlanticc.ipmt.bench;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class SwiftMessageBenchmark {
+
+    /** Doit rester égal à @OperationsPerInvocation. */
+    @Param({"1000"})
+    private int payments;
+
+    @Param({"1"})
+    private int sequenceBlockSize;
+
+    /** false = audit synchrone (PERF_ASYNC_AUDIT_WRITER.java). */
+    @Param({"false"})
+    private boolean auditAsync;
+
+    private BenchmarkDatabase db;
+    private PaymentSqlHandler handler;
+    private BenchmarkMain main;
+    private List<Payment> built;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.db = BenchmarkDatabase.start();
+        P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+        config.sequenceBlockSize = this.sequenceBlockSize;
+        config.auditAsync = this.auditAsync;
+        this.handler = new PaymentSqlHandler(this.db.openConnection());
+        try (Connection connection = this.db.openConnection()) {
+            PaymentDataGenerator generator = new PaymentDataGenerator(this.handler, connection);
+            generator.generate(generator.branches(1), this.payments);
+        }
+        this.db.snapshot();
+    }
+
+    /** Base et MQ neufs pour chaque itération. */
+    @Setup(Level.Iteration)
+    public void resetRun() throws Exception {
+        this.handler.rollback();
+        this.db.restore();
+        this.main = new BenchmarkMain(this.handler, new InMemoryMessageMqService(0, 0));
+    }
+
+    /**
+     * Paiements reconstruits avant chaque appel (hors mesure) : processPayments()
+     * ne reçoit jamais un paiement qu'il a déjà envoyé.
+     */
+    @Setup(Level.Invocation)
+    public void buildPayments() throws Exception {
+        this.built = this.main.buildNewPayments();
+        if (this.built.size() != this.payments) {
+            throw new IllegalStateException(this.built.size() + " payments built, " + this.payments
+                    + " expected: the score per message would be wrong");
+        }
+    }
+
+    /** Une opération = un paiement traité. */
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public int processPayments() throws Exception {
+        return this.main.processPayments(this.built);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        this.handler.closeDbConnection();
+        this.db.close();
+    }
+}
+
+//  @OperationsPerInvocation exige une constante : garder @Param payments
+//  et la valeur de l'annotation alignés (1000).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 10 : EndToEndBenchmark.java (NOUVEAU)
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Main.process() complet : réponses, timeout, purge, load, lecture,
+//  enrichissement, séquence, SWIFT, MQ, commit. Le run lit les tables
+//  sources Loan IQ synthétiques (purgeWorkingTables() viderait les tables de
+//  travail du générateur) : le volume se choisit par -Dbench.rows. Base restaurée
+//  depuis la photographie avant chaque invocation, hors mesure, référentiel
+//  compris. SingleShotTime → score = durée d'un run.
+
+package com.bnpparibas.atlanticc.ipmt.bench;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class EndToEndBenchmark {
+
+    /** Latence simulée d'un put MQ (0 = coût du batch seul). */
+    @Param({"0", "200"})
+    private long mqPutMicros;
+
+    @Param({"0"})
+    private int mqInflightWindow;
+
+    // Modes optionnels : valeur par défaut = celle du batch, -p pour comparer
+
+    @Param({"1"})
+    private int sequenceBlockSize;
+
+    @Param({"false"})
+    private boolean auditAsync;
+
+    @Param({"1"})
+    private int parallelWorkers;
+
+    /** FULL ou DELTA (PERF_DELTA_LOAD.java). */
+    @Param({"FULL"})
+    private String loadMode;
+
+    /** PERF_CHUNKED_COMMIT_RESTART.java. */
+    @Param({"false"})
+    private boolean chunkedCommit;
+
+    @Param({"IN_LIST"})
+    private String branchFilterMode;
+
+    private BenchmarkDatabase db;
+    private PaymentSqlHandler handler;
+    private InMemoryMessageMqService mqService;
+    private BenchmarkMain main;
+
+    /** Messages du 1er run : les runs suivants, sur la même base, en envoient autant. */
+    private int expectedMessages = -1;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.db = BenchmarkDatabase.start();
+        P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+        config.mqInflightWindow = this.mqInflightWindow;
+        config.sequenceBlockSize = this.sequenceBlockSize;
+        config.auditAsync = this.auditAsync;
+        config.parallelWorkers = this.parallelWorkers;
+        config.loadMode = this.loadMode;
+        config.chunkedCommit = this.chunkedCommit;
+        config.branchFilterMode = this.branchFilterMode;
+        this.db.snapshot();
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareRun() throws Exception {
+        this.db.restore();
+        this.handler = new PaymentSqlHandler(this.db.openConnection());
+        this.mqService = new InMemoryMessageMqService(this.mqPutMicros, 0);
+        this.main = new BenchmarkMain(this.handler, this.mqService);
+    }
+
+    @Benchmark
+    public int process() {
+        return this.main.process();
+    }
+
+    /** Un run qui n'envoie rien, ou moins que le 1er, serait mesuré comme "rapide" : on le refuse. */
+    @TearDown(Level.Invocation)
+    public void checkRun() throws Exception {
+        int sent = this.mqService.getCommittedMessages().size();
+        this.handler.closeDbConnection();
+        if (sent == 0 || (this.expectedMessages >= 0 && sent != this.expectedMessages)) {
+            throw new IllegalStateException("Run sent " + sent + " messages, expected "
+                    + (this.expectedMessages < 0 ? "at least one" : String.valueOf(this.expectedMessages)));
+        }
+        this.expectedMessages = sent;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        this.db.close();
+    }
+}
+
+//  Imports des ÉTAPES 9 et 10 : ceux de l'ÉTAPE 8 (+ OperationsPerInvocation
+//  pour l'ÉTAPE 9), plus les classes du batch utilisées.
+//  Audit : AuditHandler écrit dans H2, en synchrone ou par l'AuditWriter
+//  (tables d'audit dans bench-schema.sql, exportées avec la classe de
+//  requêtes de INSERT_AUDIT).
+//  Fichiers : file.output.mode et répertoire de la configuration, sur disque
+//  local.
+//  DELTA : restore() revient à une base sans marque, chaque run mesuré est
+//  donc un 1er run delta (filtre ORA_ROWSCN + lecture du SCN + marque).
+//  chunkedCommit : pas de checkpoint dans la photographie, chaque run
+//  mesuré est un run neuf (la reprise n'est pas mesurée).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandler.java           ║ +PaymentSqlHandler(Connection) principal  ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ SqlHandler.java                  ║ +ConnectionFactory, openConnection() par  ║
+  ║                                  ║ la fabrique si posée                      ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ Main.java                        ║ +buildNewPayments()                       ║
+  ║                                  ║ processPayments() package-private         ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ ipmt-benchmarks/pom.xml          ║ NOUVEAU : JMH + H2, jar shadé, non livré  ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ bench-schema.sql                 ║ NOUVEAU, versionné : DDL H2 des tables    ║
+  ║                                  ║ lues / écrites, sans données              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ BenchmarkSchemaExport.java       ║ NOUVEAU, optionnel : régénère la DDL      ║
+  ║                                  ║ depuis les plans de PaymentSqlQueries     ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ BenchmarkDatabase.java           ║ NOUVEAU : H2 mémoire, photographie,       ║
+  ║                                  ║ fabrique de connexions, émulations Oracle ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ ReferenceDataGenerator.java      ║ NOUVEAU : référentiel et sources Loan IQ  ║
+  ║                                  ║ synthétiques, jointures par domaine       ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentDataGenerator.java        ║ NOUVEAU : N × M copies des paiements      ║
+  ║                                  ║ chargés par loadWorkingTables()           ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ BenchmarkMain.java               ║ NOUVEAU : accès aux étapes de Main        ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandlerBenchmark.java  ║ NOUVEAU : 5 benchmarks handler            ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ SwiftMessageBenchmark.java       ║ NOUVEAU : processPayments() (SWIFT)       ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ EndToEndBenchmark.java           ║ NOUVEAU : Main.process() + MQ en mémoire  ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Mesure de référence : results/baseline.json sur le commit de départ, puis
+  un fichier par optimisation, mêmes @Param, même -Dbench.rows, même machine. Un
+  mode optionnel se compare à son défaut dans le même run (-p).
+*/
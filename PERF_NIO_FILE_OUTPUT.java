@@ -0,0 +1,489 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : SORTIE FICHIER NIO (SPOOL, FileChannel, FSYNC GROUPÉ)        ║
+// ║        IFileService.store → 1 append dans un spool roulant                 ║
+// ║        Validation path traversal de FIX_PATH_MANIPULATION.java conservée   ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  store(content, fileName, folderPath) → FileUtil.writeToFile() ouvre un
+//  FileOutputStream par message : open + write + close (+ création d'inode)
+//  pour chaque SWIFT exporté. Aucun contrôle du buffer, aucun regroupement.
+//
+//  APRÈS (file.output.mode=SPOOL) : SpoolFileWriter garde UN FileChannel
+//  ouvert en append par dossier, écrit via un ByteBuffer direct de taille
+//  configurable, et :
+//   - roule sur un nouveau fichier au-delà de file.spool.max.bytes
+//   - fait un force() (fsync) groupé tous les N messages ou T ms, et toujours
+//     au roulement et à la fermeture
+//   - en option (file.spool.async=true), écrit sur un thread dédié
+//  Chaque enregistrement porte le fileName d'origine, préfixé par sa
+//  longueur, puis le contenu préfixé par la sienne : le spool reste
+//  découpable en fichiers unitaires quel que soit le contenu.
+//  Mode asynchrone : la 1re erreur d'écriture est gardée et relevée par
+//  chaque append() suivant, par flush() et par close().
+//  flush() (attente des écritures en cours + fsync + contrôle d'erreur) est
+//  appelé par Main juste avant chaque commit() : un statut commité a
+//  toujours son message sur disque, sinon le commit n'a pas lieu.
+//
+//  Le mode FILE_PER_MESSAGE (défaut) reste le code actuel.
+//
+//  FICHIERS MODIFIÉS : 5
+//  ─────────────────
+//  1. P00_ICOR_00_Config.java        → +fileOutputMode +fileSpool*
+//  2. SpoolFileWriter.java (NOUVEAU, package de FileUtil)
+//  3. IFileService.java              → store() : validation puis spool ou fichier, +flush()
+//  4. Main.java                      → fileService.flush() avant chaque commit
+//  5. FileOutputBenchmark.java (NOUVEAU, src/test) → files/s et MB/s
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : P00_ICOR_00_Config.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** FILE_PER_MESSAGE (actuel) ou SPOOL. */
+    public String fileOutputMode = "FILE_PER_MESSAGE";
+    public int fileSpoolBufferBytes = 64 * 1024;
+    public long fileSpoolMaxBytes = 64L * 1024 * 1024;
+    public int fileSpoolSyncEvery = 100;
+    public long fileSpoolSyncMillis = 1000;
+    public boolean fileSpoolAsync = false;
+
+    this.fileOutputMode = props.getProperty("file.output.mode", "FILE_PER_MESSAGE").trim().toUpperCase();
+    this.fileSpoolBufferBytes = Integer.parseInt(props.getProperty("file.spool.buffer.bytes", "65536"));
+    this.fileSpoolMaxBytes = Long.parseLong(props.getProperty("file.spool.max.bytes", "67108864"));
+    this.fileSpoolSyncEvery = Integer.parseInt(props.getProperty("file.spool.sync.every", "100"));
+    this.fileSpoolSyncMillis = Long.parseLong(props.getProperty("file.spool.sync.millis", "1000"));
+    this.fileSpoolAsync = Boolean.parseBoolean(props.getProperty("file.spool.async", "false"));
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : SpoolFileWriter.java (NOUVEAU)
+// ════════════════════════════════════════════════════════════════════════════════
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Ajoute des messages à des fichiers spool roulants d'un dossier, via un
+ * FileChannel et un buffer direct. Thread-safe.
+ *
+ * Format d'un enregistrement (entiers big-endian, textes UTF-8) :
+ *   [int longueur du nom][nom][int longueur du contenu][contenu]
+ * Les longueurs sont en octets : un contenu peut contenir n'importe quel
+ * caractère (retours à la ligne, '#', ...) sans ambiguïté au découpage.
+ */
+public class SpoolFileWriter implements AutoCloseable {
+
+    private static final DateTimeFormatter SPOOL_NAME = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS");
+
+    /** Attente max des écritures asynchrones restantes (flush, fermeture). */
+    private static final long WAIT_TIMEOUT_MINUTES = 1;
+
+    private final Path folder;
+    private final ByteBuffer buffer;
+    private final long maxBytes;
+    private final int syncEvery;
+    private final long syncMillis;
+    private final ExecutorService executor;
+
+    private FileChannel channel;
+    private long spoolBytes;
+    private int unsynced;
+    private long lastSync = System.currentTimeMillis();
+
+    /**
+     * 1re erreur d'écriture asynchrone. Une fois renseignée, plus rien n'est
+     * écrit (le spool s'arrête au dernier enregistrement complet) et chaque
+     * append() / flush() / close() la relève.
+     */
+    private volatile IOException failure;
+
+    public SpoolFileWriter(Path folder, int bufferBytes, long maxBytes, int syncEvery, long syncMillis, boolean async) {
+        this.folder = folder;
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+        this.maxBytes = maxBytes;
+        this.syncEvery = syncEvery;
+        this.syncMillis = syncMillis;
+        this.executor = async ? Executors.newSingleThreadExecutor(r -> new Thread(r, "spool-" + folder.getFileName())) : null;
+    }
+
+    /**
+     * Ajoute un enregistrement (fileName, content) au spool courant.
+     * En mode asynchrone, une erreur d'écriture remonte à tous les appels
+     * suivants, à flush() et à close().
+     */
+    public void append(String fileName, String content) throws IOException {
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        byte[] body = content.getBytes(StandardCharsets.UTF_8);
+        checkFailure();
+        if (this.executor == null) {
+            write(name, body);
+            return;
+        }
+        this.executor.execute(() -> {
+            if (this.failure != null) {
+                return;
+            }
+            try {
+                write(name, body);
+            } catch (IOException e) {
+                this.failure = e;
+            } catch (RuntimeException | Error e) {
+                this.failure = new IOException("Asynchronous spool write failed", e);
+            }
+        });
+    }
+
+    private synchronized void write(byte[] name, byte[] body) throws IOException {
+        long length = Integer.BYTES + name.length + Integer.BYTES + body.length;
+        if (this.channel == null || this.spoolBytes + length > this.maxBytes) {
+            roll();
+        }
+        putInt(name.length);
+        put(name);
+        putInt(body.length);
+        put(body);
+        this.spoolBytes += length;
+        if (++this.unsynced >= this.syncEvery || System.currentTimeMillis() - this.lastSync >= this.syncMillis) {
+            sync();
+        }
+    }
+
+    private void putInt(int value) throws IOException {
+        if (this.buffer.remaining() < Integer.BYTES) {
+            drain();
+        }
+        this.buffer.putInt(value);
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!this.buffer.hasRemaining()) {
+                drain();
+            }
+            int length = Math.min(this.buffer.remaining(), bytes.length - offset);
+            this.buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void drain() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    private void sync() throws IOException {
+        drain();
+        this.channel.force(false);
+        this.unsynced = 0;
+        this.lastSync = System.currentTimeMillis();
+    }
+
+    private void roll() throws IOException {
+        if (this.channel != null) {
+            sync();
+            this.channel.close();
+        }
+        Path spool = this.folder.resolve("spool_" + LocalDateTime.now().format(SPOOL_NAME) + ".swt");
+        this.channel = FileChannel.open(spool, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.spoolBytes = this.channel.size();
+    }
+
+    private void checkFailure() throws IOException {
+        if (this.failure != null) {
+            throw new IOException("Asynchronous spool write failed in " + this.folder, this.failure);
+        }
+    }
+
+    /**
+     * Rend durable tout ce qui a été déposé avant l'appel : attend les
+     * écritures asynchrones en cours, vide le buffer et fait un fsync.
+     * Relève la 1re erreur asynchrone, ou un délai dépassé.
+     */
+    public void flush() throws IOException {
+        checkFailure();
+        if (this.executor != null) {
+            // Thread unique, file FIFO : la tâche vide passe après toutes les écritures déposées
+            Future<?> written = this.executor.submit(() -> { });
+            try {
+                written.get(WAIT_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while flushing spool in " + this.folder, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Spool flush failed in " + this.folder, e.getCause());
+            } catch (TimeoutException e) {
+                throw new IOException("Spool writes in " + this.folder + " not finished within "
+                        + WAIT_TIMEOUT_MINUTES + " min");
+            }
+        }
+        synchronized (this) {
+            checkFailure();
+            if (this.channel != null) {
+                sync();
+            }
+        }
+    }
+
+    /**
+     * Attend les écritures asynchrones en cours, puis flush + fsync et
+     * fermeture. Relève la 1re erreur asynchrone, ou un délai dépassé.
+     * Le fichier est fermé dans tous les cas.
+     */
+    @Override
+    public void close() throws IOException {
+        boolean terminated = true;
+        if (this.executor != null) {
+            this.executor.shutdown();
+            try {
+                terminated = this.executor.awaitTermination(WAIT_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                terminated = false;
+            }
+            if (!terminated) {
+                this.executor.shutdownNow();
+            }
+        }
+        synchronized (this) {
+            if (this.channel != null) {
+                try {
+                    if (this.failure == null) {
+                        sync();
+                    }
+                } finally {
+                    this.channel.close();
+                    this.channel = null;
+                }
+            }
+        }
+        checkFailure();
+        if (!terminated) {
+            throw new IOException("Spool writes in " + this.folder + " not finished within "
+                    + WAIT_TIMEOUT_MINUTES + " min, spool may be incomplete");
+        }
+    }
+}
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : IFileService.java — store()
+// ════════════════════════════════════════════════════════════════════════════════
+
+    // AVANT (après FIX_PATH_MANIPULATION.java) :
+    @Override
+    public void store(String content, String fileName, String folderPath) throws IOException {
+        Path baseDir = Paths.get(folderPath).normalize().toAbsolutePath();
+        Path resolved = baseDir.resolve(fileName).normalize().toAbsolutePath();
+
+        if (!resolved.startsWith(baseDir)) {
+            throw new IOException("Invalid file path: path traversal detected");
+        }
+
+        FileUtil.writeToFile(content, resolved.toString());
+    }
+
+    // APRÈS :
+// Ajouter les imports :
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+    /** Un spool par dossier, ouvert au premier store(). */
+    private final Map<Path, SpoolFileWriter> spools = new ConcurrentHashMap<>();
+
+    @Override
+    public void store(String content, String fileName, String folderPath) throws IOException {
+        Path baseDir = Paths.get(folderPath).normalize().toAbsolutePath();
+        Path resolved = baseDir.resolve(fileName).normalize().toAbsolutePath();
+
+        if (!resolved.startsWith(baseDir)) {
+            throw new IOException("Invalid file path: path traversal detected");
+        }
+
+        P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+        if ("SPOOL".equals(config.fileOutputMode)) {
+            // fileName validé ci-dessus ; seul son nom court va dans l'en-tête
+            spool(baseDir, config).append(resolved.getFileName().toString(), content);
+        } else {
+            FileUtil.writeToFile(content, resolved.toString());
+        }
+    }
+
+    private SpoolFileWriter spool(Path baseDir, P00_ICOR_00_Config config) {
+        return this.spools.computeIfAbsent(baseDir, dir -> new SpoolFileWriter(dir,
+                config.fileSpoolBufferBytes, config.fileSpoolMaxBytes,
+                config.fileSpoolSyncEvery, config.fileSpoolSyncMillis, config.fileSpoolAsync));
+    }
+
+    /**
+     * Rend durables tous les messages déjà stockés (attente async + fsync),
+     * spool par spool ; relève la 1re erreur. À appeler avant chaque commit.
+     */
+    public void flush() throws IOException {
+        IOException error = null;
+        for (SpoolFileWriter spool : this.spools.values()) {
+            try {
+                spool.flush();
+            } catch (IOException e) {
+                error = addError(error, e);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Ferme tous les spools (flush + fsync), même si l'un échoue ; relève la
+     * 1re erreur. À appeler en fin de run.
+     */
+    public void close() throws IOException {
+        IOException error = null;
+        for (SpoolFileWriter spool : this.spools.values()) {
+            try {
+                spool.close();
+            } catch (IOException e) {
+                error = addError(error, e);
+            }
+        }
+        this.spools.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static IOException addError(IOException error, IOException e) {
+        if (error == null) {
+            return e;
+        }
+        error.addSuppressed(e);
+        return error;
+    }
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : Main.java — flush du spool avant chaque commit
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Même règle que l'audit (PERF_ASYNC_AUDIT_WRITER.java) : avant CHAQUE
+//  this.sqlHandler.commit() de process(). Une IOException (erreur d'écriture
+//  asynchrone, délai dépassé, fsync en échec) est attrapée par le catch de
+//  process(), comme celle de store() aujourd'hui → rollback, statuts non
+//  commités. En mode synchrone, flush() fait le fsync des (au plus
+//  file.spool.sync.every) messages pas encore synchronisés.
+
+    // AVANT :
+    this.auditHandler.flush();
+    this.sqlHandler.commit();
+
+    // APRÈS :
+    this.auditHandler.flush();
+    this.fileService.flush();
+    this.sqlHandler.commit();
+
+    // finally de process() : inchangé, fileService.close() ferme les spools
+    // (plus rien à écrire après le dernier commit).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 5 : FileOutputBenchmark.java (NOUVEAU, src/test/java, même package)
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Lancement : java -cp ... FileOutputBenchmark [nbMessages] [tailleOctets]
+//  Compare FileUtil.writeToFile (1 fichier / message) et SpoolFileWriter
+//  (fsync tous les 100 messages), après un tour de chauffe.
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class FileOutputBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 2048;
+        String content = String.join("", Collections.nCopies(size, "X"));
+
+        for (int round = 0; round < 2; round++) {
+            boolean warmUp = round == 0;
+            report("FileUtil.writeToFile", warmUp, messages, size, dir -> {
+                for (int i = 0; i < messages; i++) {
+                    FileUtil.writeToFile(content, dir.resolve("msg_" + i + ".swt").toString());
+                }
+            });
+            report("SpoolFileWriter", warmUp, messages, size, dir -> {
+                try (SpoolFileWriter spool = new SpoolFileWriter(dir, 64 * 1024, 64L * 1024 * 1024, 100, 1000, false)) {
+                    for (int i = 0; i < messages; i++) {
+                        spool.append("msg_" + i + ".swt", content);
+                    }
+                }
+            });
+        }
+    }
+
+    private interface Run {
+        void run(Path dir) throws IOException;
+    }
+
+    private static void report(String name, boolean warmUp, int messages, int size, Run run) throws IOException {
+        Path dir = Files.createTempDirectory("ipmt-bench");
+        long start = System.nanoTime();
+        run.run(dir);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (!warmUp) {
+            System.out.printf("%-22s %8.0f files/s %8.1f MB/s%n", name,
+                    messages / seconds, messages * (double) size / (1024 * 1024) / seconds);
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ P00_ICOR_00_Config.java          ║ +fileOutputMode +5 paramètres spool       ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ SpoolFileWriter.java             ║ NOUVEAU : FileChannel + buffer direct     ║
+  ║                                  ║ roulement, fsync groupé, async optionnel  ║
+  ║                                  ║ enregistrements préfixés par longueur     ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ IFileService.java                ║ store() : validation inchangée,           ║
+  ║                                  ║ puis spool ou fichier ; +flush() +close() ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ Main.java                        ║ fileService.flush() avant chaque commit   ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ FileOutputBenchmark.java         ║ NOUVEAU (test) : files/s et MB/s          ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Fortify : la validation baseDir / startsWith reste AVANT toute écriture ;
+  le nom du spool est généré (horodatage), jamais issu d'une donnée.
+*/
@@ -0,0 +1,519 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : POOL DE CONNEXIONS + TRAITEMENT PARALLÈLE PAR BRANCHE       ║
+// ║        1 worker = 1 connexion = 1 transaction = 1 IMT_CDE_BRANCH à la fois ║
+// ║        parallel.workers=1 → comportement actuel (mono-connexion).          ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  Main.process() traite toutes les branches de getBranches(cdeName) en série,
+//  sur l'unique liqbatchConnection de SqlHandler.
+//
+//  APRÈS :
+//   1. Les étapes "globales" restent sur la connexion principale, inchangées :
+//      responses → commit → purge/load des working tables → commit.
+//   2. La phase paiements est découpée par branche. Chaque branche est une
+//      tâche soumise à un ExecutorService de N workers. Une tâche :
+//        - emprunte un handler de worker (connexion du pool) via l'interface
+//        - ouvre SA connexion MQ (unité de travail MQ propre au worker)
+//        - construit un Main de worker (AuditHandler, PaymentProcessor,
+//          paymentController propres, branches = [branche]) et exécute
+//          EXACTEMENT la séquence série : processPayments(buildNewPayments())
+//          (découpage de PERF_STREAMING_PAYMENTS.java)
+//        - commit si OK, rollback sinon, ferme MQ, rend la connexion
+//   3. Main agrège les statuts par updateStatus(), comme start() ; une
+//      branche en échec lève une PaymentException APRÈS que toutes les
+//      autres ont fini (et commité), traitée par le catch existant de process().
+//
+//  Rien n'est partagé entre workers : ni connexion JDBC, ni connexion MQ,
+//  ni AuditHandler / PaymentProcessor / paymentController. Un commit ou un
+//  backout MQ d'un worker ne touche donc que ses propres messages.
+//
+//  Pas de nouvelle dépendance (HikariCP, UCP) : le pool est une simple
+//  ArrayBlockingQueue de connexions ouvertes avec la même méthode que
+//  liqbatchConnection. Le nombre de connexions = nombre de workers.
+//
+//  ⚠️ Séquence SWIFT : getSeqNumber() verrouille la ligne du jour dans
+//  TBP_IPMT_DAY_SEQ jusqu'au commit. Si chaque worker la prenait dans sa
+//  propre transaction, les workers s'attendraient les uns les autres jusqu'à
+//  leur commit → retour au série. En mode parallèle, les workers délèguent
+//  donc getSeqNumber() à un handler de séquence sur SA PROPRE connexion
+//  (synchronized + commit immédiat) : la connexion principale, qui peut
+//  porter du travail non commité, n'est jamais commitée par un worker.
+//  Voir PERF_SEQUENCE_BLOCK_ALLOCATION.java pour la version par plages.
+//
+//  FICHIERS MODIFIÉS : 7
+//  ─────────────────
+//  1. P00_ICOR_00_Config.java   → +parallelWorkers
+//  2. SqlHandler.java           → +pool de connexions, constructeur (Connection)
+//  3. IPaymentSqlHandler.java   → +openWorkerPool / borrowWorkerHandler /
+//                                  releaseWorkerHandler / closeWorkerPool
+//  4. PaymentSqlHandler.java    → +handler de worker, handler de séquence dédié
+//  5. IMessageMqService.java    → +openConnection() +closeConnection()
+//  6. PaymentProcessor.java     → AUCUNE MODIFICATION
+//  7. Main.java                 → +constructeur de worker, process() parallèle
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : P00_ICOR_00_Config.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** Nombre de branches traitées en parallèle. 1 = mode série actuel. */
+    public int parallelWorkers = 1;
+
+    this.parallelWorkers = Integer.parseInt(props.getProperty("parallel.workers", "1"));
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : SqlHandler.java — Pool de connexions
+// ════════════════════════════════════════════════════════════════════════════════
+
+// Ajouter les imports :
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// ── 2a. Extraire l'ouverture de connexion du constructeur ──
+
+    // AVANT :
+    public SqlHandler() {
+        this.liqbatchConnection = DriverManager.getConnection(url, user, password);
+        // ...
+    }
+
+    // APRÈS :
+    public SqlHandler() throws SQLException {
+        this(openConnection());
+    }
+
+    protected SqlHandler(Connection connection) {
+        this.liqbatchConnection = connection;
+    }
+
+    /** Même code d'ouverture qu'avant, déplacé pour être réutilisé par le pool. */
+    protected static Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        // ... (reste du code existant)
+        return connection;
+    }
+
+// ── 2b. Pool ──
+//   Le pool garde toujours size connexions : une connexion invalide est
+//   rendue telle quelle et remplacée à l'emprunt. Si la réouverture échoue,
+//   l'ancienne retourne au pool et l'emprunt échoue → jamais de slot perdu,
+//   donc jamais d'attente infinie.
+
+    /** Attente max d'une connexion du pool. */
+    private static final long POOL_BORROW_TIMEOUT_SECONDS = 60;
+
+    private static BlockingQueue<Connection> connectionPool;
+
+    /**
+     * Ouvre size connexions. Appelé une fois par run quand parallel.workers > 1.
+     */
+    protected static synchronized void initConnectionPool(int size) throws SQLException {
+        if (connectionPool != null) {
+            return;
+        }
+        BlockingQueue<Connection> pool = new ArrayBlockingQueue<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                Connection connection = openConnection();
+                connection.setAutoCommit(false);
+                pool.add(connection);
+            }
+        } catch (SQLException e) {
+            closeAll(pool);
+            throw e;
+        }
+        connectionPool = pool;
+    }
+
+    /**
+     * Emprunte une connexion valide. Échoue après POOL_BORROW_TIMEOUT_SECONDS.
+     */
+    protected static Connection borrowConnection() throws SQLException {
+        Connection connection;
+        try {
+            connection = connectionPool.poll(POOL_BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        }
+        if (connection == null) {
+            throw new SQLException("No pooled connection available after " + POOL_BORROW_TIMEOUT_SECONDS + "s");
+        }
+        if (isValid(connection)) {
+            return connection;
+        }
+        try {
+            Connection replacement = openConnection();
+            replacement.setAutoCommit(false);
+            closeQuietly(connection);
+            return replacement;
+        } catch (SQLException e) {
+            // Le slot reste dans le pool : l'emprunt suivant retentera la réouverture
+            connectionPool.add(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * Rend une connexion au pool, valide ou non (remplacée au prochain emprunt).
+     */
+    protected static void releaseConnection(Connection connection) {
+        connectionPool.add(connection);
+    }
+
+    protected static synchronized void closeConnectionPool() {
+        if (connectionPool == null) {
+            return;
+        }
+        closeAll(connectionPool);
+        connectionPool = null;
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(5);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeAll(BlockingQueue<Connection> pool) {
+        for (Connection connection : pool) {
+            closeQuietly(connection);
+        }
+        pool.clear();
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOG.warn("Could not close pooled connection", e);
+        }
+    }
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : IPaymentSqlHandler.java — Handlers de worker
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Sur l'interface : Main ne caste plus vers PaymentSqlHandler, et un
+//  décorateur (PERF_INSTRUMENTATION.java) ou un mock reste utilisable.
+
+    /**
+     * Ouvre le pool de size connexions des workers et la connexion dédiée à
+     * la séquence SWIFT. Appelé sur le handler principal.
+     */
+    void openWorkerPool(int size) throws SQLException;
+
+    /**
+     * Handler de worker sur une connexion du pool. Sa séquence SWIFT est
+     * déléguée à la connexion de séquence du handler principal.
+     */
+    IPaymentSqlHandler borrowWorkerHandler() throws SQLException;
+
+    /**
+     * Appelé sur un handler de worker : vide son cache de statements et rend
+     * sa connexion au pool. Ne ferme pas la connexion.
+     */
+    void releaseWorkerHandler();
+
+    /** Ferme le pool et la connexion de séquence. Appelé sur le handler principal. */
+    void closeWorkerPool();
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : PaymentSqlHandler.java — Handler de worker, séquence dédiée
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Handler de worker : handler de séquence auquel getSeqNumber() délègue.
+     * null pour le handler principal et pour le handler de séquence lui-même.
+     */
+    private final PaymentSqlHandler sequenceHandler;
+
+    /** Handler principal : handler de séquence des workers, sur sa propre connexion. */
+    private PaymentSqlHandler workerSequenceHandler;
+
+    // AVANT :
+    public PaymentSqlHandler() {
+        super();
+    }
+
+    // APRÈS :
+    public PaymentSqlHandler() throws SQLException {
+        super();
+        this.sequenceHandler = null;
+    }
+
+    private PaymentSqlHandler(Connection connection, PaymentSqlHandler sequenceHandler) {
+        super(connection);
+        this.sequenceHandler = sequenceHandler;
+    }
+
+    @Override
+    public synchronized void openWorkerPool(int size) throws SQLException {
+        // En cas d'échec, l'appelant appelle closeWorkerPool() (finally)
+        initConnectionPool(size);
+        Connection connection = openConnection();
+        connection.setAutoCommit(false);
+        this.workerSequenceHandler = new PaymentSqlHandler(connection, null);
+    }
+
+    @Override
+    public IPaymentSqlHandler borrowWorkerHandler() throws SQLException {
+        if (this.workerSequenceHandler == null) {
+            throw new IllegalStateException("openWorkerPool() must be called first");
+        }
+        return new PaymentSqlHandler(borrowConnection(), this.workerSequenceHandler);
+    }
+
+    @Override
+    public void releaseWorkerHandler() {
+        if (this.sequenceHandler == null) {
+            throw new IllegalStateException("Not a worker handler");
+        }
+        clearStatementCache();
+        releaseConnection(this.liqbatchConnection);
+    }
+
+    @Override
+    public synchronized void closeWorkerPool() {
+        if (this.workerSequenceHandler != null) {
+            this.workerSequenceHandler.closeDbConnection();
+            this.workerSequenceHandler = null;
+        }
+        closeConnectionPool();
+    }
+
+    // AVANT :
+    @Override
+    public String getSeqNumber() throws PaymentException {
+        // SELECT_SEQUENCE puis INSERT_SEQUENCE / UPDATE_SEQUENCE
+    }
+
+    // APRÈS :
+    @Override
+    public String getSeqNumber() throws PaymentException {
+        if (this.sequenceHandler != null) {
+            return this.sequenceHandler.nextCommittedSeqNumber();
+        }
+        // ... (corps existant inchangé)
+    }
+
+    /**
+     * Appelé par les workers sur le handler de séquence : un numéro à la fois,
+     * commité tout de suite sur la connexion de séquence pour libérer la ligne
+     * TBP_IPMT_DAY_SEQ. Un paiement qui échoue ensuite laisse un trou dans la
+     * séquence, jamais un doublon.
+     */
+    private synchronized String nextCommittedSeqNumber() throws PaymentException {
+        String seq = getSeqNumber();
+        try {
+            commit();
+        } catch (SQLException e) {
+            try {
+                rollback();
+            } catch (SQLException rollbackError) {
+                LOG.error("Could not roll back sequence number " + seq, rollbackError);
+            }
+            throw new PaymentException("Could not commit sequence number " + seq, e);
+        }
+        return seq;
+    }
+
+//  clearStatementCache() reste protected : seul releaseWorkerHandler() l'appelle.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 5 : IMessageMqService.java — Connexion MQ par worker
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Implémentation IBM MQ : openConnection() crée un nouveau MQQueueManager
+//  avec les mêmes paramètres (hôte, canal, gestionnaire, file) que
+//  l'instance courante ; closeConnection() ferme la file puis fait
+//  queueManager.disconnect(). Le syncpoint MQ est porté par le
+//  MQQueueManager : une connexion = une unité de travail indépendante.
+
+    /**
+     * Nouvelle connexion au même gestionnaire de files et à la même file,
+     * avec sa propre unité de travail MQ.
+     */
+    IMessageMqService openConnection() throws PaymentException;
+
+    /** Ferme la file et déconnecte le gestionnaire de files. */
+    void closeConnection();
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 6 : PaymentProcessor.java — AUCUNE MODIFICATION
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Chaque worker a son propre PaymentProcessor, construit par le Main de worker.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 7 : Main.java — Main de worker et process() parallèle
+// ════════════════════════════════════════════════════════════════════════════════
+
+// Ajouter les imports :
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// ── 7a. Constructeur de worker ──
+//   Même contenu que initProcessors(), restreint à ce que la phase paiements
+//   utilise : pas de setInstance() (le Main principal reste l'instance),
+//   pas de setAutoCommit() (connexions du pool déjà en autocommit false).
+//   Le ResponseProcessor est construit comme dans initProcessors(), sur les
+//   connexions du worker, mais jamais démarré : les réponses sont traitées
+//   avant, par le Main principal. Tout champ de Main lu par processPayments()
+//   est ainsi renseigné, sans NPE possible dans un worker.
+//   paymentController est un champ de Main : chaque Main de worker a le sien,
+//   initialisé comme celui du Main principal.
+
+    private Main(Main parent, String branch, IPaymentSqlHandler sqlHandler, IMessageMqService mqService)
+            throws SQLException {
+        this.cdeName = parent.cdeName;
+        this.parameter = parent.parameter;
+        this.sqlHandler = sqlHandler;
+        this.mqService = mqService;
+        this.branches = Collections.singletonList(branch);
+        this.auditHandler = new AuditHandler(this.cdeName, sqlHandler);
+        this.auditHandler.loadLogId();
+        this.responseProcessor = new ResponseProcessor(this.branches, sqlHandler, mqService, this.auditHandler);
+        this.paymentProcessor = new PaymentProcessor(this.parameter, this.branches, sqlHandler, mqService,
+                this.auditHandler, this.paymentController);
+    }
+
+// ── 7b. process() ──
+
+    // AVANT (PERF_STREAMING_PAYMENTS.java) :
+            // Create, control, transform and enrich payments
+            P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+            if (config.paymentChunkSize <= 0) {
+                List<Payment> payments = this.paymentProcessor.buildNewPayments();
+                return processPayments(payments);
+            }
+            return processPaymentsByChunk(config.paymentFetchSize, config.paymentChunkSize);
+
+    // APRÈS :
+            // Create, control, transform and enrich payments
+            P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+            if (config.parallelWorkers > 1 && this.branches.size() > 1) {
+                return processBranchesInParallel(config.parallelWorkers);
+            }
+            if (config.paymentChunkSize <= 0) {
+                List<Payment> payments = this.paymentProcessor.buildNewPayments();
+                return processPayments(payments);
+            }
+            return processPaymentsByChunk(config.paymentFetchSize, config.paymentChunkSize);
+
+// ── 7c. Exécution parallèle ──
+
+    /**
+     * Traite chaque branche dans sa propre transaction JDBC et MQ. Attend
+     * toutes les branches avant de signaler un échec : les branches OK
+     * restent commitées.
+     */
+    private int processBranchesInParallel(int workers) throws SQLException, PaymentException {
+        int poolSize = Math.min(workers, this.branches.size());
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        try {
+            this.sqlHandler.openWorkerPool(poolSize);
+            Map<String, Future<Integer>> results = new LinkedHashMap<>();
+            for (String branch : this.branches) {
+                results.put(branch, executor.submit(() -> processBranch(branch)));
+            }
+            int failures = 0;
+            Throwable firstFailure = null;
+            for (Map.Entry<String, Future<Integer>> result : results.entrySet()) {
+                try {
+                    updateStatus(result.getValue().get());
+                } catch (ExecutionException e) {
+                    failures++;
+                    firstFailure = firstFailure == null ? e.getCause() : firstFailure;
+                    LOG.error("Branch " + result.getKey() + " failed", e.getCause());
+                }
+            }
+            if (failures > 0) {
+                throw new PaymentException(failures + "/" + this.branches.size() + " branches failed", firstFailure);
+            }
+            return currentStatus;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentException("Interrupted while waiting for branches", e);
+        } finally {
+            executor.shutdownNow();
+            this.sqlHandler.closeWorkerPool();
+        }
+    }
+
+    /** Séquence série complète pour une branche, sur un Main de worker. */
+    private int processBranch(String branch) throws Exception {
+        IPaymentSqlHandler workerSqlHandler = this.sqlHandler.borrowWorkerHandler();
+        IMessageMqService workerMqService = null;
+        try {
+            workerMqService = this.mqService.openConnection();
+            Main worker = new Main(this, branch, workerSqlHandler, workerMqService);
+            int status = worker.processPayments(worker.paymentProcessor.buildNewPayments());
+            workerSqlHandler.commit();
+            return status;
+        } catch (Exception e) {
+            try {
+                workerSqlHandler.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        } finally {
+            if (workerMqService != null) {
+                workerMqService.closeConnection();
+            }
+            workerSqlHandler.releaseWorkerHandler();
+        }
+    }
+
+//  executor.shutdownNow() dans le finally : en fonctionnement normal toutes
+//  les tâches sont terminées (get() sur chacune) ; sur interruption, les
+//  workers sont interrompus avant la fermeture du pool.
+//  Main.start() ne change pas : updateStatus(main.process()) reçoit le statut
+//  cumulé, ou l'exception d'échec de branche passe par le catch de process().
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ P00_ICOR_00_Config.java          ║ +parallelWorkers                          ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ SqlHandler.java                  ║ +openConnection() +SqlHandler(Connection) ║
+  ║                                  ║ +pool (poll timeout, remplacement)        ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ IPaymentSqlHandler.java          ║ +open/closeWorkerPool                     ║
+  ║                                  ║ +borrow/releaseWorkerHandler              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandler.java           ║ +handler de worker                        ║
+  ║                                  ║ +séquence sur connexion dédiée            ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ IMessageMqService.java           ║ +openConnection() +closeConnection()      ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentProcessor.java            ║ AUCUNE MODIFICATION                       ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ Main.java                        ║ +Main de worker +processBranchesInParallel║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Une transaction JDBC + une unité de travail MQ par branche : l'échec d'une
+  branche ne fait pas perdre le travail des autres, et le statut le signale.
+*/
@@ -0,0 +1,501 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : CACHE DE RÉFÉRENTIEL (DEAL / FACILITY / EMPRUNTEUR / ZONE)   ║
+// ║        LRU + TTL, survit à process(), compteurs hit/miss, invalidation     ║
+// ║        refdata.cache.size=0 → pas de cache (actuel)                        ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  Dans un run, les mêmes deals / facilities reviennent sans arrêt.
+//  getPrimayBorrowerFullNme(pidDeal) et setProcessingAreaData(payment)
+//  relisent pourtant la base pour chaque paiement.
+//
+//  APRÈS : ReferenceDataCache<K, V>, une LinkedHashMap LRU bornée avec une
+//  durée de vie (TTL) par entrée, placée devant ces deux lookups :
+//     - emprunteur principal : clé = pidDeal, valeur = CUS_NME_FULL_NAME
+//     - zone de traitement   : clé = (pidFacility, pidDeal), valeur = la
+//       ligne lue par SELECT_PROCESSING_AREA, copiée seule dans un
+//       CachedRowSet (une ligne par entrée, jamais le lot entier)
+//  La ligne en cache est rejouée par applyProcessingArea(payment, rs)
+//  (PERF_BULK_ENRICHMENT.java) : mêmes champs écrits que sans cache, sans
+//  liste de champs à maintenir à côté.
+//
+//  Les caches sont statiques dans PaymentSqlHandler, UN JEU PAR ZONE
+//  (cdeName) : deux zones traitées par la même JVM (mode daemon,
+//  PERF_DAEMON_MODE.java) ne voient jamais les données l'une de l'autre.
+//  Ils survivent à process() et au Main reconstruit. Les résultats
+//  "absents" sont aussi mis en cache (pas de relecture d'un deal sans
+//  emprunteur à chaque paiement).
+//
+//  SELECT_NEW_PAYMENTS : la jointure VLS_DEAL / VLS_FACILITY n'est PAS
+//  remplacée par le cache. C'est UNE requête ensembliste par run (pas un N+1),
+//  et la jointure interne sur VLS_DEAL filtre les IMT sans deal : la retirer
+//  changerait le résultat.
+//
+//  FICHIERS MODIFIÉS : 4
+//  ─────────────────
+//  1. P00_ICOR_00_Config.java   → +refDataCacheSize +refDataCacheTtlMinutes
+//  2. PaymentSqlHandler.java    → +ReferenceDataCache +ZoneReferenceData (classes internes)
+//  3. IPaymentSqlHandler.java   → +useReferenceDataZone() +invalidateReferenceData()
+//                                 +invalidateDeal() +getReferenceDataStats()
+//  4. Main.java                 → choix de la zone, invalidation au rechargement
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : P00_ICOR_00_Config.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** Entrées max par cache de référentiel et par zone. 0 = pas de cache. */
+    public int refDataCacheSize = 0;
+
+    /** Durée de vie d'une entrée. */
+    public int refDataCacheTtlMinutes = 30;
+
+    this.refDataCacheSize = Integer.parseInt(props.getProperty("refdata.cache.size", "0"));
+    this.refDataCacheTtlMinutes = Integer.parseInt(props.getProperty("refdata.cache.ttl.minutes", "30"));
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : PaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// Ajouter les imports :
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+
+// ── 2a. Cache LRU + TTL ──
+
+    /**
+     * Cache LRU borné avec TTL. Une valeur null est une réponse valide
+     * ("pas de donnée en base") et est mise en cache comme les autres.
+     */
+    static final class ReferenceDataCache<K, V> {
+
+        private static final class Entry<V> {
+            final V value;
+            final long expiresAt;
+
+            Entry(V value, long expiresAt) {
+                this.value = value;
+                this.expiresAt = expiresAt;
+            }
+        }
+
+        private final String name;
+        private final long ttlMillis;
+        private final Map<K, Entry<V>> entries;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        ReferenceDataCache(String name, int maxSize, long ttlMillis) {
+            this.name = name;
+            this.ttlMillis = ttlMillis;
+            this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        /**
+         * @return l'entrée en cache, ou null si absente ou expirée
+         *         (une valeur null en cache revient comme entry.value == null)
+         */
+        synchronized Entry<V> lookup(K key) {
+            Entry<V> entry = this.entries.get(key);
+            if (entry == null || entry.expiresAt < System.currentTimeMillis()) {
+                this.entries.remove(key);
+                this.misses.incrementAndGet();
+                return null;
+            }
+            this.hits.incrementAndGet();
+            return entry;
+        }
+
+        synchronized void put(K key, V value) {
+            this.entries.put(key, new Entry<>(value, System.currentTimeMillis() + this.ttlMillis));
+        }
+
+        synchronized void invalidateIf(Predicate<K> key) {
+            this.entries.keySet().removeIf(key);
+        }
+
+        synchronized void invalidateAll() {
+            this.entries.clear();
+        }
+
+        double hitRate() {
+            long h = this.hits.get();
+            long total = h + this.misses.get();
+            return total == 0 ? 0d : (double) h / total;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return this.name + " size=" + this.entries.size() + " hits=" + this.hits.get()
+                    + " misses=" + this.misses.get() + String.format(" hitRate=%.1f%%", 100 * hitRate());
+        }
+    }
+
+// ── 2b. Ligne de zone de traitement détachée ──
+//   Chaque entrée du cache a SA ligne, copiée dans un CachedRowSet d'une
+//   ligne (même schéma) : le lookup unitaire copie la 1re ligne de sa
+//   requête, le bulk (PERF_BULK_ENRICHMENT.java) la 1re ligne de chaque
+//   couple. Le CachedRowSet du lot (UNION ALL de 64 couples) n'est qu'un
+//   intermédiaire de lecture : aucune entrée ne le référence, il est libéré
+//   en fin de loadProcessingAreas(). Le curseur de la ligne en cache est
+//   partagé : positionnement et lecture sous verrou.
+
+    /** Ligne SELECT_PROCESSING_AREA détachée, seule dans son CachedRowSet ; null = pas de ligne. */
+    private static final class ProcessingAreaRow {
+        final CachedRowSet row;
+
+        ProcessingAreaRow(CachedRowSet row) {
+            this.row = row;
+        }
+    }
+
+    private void applyCachedProcessingArea(Payment payment, ProcessingAreaRow cached) throws SQLException {
+        if (cached == null) {
+            return;   // pas de ligne en base : comme setProcessingAreaData(), rien n'est écrit
+        }
+        synchronized (cached.row) {
+            cached.row.absolute(1);
+            applyProcessingArea(payment, cached.row);
+        }
+    }
+
+    /** Copie la ligne courante de rows dans un CachedRowSet à elle seule, même schéma. */
+    private static ProcessingAreaRow copyRow(CachedRowSet rows) throws SQLException {
+        CachedRowSet row = rows.createCopySchema();
+        int columns = rows.getMetaData().getColumnCount();
+        row.moveToInsertRow();
+        for (int i = 1; i <= columns; i++) {
+            Object value = rows.getObject(i);
+            if (value == null) {
+                row.updateNull(i);
+            } else {
+                row.updateObject(i, value);
+            }
+        }
+        row.insertRow();
+        row.moveToCurrentRow();
+        return new ProcessingAreaRow(row);
+    }
+
+    private static CachedRowSet detach(ResultSet rs) throws SQLException {
+        CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+        rows.populate(rs);
+        return rows;
+    }
+
+// ── 2c. Caches par zone ──
+
+    /** Caches de référentiel d'une zone (cdeName). */
+    static final class ZoneReferenceData {
+        final ReferenceDataCache<String, String> borrowers;
+        final ReferenceDataCache<List<String>, ProcessingAreaRow> processingAreas;
+
+        ZoneReferenceData(String zone, int maxSize, long ttlMillis) {
+            this.borrowers = new ReferenceDataCache<>(zone + ".primaryBorrower", maxSize, ttlMillis);
+            this.processingAreas = new ReferenceDataCache<>(zone + ".processingArea", maxSize, ttlMillis);
+        }
+
+        @Override
+        public String toString() {
+            return this.borrowers + ", " + this.processingAreas;
+        }
+    }
+
+    private static final Map<String, ZoneReferenceData> REFERENCE_DATA_BY_ZONE = new HashMap<>();
+
+    /** Caches de la zone de ce handler ; null = pas de cache (refdata.cache.size=0 ou zone non choisie). */
+    private ZoneReferenceData referenceData;
+
+    @Override
+    public void useReferenceDataZone(String cdeName) {
+        P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+        if (config.refDataCacheSize <= 0) {
+            this.referenceData = null;
+            return;
+        }
+        synchronized (REFERENCE_DATA_BY_ZONE) {
+            this.referenceData = REFERENCE_DATA_BY_ZONE.computeIfAbsent(cdeName,
+                    zone -> new ZoneReferenceData(zone, config.refDataCacheSize,
+                            TimeUnit.MINUTES.toMillis(config.refDataCacheTtlMinutes)));
+        }
+    }
+
+//  borrowWorkerHandler() (PERF_PARALLEL_BRANCHES.java) : le handler de worker
+//  reprend les caches du handler principal.
+
+    // AVANT :
+    return new PaymentSqlHandler(borrowConnection(), this.workerSequenceHandler);
+
+    // APRÈS :
+    PaymentSqlHandler worker = new PaymentSqlHandler(borrowConnection(), this.workerSequenceHandler);
+    worker.referenceData = this.referenceData;
+    return worker;
+
+// ── 2d. getPrimayBorrowerFullNme() ──
+
+    // AVANT :
+    @Override
+    public String getPrimayBorrowerFullNme(String pidDeal) throws PaymentException {
+        // ... SEELCT_PRIMARY_BORROWER_NME
+    }
+
+    // APRÈS : le corps existant devient loadPrimaryBorrowerFullNme(), inchangé
+    @Override
+    public String getPrimayBorrowerFullNme(String pidDeal) throws PaymentException {
+        ZoneReferenceData cache = this.referenceData;
+        if (cache == null) {
+            return loadPrimaryBorrowerFullNme(pidDeal);
+        }
+        ReferenceDataCache.Entry<String> cached = cache.borrowers.lookup(pidDeal);
+        if (cached != null) {
+            return cached.value;
+        }
+        String fullName = loadPrimaryBorrowerFullNme(pidDeal);
+        cache.borrowers.put(pidDeal, fullName);
+        return fullName;
+    }
+
+// ── 2e. setProcessingAreaData() ──
+//   Le corps existant lit la 1re ligne et appelle applyProcessingArea()
+//   (PERF_BULK_ENRICHMENT.java). Avec cache : même requête, même paramètres,
+//   ResultSet détaché puis 1re ligne appliquée.
+
+    // APRÈS :
+    @Override
+    public void setProcessingAreaData(Payment payment) throws PaymentException {
+        ZoneReferenceData cache = this.referenceData;
+        if (cache == null) {
+            // ... corps existant, inchangé
+            return;
+        }
+        List<String> key = Arrays.asList(payment.getPidFacility(), payment.getPidDeal());
+        try {
+            ReferenceDataCache.Entry<ProcessingAreaRow> cached = cache.processingAreas.lookup(key);
+            ProcessingAreaRow area;
+            if (cached != null) {
+                area = cached.value;
+            } else {
+                try (PreparedStatement ps = this.prepareStatement(SELECT_PROCESSING_AREA,
+                        new Object[]{payment.getPidFacility(), payment.getPidDeal()});
+                     ResultSet rs = ps.executeQuery()) {
+                    CachedRowSet rows = detach(rs);
+                    area = rows.next() ? copyRow(rows) : null;
+                }
+                cache.processingAreas.put(key, area);
+            }
+            applyCachedProcessingArea(payment, area);
+        } catch (SQLException e) {
+            // ... même message / même exception que le catch existant
+        }
+    }
+
+// ── 2f. Enrichissement en masse ──
+//   enrichPayments() (PERF_BULK_ENRICHMENT.java). Les maps byDeal /
+//   byFacilityDeal ne sont pas modifiées : les clés déjà en cache sont
+//   appliquées puis filtrées dans des maps À PART, seules envoyées aux
+//   requêtes en masse.
+
+    // AVANT :
+    for (List<List<String>> chunk : chunks(byFacilityDeal.keySet())) {
+        loadProcessingAreas(chunk, byFacilityDeal);
+    }
+    for (List<String> chunk : chunks(byDeal.keySet())) {
+        loadPrimaryBorrowers(chunk, byDeal);
+    }
+
+    // APRÈS :
+    Map<List<String>, List<Payment>> areasToLoad = uncachedProcessingAreas(byFacilityDeal);
+    for (List<List<String>> chunk : chunks(areasToLoad.keySet())) {
+        loadProcessingAreas(chunk, areasToLoad);
+    }
+    Map<String, List<Payment>> borrowersToLoad = uncachedBorrowers(byDeal);
+    for (List<String> chunk : chunks(borrowersToLoad.keySet())) {
+        loadPrimaryBorrowers(chunk, borrowersToLoad);
+    }
+
+    /** Applique les emprunteurs en cache ; retourne les deals à lire. */
+    private Map<String, List<Payment>> uncachedBorrowers(Map<String, List<Payment>> byDeal) {
+        ZoneReferenceData cache = this.referenceData;
+        if (cache == null) {
+            return byDeal;
+        }
+        Map<String, List<Payment>> toLoad = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Payment>> deal : byDeal.entrySet()) {
+            ReferenceDataCache.Entry<String> cached = cache.borrowers.lookup(deal.getKey());
+            if (cached == null) {
+                toLoad.put(deal.getKey(), deal.getValue());
+            } else {
+                deal.getValue().forEach(p -> p.setPrimaryBorrowerFullName(cached.value));
+            }
+        }
+        return toLoad;
+    }
+
+    /** Applique les zones de traitement en cache ; retourne les couples à lire. */
+    private Map<List<String>, List<Payment>> uncachedProcessingAreas(
+            Map<List<String>, List<Payment>> byFacilityDeal) throws PaymentException {
+        ZoneReferenceData cache = this.referenceData;
+        if (cache == null) {
+            return byFacilityDeal;
+        }
+        Map<List<String>, List<Payment>> toLoad = new LinkedHashMap<>();
+        for (Map.Entry<List<String>, List<Payment>> facilityDeal : byFacilityDeal.entrySet()) {
+            ReferenceDataCache.Entry<ProcessingAreaRow> cached = cache.processingAreas.lookup(facilityDeal.getKey());
+            if (cached == null) {
+                toLoad.put(facilityDeal.getKey(), facilityDeal.getValue());
+                continue;
+            }
+            for (Payment payment : facilityDeal.getValue()) {
+                try {
+                    applyCachedProcessingArea(payment, cached.value);
+                } catch (SQLException e) {
+                    // Ligne détachée : pas d'accès base, ne devrait pas échouer
+                    payment.setProcessingArea(null);
+                }
+            }
+        }
+        return toLoad;
+    }
+
+// ── 2g. loadPrimaryBorrowers() / loadProcessingAreas() alimentent le cache ──
+
+    // loadPrimaryBorrowers(), dans la boucle d'affectation (après lecture complète) :
+    String fullName = first(borrowers.get(pidDeal));
+    if (this.referenceData != null) {
+        this.referenceData.borrowers.put(pidDeal, fullName);
+    }
+
+    // loadProcessingAreas() : le ResultSet du lot est détaché avant d'être
+    // parcouru quand le cache est actif ; la boucle existante ne change pas,
+    // elle copie en plus la 1re ligne de chaque couple pour le cache.
+
+    // AVANT :
+    try (ResultSet rs = this.prepareCachedStatement(query, params).executeQuery()) {
+        while (rs.next()) {
+            int idx = rs.getInt(BULK_IDX);
+            if (idx < facilityDeals.size() && rs.getInt(BULK_ROW) == 1) {
+                for (Payment payment : byFacilityDeal.get(facilityDeals.get(idx))) {
+                    applyProcessingArea(payment, rs);
+                }
+            }
+        }
+    }
+
+    // APRÈS :
+    ZoneReferenceData cache = this.referenceData;
+    Map<List<String>, ProcessingAreaRow> loaded = new HashMap<>();
+    try (ResultSet bulk = this.prepareCachedStatement(query, params).executeQuery()) {
+        ResultSet rs = cache == null ? bulk : detach(bulk);
+        while (rs.next()) {
+            int idx = rs.getInt(BULK_IDX);
+            if (idx < facilityDeals.size() && rs.getInt(BULK_ROW) == 1) {
+                for (Payment payment : byFacilityDeal.get(facilityDeals.get(idx))) {
+                    applyProcessingArea(payment, rs);
+                }
+                if (cache != null) {
+                    loaded.put(facilityDeals.get(idx), copyRow((CachedRowSet) rs));
+                }
+            }
+        }
+    }
+    if (cache != null) {
+        for (List<String> key : facilityDeals) {
+            cache.processingAreas.put(key, loaded.get(key));   // null = pas de ligne
+        }
+    }
+
+// ── 2h. Invalidation et métriques ──
+
+    @Override
+    public void invalidateReferenceData() {
+        ZoneReferenceData cache = this.referenceData;
+        if (cache != null) {
+            cache.borrowers.invalidateAll();
+            cache.processingAreas.invalidateAll();
+        }
+    }
+
+    @Override
+    public void invalidateDeal(String pidDeal) {
+        ZoneReferenceData cache = this.referenceData;
+        if (cache != null) {
+            cache.borrowers.invalidateIf(pidDeal::equals);
+            cache.processingAreas.invalidateIf(key -> pidDeal.equals(key.get(1)));
+        }
+    }
+
+    @Override
+    public String getReferenceDataStats() {
+        ZoneReferenceData cache = this.referenceData;
+        return cache == null ? "reference data cache disabled" : cache.toString();
+    }
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : IPaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** Sélectionne les caches de référentiel de la zone (un jeu par cdeName). */
+    void useReferenceDataZone(String cdeName);
+
+    /** Vide les caches de référentiel de la zone courante. */
+    void invalidateReferenceData();
+
+    /** Retire un deal des caches de référentiel de la zone courante. */
+    void invalidateDeal(String pidDeal);
+
+    /** Taille, hits, misses et taux de hit des caches de la zone courante. */
+    String getReferenceDataStats();
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : Main.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    // initProcessors(), après getBranches() : caches de la zone
+    this.sqlHandler.useReferenceDataZone(cdeName);
+
+    // Fin de process() : une ligne de stats par run
+    LOG.info("Reference data cache: " + this.sqlHandler.getReferenceDataStats());
+
+    // refreshReferenceData() (PERF_DAEMON_MODE.java) : on repart d'un cache
+    // vide quand la configuration de zone est rechargée
+    this.sqlHandler.invalidateReferenceData();
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ P00_ICOR_00_Config.java          ║ +refDataCacheSize +refDataCacheTtlMinutes ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandler.java           ║ +ReferenceDataCache<K, V>                 ║
+  ║                                  ║ +ZoneReferenceData (1 jeu par zone)       ║
+  ║                                  ║ getPrimayBorrowerFullNme / setProcessing- ║
+  ║                                  ║ AreaData : cache devant le lookup         ║
+  ║                                  ║ enrichPayments() : clés cachées filtrées  ║
+  ║                                  ║ dans des maps à part                      ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ IPaymentSqlHandler.java          ║ +useReferenceDataZone()                   ║
+  ║                                  ║ +invalidateReferenceData()                ║
+  ║                                  ║ +invalidateDeal() +getReferenceDataStats()║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ Main.java                        ║ zone, stats en fin de run, invalidation   ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+*/
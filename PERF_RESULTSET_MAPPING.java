@@ -0,0 +1,344 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : MAPPING ResultSet PAR INDEX DE COLONNE                       ║
+// ║        Index résolus 1 fois par ResultSet, SELECT sans M.*,                ║
+// ║        SwiftType.getSwiftType() en O(1)                                    ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  getNewPayments() fait 17 rs.getString("NOM") par ligne : le driver
+//  résout le nom → index à chaque appel (recherche insensible à la casse).
+//  SELECT_NEW_PAYMENTS ramène M.* : toutes les colonnes de
+//  TBP_IPMT_IMT_OUT_DIFF transitent sur le réseau, même inutilisées.
+//  SwiftType.getSwiftType(String) parcourt values() à chaque ligne.
+//
+//  APRÈS :
+//   - SqlHandler.resolveColumns(rs, noms...) fait les rs.findColumn() UNE
+//     fois par ResultSet et retourne un int[] ; les mappers lisent par index.
+//   - Requêtes dont la liste de colonnes reste celle d'aujourd'hui (rôles,
+//     requêtes groupées de fetchBulk) : SqlHandler.columnIndexes(rs) lit le
+//     ResultSetMetaData une fois et indexe toutes les colonnes par libellé.
+//   - SELECT_NEW_PAYMENTS liste exactement les colonnes lues par mapPayment().
+//   - SwiftType garde une Map<String, SwiftType> statique.
+//
+//  FICHIERS MODIFIÉS : 4
+//  ─────────────────
+//  1. SqlHandler.java           → +resolveColumns() +columnIndexes()
+//  2. PaymentSqlQueries.java    → SELECT_NEW_PAYMENTS : M.* → colonnes explicites
+//  3. PaymentSqlHandler.java    → mapPayment() / mapRole() / fetchBulk() par index
+//  4. SwiftType.java            → lookup par Map
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : SqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// Ajouter les imports :
+import java.sql.ResultSetMetaData;
+import java.util.HashMap;
+import java.util.Map;
+
+    /**
+     * Résout les index des colonnes demandées, dans l'ordre des noms.
+     * À appeler une fois, avant la boucle rs.next().
+     */
+    protected static int[] resolveColumns(ResultSet rs, String... columns) throws SQLException {
+        int[] indexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            indexes[i] = rs.findColumn(columns[i]);
+        }
+        return indexes;
+    }
+
+    /**
+     * Index de toutes les colonnes du ResultSet, par libellé (majuscules).
+     * En cas de doublon, la 1re colonne gagne, comme rs.findColumn().
+     * À appeler une fois, avant la boucle rs.next().
+     */
+    protected static Map<String, Integer> columnIndexes(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = meta.getColumnCount(); i >= 1; i--) {
+            indexes.put(meta.getColumnLabel(i).toUpperCase(), i);
+        }
+        return indexes;
+    }
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : PaymentSqlQueries.java — SELECT_NEW_PAYMENTS
+// ════════════════════════════════════════════════════════════════════════════════
+
+    // AVANT :
+    SELECT_NEW_PAYMENTS = "select" +
+        " REPLACE(M.IMT_AMT_OUT_TOT, '.', ',') AS IMT_AMT_OUT_TOT_FMT," +
+        " TO_CHAR(M.IMT_DTE_VALUE_DATE,'RRMMDD') AS IMT_DTE_VALUE_DATE_FMT," +
+        " TO_CHAR(M.IMT_DTE_BUSINESS,'RRMMDD') AS IMT_DTE_BUSINESS_FMT," +
+        " D.DEA_NME_DEAL AS DEAL_NME," +
+        " D.DEA_PID_DEAL AS PID_DEAL," +
+        " F.FAC_NME_FACILITY AS FAC_NME," +
+        " M.* from "+LIQBATCHSCHEMA+".TBP_IPMT_IMT_OUT_DIFF M " +
+        "join LIQCREATOR.VLS_DEAL D on D.DEA_PID_DEAL = M.IMT_PID_DEAL " +
+        "left join LIQCREATOR.VLS_FACILITY F on F.FAC_PID_FACILITY = M.IMT_PID_FACILITY " +
+        "where TRIM(M.IMT_CDE_BRANCH) %s";
+
+    // APRÈS :
+    SELECT_NEW_PAYMENTS = "select" +
+        " REPLACE(M.IMT_AMT_OUT_TOT, '.', ',') AS IMT_AMT_OUT_TOT_FMT," +
+        " TO_CHAR(M.IMT_DTE_VALUE_DATE,'RRMMDD') AS IMT_DTE_VALUE_DATE_FMT," +
+        " TO_CHAR(M.IMT_DTE_BUSINESS,'RRMMDD') AS IMT_DTE_BUSINESS_FMT," +
+        " D.DEA_NME_DEAL AS DEAL_NME," +
+        " D.DEA_PID_DEAL AS PID_DEAL," +
+        " F.FAC_NME_FACILITY AS FAC_NME," +
+        " M.IMT_CDE_MSG_TYPE, M.IMT_CDE_BRANCH, M.IMT_RID_IMT_OUT, M.IMT_CDE_CURRENCY," +
+        " M.IMT_TXT_SDR_RVR_TX, M.IMT_PID_FACILITY, M.IMT_RID_CASHFLOW, M.IMT_RID_OWNER," +
+        " M.IMT_CDE_OWNER_TYPE, M.IMT_CDE_BNK_OP, M.IMT_CDE_DTLS_CHGES" +
+        " from "+LIQBATCHSCHEMA+".TBP_IPMT_IMT_OUT_DIFF M " +
+        "join LIQCREATOR.VLS_DEAL D on D.DEA_PID_DEAL = M.IMT_PID_DEAL " +
+        "left join LIQCREATOR.VLS_FACILITY F on F.FAC_PID_FACILITY = M.IMT_PID_FACILITY " +
+        "where TRIM(M.IMT_CDE_BRANCH) %s";
+
+//  ⚠️ Si une autre méthode lit une colonne de M.* via SELECT_NEW_PAYMENTS,
+//     l'ajouter ici ET dans PAYMENT_COLUMNS (rs.findColumn échoue sinon,
+//     dès la 1re ligne : l'oubli ne passe pas inaperçu).
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : PaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// ── 3a. Colonnes de Payment, dans l'ordre de lecture ──
+
+    private static final String[] PAYMENT_COLUMNS = {
+            "IMT_CDE_MSG_TYPE", "IMT_CDE_BRANCH", "IMT_RID_IMT_OUT", "IMT_AMT_OUT_TOT_FMT",
+            "IMT_CDE_CURRENCY", "IMT_DTE_VALUE_DATE_FMT", "IMT_DTE_BUSINESS_FMT", "IMT_TXT_SDR_RVR_TX",
+            "PID_DEAL", "IMT_PID_FACILITY", "IMT_RID_CASHFLOW", "IMT_RID_OWNER",
+            "IMT_CDE_OWNER_TYPE", "IMT_CDE_BNK_OP", "IMT_CDE_DTLS_CHGES", "DEAL_NME", "FAC_NME"
+    };
+
+// ── 3b. mapPayment() (extrait dans PERF_STREAMING_PAYMENTS.java) ──
+//   SELECT_NEW_PAYMENTS liste ses colonnes : PAYMENT_COLUMNS en est la copie
+//   exacte, un int[] suffit.
+
+    // AVANT :
+    private Payment mapPayment(ResultSet rs) throws SQLException {
+        Payment payment = new Payment();
+        payment.setMsgType(SwiftType.getSwiftType(rs.getString("IMT_CDE_MSG_TYPE")));
+        payment.setMsgBranch(rs.getString("IMT_CDE_BRANCH"));
+        // ...
+        return payment;
+    }
+
+    // APRÈS :
+    private static Payment mapPayment(ResultSet rs, int[] col) throws SQLException {
+        Payment payment = new Payment();
+        payment.setMsgType(SwiftType.getSwiftType(rs.getString(col[0])));
+        payment.setMsgBranch(rs.getString(col[1]));
+        payment.setMsgId(rs.getString(col[2]));
+        payment.setMsgAmount(rs.getString(col[3]));
+        payment.setMsgCurrency(rs.getString(col[4]));
+        payment.setValueDate(rs.getString(col[5]));
+        payment.setEffectiveDate(rs.getString(col[6]));
+        payment.setSenderToReceiverInfo(rs.getString(col[7]));
+        payment.setPidDeal(rs.getString(col[8]));
+        payment.setPidFacility(rs.getString(col[9]));
+        payment.setRidCashflow(rs.getString(col[10]));
+        payment.setRidOwner(rs.getString(col[11]));
+        payment.setOwnerType(rs.getString(col[12]));
+        payment.setCdeBankOp(rs.getString(col[13]));
+        payment.setDtlCharges(rs.getString(col[14]));
+        payment.setDealName(rs.getString(col[15]));
+        payment.setFacilityName(rs.getString(col[16]));
+        return payment;
+    }
+
+// ── 3c. getNewPayments() ──
+
+    // AVANT :
+        while (rs.next()) {
+            payments.add(mapPayment(rs));
+        }
+
+    // APRÈS :
+        int[] col = resolveColumns(rs, PAYMENT_COLUMNS);
+        while (rs.next()) {
+            payments.add(mapPayment(rs, col));
+        }
+
+// ── 3d. openNewPayments() / NewPaymentCursor (PERF_STREAMING_PAYMENTS.java) ──
+//   Les index sont résolus une fois, juste après executeQuery(), et gardés
+//   par le curseur : nextChunk() ne résout plus rien, quel que soit le
+//   nombre de lots.
+
+    // AVANT :
+            return new NewPaymentCursor(ps, ps.executeQuery());
+
+    // APRÈS :
+            ResultSet rs = ps.executeQuery();
+            try {
+                return new NewPaymentCursor(ps, rs, resolveColumns(rs, PAYMENT_COLUMNS));
+            } catch (SQLException e) {
+                rs.close();
+                throw e;
+            }
+
+    // NewPaymentCursor :
+        private final PreparedStatement ps;
+        private final ResultSet rs;
+        private final int[] col;
+        private boolean exhausted;
+
+        private NewPaymentCursor(PreparedStatement ps, ResultSet rs, int[] col) {
+            this.ps = ps;
+            this.rs = rs;
+            this.col = col;
+        }
+
+        // nextChunk() :
+                if (rs.next()) {
+                    chunk.add(mapPayment(rs, col));
+                } else {
+
+// ── 3e. mapRole() (extrait dans PERF_BULK_ENRICHMENT.java) ──
+//   SELECT_MSG_ROLES garde sa liste de colonnes actuelle : ses colonnes sont
+//   exactement celles que lit mapRole() (+ IOR_RID_OUTGNG_IMT), et la version
+//   groupée y ajoute BULK_IDX / BULK_ROW, ce qui décale les positions. Pas de
+//   liste à maintenir à la main : SqlHandler.columnIndexes(rs) lit le
+//   ResultSetMetaData une fois par ResultSet (ÉTAPE 1) et donne l'index de
+//   CHAQUE colonne de la requête, sous son libellé.
+
+//   mapRole() : une seule réécriture mécanique de son corps existant, ligne
+//   par ligne, sans rien ajouter ni retirer :
+//       rs.getString("NOM")   →   rs.getString(col.get("NOM"))
+//   (idem getInt / getDate ...). HashMap.get sur un littéral : hash en cache,
+//   pas de toUpperCase ni de parcours des colonnes par le driver.
+
+    // AVANT :
+    private Role mapRole(ResultSet rs) throws SQLException {
+        Role role = new Role();
+        role.setSwiftId(rs.getString("IOR_CDE_SWFT_ID"));
+        // ... (corps existant)
+        return role;
+    }
+
+    // APRÈS :
+    private static Role mapRole(ResultSet rs, Map<String, Integer> col) throws SQLException {
+        Role role = new Role();
+        role.setSwiftId(rs.getString(col.get("IOR_CDE_SWFT_ID")));
+        // ... (corps existant, réécrit selon la règle ci-dessus)
+        return role;
+    }
+
+//  ⚠️ Une colonne absente de SELECT_MSG_ROLES donne col.get(...) == null →
+//     NullPointerException au 1er rôle lu : même effet immédiat que le
+//     SQLException "invalid column name" d'aujourd'hui.
+
+// ── 3f. getRoles() ──
+
+    // AVANT :
+    while (rs.next()) {
+        roles.add(mapRole(rs));
+    }
+
+    // APRÈS :
+    Map<String, Integer> col = columnIndexes(rs);
+    while (rs.next()) {
+        roles.add(mapRole(rs, col));
+    }
+
+// ── 3g. fetchBulk() : les mappers reçoivent les index ──
+//   fetchBulk() résout les index une fois par lot ; BULK_IDX est lu par
+//   index lui aussi.
+
+    // AVANT :
+    private interface BulkRowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    // APRÈS :
+    private interface BulkRowMapper<T> {
+        T map(ResultSet rs, Map<String, Integer> col) throws SQLException;
+    }
+
+    // AVANT (fetchBulk) :
+            while (rs.next()) {
+                int idx = rs.getInt(BULK_IDX);
+                if (idx < keys.size()) {
+                    rows.get(keys.get(idx)).add(mapper.map(rs));
+                }
+            }
+
+    // APRÈS :
+            Map<String, Integer> col = columnIndexes(rs);
+            int idxColumn = col.get(BULK_IDX);
+            while (rs.next()) {
+                int idx = rs.getInt(idxColumn);
+                if (idx < keys.size()) {
+                    rows.get(keys.get(idx)).add(mapper.map(rs, col));
+                }
+            }
+
+    // Appelants :
+    //   loadRoles()            : this::mapRole                     → PaymentSqlHandler::mapRole
+    //   loadEventIncr()        : rs -> rs.getString(ECD_XID_REF_NUMBER)
+    //                          → (rs, col) -> rs.getString(col.get(ECD_XID_REF_NUMBER))
+    //   loadPrimaryBorrowers() : rs -> rs.getString(CUS_NME_FULL_NAME)
+    //                          → (rs, col) -> rs.getString(col.get(CUS_NME_FULL_NAME))
+    //   getMsgKeysForItl() (PERF_BATCH_ITL_ACK.java) : même réécriture de son mapper.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : SwiftType.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    // AVANT :
+    public static SwiftType getSwiftType(String code) {
+        for (SwiftType type : values()) {
+            if (type.getCode().equals(code)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    // APRÈS :
+    private static final Map<String, SwiftType> BY_CODE = new HashMap<>();
+
+    static {
+        for (SwiftType type : values()) {
+            BY_CODE.putIfAbsent(type.getCode(), type);
+        }
+    }
+
+    public static SwiftType getSwiftType(String code) {
+        return code == null ? null : BY_CODE.get(code);
+    }
+
+//  Même résultat que la boucle, cas par cas :
+//   - comparaison equals() exacte → clé de Map sans normalisation
+//   - code partagé par deux constantes → putIfAbsent garde la 1re déclarée,
+//     celle que la boucle trouvait en premier
+//   - code null ou inconnu → null
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ SqlHandler.java                  ║ +resolveColumns() +columnIndexes()        ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlQueries.java           ║ SELECT_NEW_PAYMENTS : M.* → 11 colonnes   ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandler.java           ║ +PAYMENT_COLUMNS                          ║
+  ║                                  ║ mapPayment / mapRole : lecture par index  ║
+  ║                                  ║ NewPaymentCursor : index gardés           ║
+  ║                                  ║ fetchBulk : index résolus 1 fois par lot  ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ SwiftType.java                   ║ getSwiftType() : HashMap statique         ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Par ligne : résolutions nom → index par le driver  →  0
+*/
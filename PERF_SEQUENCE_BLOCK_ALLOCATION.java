@@ -0,0 +1,361 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : ALLOCATION PAR PLAGES DES NUMÉROS DE SÉQUENCE SWIFT         ║
+// ║        TBP_IPMT_DAY_SEQ : 1 réservation par plage au lieu de 2 par msg    ║
+// ║        sequence.block.size=1 → comportement actuel                         ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  getSeqNumber() fait, pour CHAQUE message :
+//     SELECT_SEQUENCE {getDay()}                      → 1 aller-retour
+//     UPDATE_SEQUENCE {seq, getDay()}                 → 1 aller-retour + verrou ligne
+//       ou INSERT_SEQUENCE {getDay(), seq} (1er numéro du jour)
+//  Le verrou sur la ligne du jour est gardé jusqu'au commit de la transaction
+//  de paiement → tout envoi parallèle est sérialisé sur cette ligne.
+//
+//  Sémantique existante (lue dans getSeqNumber()) : la MÊME variable seq est
+//  écrite dans CDE_SEQ_NUMBER puis formatée et retournée. La valeur stockée
+//  est donc le DERNIER numéro distribué, et l'appel suivant part de cette
+//  valeur lue pour calculer le sien.
+//
+//  APRÈS (hi/lo) : SequenceAllocator, sur sa PROPRE connexion, réserve
+//  blockSize numéros en UNE instruction, dans une transaction courte :
+//     RESERVE_SEQUENCE_BLOCK {blockSize, day}  → bloc PL/SQL anonyme :
+//       UPDATE_SEQUENCE avec "CDE_SEQ_NUMBER = CDE_SEQ_NUMBER + ?"
+//       returning CDE_SEQ_NUMBER into ?        → dernier numéro de la plage
+//     commit
+//  La plage est [retour - blockSize + 1, retour] : exactement les numéros
+//  que donneraient blockSize appels successifs à getSeqNumber() (+1 à
+//  chaque appel). Les numéros sont ensuite distribués depuis la mémoire,
+//  formatés par formatSeqNumber(), le formatage de getSeqNumber().
+//  1re plage du jour (update sans ligne, retour null) : INSERT_SEQUENCE
+//  {day, blockSize} → plage [1, blockSize]. 2 instructions une fois par jour,
+//  1 ensuite.
+//
+//   - Fin de séquence : le numéro ne repasse JAMAIS à 1 dans la journée (le
+//     couple (jour, numéro) identifie le message dans les ACK ITL). Une
+//     plage qui déborde SEQ_NUMBER_MAX est tronquée ; la suivante, comme
+//     getSeqNumber(), échoue avec "sequence numbers exhausted".
+//   - Crash au milieu d'une plage : la réservation est déjà commitée, les
+//     numéros restants sont perdus (trou), JAMAIS réutilisés.
+//   - Changement de jour (getDay() différent) : la plage en cours est
+//     abandonnée et une plage est réservée sur la ligne du nouveau jour.
+//   - Concurrence : next() est synchronized dans le process ; entre process,
+//     l'UPDATE verrouille la ligne du jour le temps d'un aller-retour +
+//     commit. Deux process qui créent la ligne du jour en même temps : le
+//     perdant prend la violation de clé de INSERT_SEQUENCE, rollback et
+//     refait la réservation (ligne trouvée par l'UPDATE).
+//
+//  Remplace, quand sequence.block.size > 1, la délégation au handler de
+//  séquence de PERF_PARALLEL_BRANCHES.java : principal et workers partagent
+//  le même allocateur.
+//
+//  FICHIERS MODIFIÉS : 4
+//  ─────────────────
+//  1. P00_ICOR_00_Config.java   → +sequenceBlockSize
+//  2. PaymentSqlQueries.java    → +RESERVE_SEQUENCE_BLOCK (dérivée de UPDATE_SEQUENCE)
+//  3. PaymentSqlHandler.java    → getSeqNumber() : calcul / formatage en méthodes,
+//                                 +SequenceAllocator (classe interne)
+//  4. Main.java                 → fermeture de l'allocateur en fin de run
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : P00_ICOR_00_Config.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** Numéros réservés par aller-retour. 1 = un numéro à la fois (actuel). */
+    public int sequenceBlockSize = 1;
+
+    this.sequenceBlockSize = Integer.parseInt(props.getProperty("sequence.block.size", "1"));
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : PaymentSqlQueries.java — RESERVE_SEQUENCE_BLOCK
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Construite à partir de UPDATE_SEQUENCE ("... set CDE_SEQ_NUMBER=? where
+//  <jour> = ?") : même table, même filtre, mêmes positions de paramètres
+//  {incrément, jour}, + le paramètre de sortie. Le nom de la colonne jour
+//  n'est pas répété ici. Bloc PL/SQL : "returning ... into" n'est pas
+//  exécutable seul par un PreparedStatement JDBC standard. Sans ligne, la
+//  variable de sortie reste NULL (pas de NO_DATA_FOUND sur un UPDATE).
+
+    public static final String RESERVE_SEQUENCE_BLOCK = reserveSequenceBlock();
+
+    private static String reserveSequenceBlock() {
+        String increment = UPDATE_SEQUENCE.replace("CDE_SEQ_NUMBER=?", "CDE_SEQ_NUMBER=CDE_SEQ_NUMBER+?");
+        if (increment.equals(UPDATE_SEQUENCE)) {
+            throw new IllegalStateException("UPDATE_SEQUENCE no longer sets CDE_SEQ_NUMBER=?: " + UPDATE_SEQUENCE);
+        }
+        return "begin " + increment + " returning CDE_SEQ_NUMBER into ?; end;";
+    }
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : PaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// Ajouter les imports :
+import java.sql.CallableStatement;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Types;
+
+// ── 3a. getSeqNumber() : calcul et formatage en méthodes ──
+//   Les règles de numérotation sont écrites une fois, dans trois méthodes
+//   statiques utilisées par getSeqNumber() ET par l'allocateur : +1 par
+//   message, 1 pour le 1er message du jour, 5 chiffres complétés à gauche
+//   par des zéros. Pas de retour à 1 dans la journée : au-delà de
+//   SEQ_NUMBER_MAX, getSeqNumber() échoue au lieu de redistribuer un numéro
+//   déjà envoyé.
+//   ⚠️ SEQ_NUMBER_MAX et la largeur de SEQ_NUMBER_FORMAT doivent rester ceux
+//      du numéro attendu par ITL (5 chiffres aujourd'hui).
+
+    /** Dernier numéro distribuable dans une journée. */
+    static final int SEQ_NUMBER_MAX = 99999;
+
+    /** Numéro de séquence transmis : 5 chiffres, zéros à gauche. */
+    private static final String SEQ_NUMBER_FORMAT = "%05d";
+
+    /** Numéro qui suit la dernière valeur stockée pour le jour. */
+    private static int nextSeqNumber(int stored) throws PaymentException {
+        if (stored >= SEQ_NUMBER_MAX) {
+            throw new PaymentException("Sequence numbers exhausted for the day (" + SEQ_NUMBER_MAX + ")");
+        }
+        return stored + 1;
+    }
+
+    /** Premier numéro d'un jour sans ligne dans TBP_IPMT_DAY_SEQ. */
+    private static int firstSeqNumber() {
+        return 1;
+    }
+
+    /** Texte du numéro, tel qu'écrit dans le message SWIFT. */
+    private static String formatSeqNumber(int seq) {
+        return String.format(SEQ_NUMBER_FORMAT, seq);
+    }
+
+    // APRÈS (chemin unitaire, sequence.block.size = 1) :
+    //   La valeur stockée est le DERNIER numéro distribué : la même variable
+    //   seq est écrite puis formatée et retournée.
+    @Override
+    public String getSeqNumber() throws PaymentException {
+        // ... (délégation au handler de séquence, cf. 3d)
+        String day = this.getDay();
+        try {
+            Integer stored = null;
+            try (PreparedStatement ps = this.prepareStatement(SELECT_SEQUENCE, new Object[]{day});
+                 ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    stored = rs.getInt("CDE_SEQ_NUMBER");
+                }
+            }
+            int seq;
+            if (stored == null) {
+                seq = firstSeqNumber();
+                updateQuery(INSERT_SEQUENCE, new Object[]{day, seq});
+            } else {
+                seq = nextSeqNumber(stored);
+                updateQuery(UPDATE_SEQUENCE, new Object[]{seq, day});
+            }
+            return formatSeqNumber(seq);
+        } catch (SQLException e) {
+            throw new PaymentException("Could not get sequence number for day " + day, e);
+        }
+    }
+
+// ── 3b. Classe interne SequenceAllocator ──
+//   Elle garde sa propre Connection (autocommit false), ouverte par
+//   openConnection() : la réservation est commitée indépendamment de la
+//   transaction de paiement.
+
+    /**
+     * Distribue les numéros de séquence SWIFT depuis des plages réservées
+     * dans TBP_IPMT_DAY_SEQ. Une instance partagée par run, thread-safe.
+     */
+    static final class SequenceAllocator implements AutoCloseable {
+
+        private final Connection connection;
+        private final int blockSize;
+
+        private String day;
+        /** Prochain numéro à distribuer. */
+        private int next;
+        /** Dernier numéro de la plage courante (inclus). */
+        private int last = -1;
+
+        SequenceAllocator(Connection connection, int blockSize) {
+            this.connection = connection;
+            this.blockSize = blockSize;
+        }
+
+        synchronized String next(String currentDay) throws PaymentException {
+            if (!currentDay.equals(this.day) || this.next > this.last) {
+                reserve(currentDay);
+            }
+            return formatSeqNumber(this.next++);
+        }
+
+        private void reserve(String currentDay) throws PaymentException {
+            try {
+                reserveOnce(currentDay);
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // Ligne du jour créée par un autre process entre notre UPDATE et notre INSERT
+                rollbackQuietly();
+                try {
+                    reserveOnce(currentDay);
+                } catch (SQLException retryError) {
+                    rollbackQuietly();
+                    throw new PaymentException("Could not reserve sequence numbers for day " + currentDay, retryError);
+                }
+            } catch (SQLException e) {
+                rollbackQuietly();
+                throw new PaymentException("Could not reserve sequence numbers for day " + currentDay, e);
+            }
+        }
+
+        /**
+         * Plage [last - blockSize + 1, last] : last = valeur stockée + blockSize,
+         * ou blockSize pour le 1er numéro du jour (firstSeqNumber() = 1).
+         */
+        private void reserveOnce(String currentDay) throws SQLException, PaymentException {
+            Integer reserved;
+            try (CallableStatement cs = this.connection.prepareCall(RESERVE_SEQUENCE_BLOCK)) {
+                cs.setInt(1, this.blockSize);
+                cs.setString(2, currentDay);
+                cs.registerOutParameter(3, Types.INTEGER);
+                cs.execute();
+                int value = cs.getInt(3);
+                reserved = cs.wasNull() ? null : value;
+            }
+            int blockLast;
+            if (reserved == null) {
+                blockLast = firstSeqNumber() + this.blockSize - 1;
+                try (PreparedStatement ps = this.connection.prepareStatement(INSERT_SEQUENCE)) {
+                    ps.setString(1, currentDay);
+                    ps.setInt(2, blockLast);
+                    ps.executeUpdate();
+                }
+            } else {
+                blockLast = reserved;
+            }
+            int blockFirst = blockLast - this.blockSize + 1;
+            if (blockFirst > SEQ_NUMBER_MAX) {
+                rollbackQuietly();
+                throw new PaymentException("Sequence numbers exhausted for day " + currentDay
+                        + " (" + SEQ_NUMBER_MAX + ")");
+            }
+            this.connection.commit();
+            // Plage à cheval sur SEQ_NUMBER_MAX : tronquée, pas de retour à 1.
+            // La valeur stockée dépasse alors le max : toute demande suivante du
+            // jour (plage ou getSeqNumber()) échoue.
+            this.day = currentDay;
+            this.next = blockFirst;
+            this.last = Math.min(blockLast, SEQ_NUMBER_MAX);
+            LOG.debug("Reserved sequence numbers " + this.next + ".." + this.last + " for day " + currentDay);
+        }
+
+        private void rollbackQuietly() {
+            try {
+                this.connection.rollback();
+            } catch (SQLException e) {
+                LOG.warn("Could not roll back sequence reservation", e);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            try {
+                this.connection.close();
+            } catch (SQLException e) {
+                LOG.warn("Could not close sequence allocator connection", e);
+            }
+        }
+    }
+
+//  INSERT_SEQUENCE : values(?,?) = {jour, dernier numéro}, ordre de getSeqNumber().
+//  Si le driver enveloppe la violation de clé dans une SQLException
+//  générique, tester getErrorCode() == 1 (ORA-00001) à la place.
+
+// ── 3c. Allocateur partagé ──
+
+    private static SequenceAllocator sequenceAllocator;
+
+    private static synchronized SequenceAllocator sequenceAllocator() throws SQLException {
+        if (sequenceAllocator == null) {
+            Connection connection = openConnection();
+            connection.setAutoCommit(false);
+            sequenceAllocator = new SequenceAllocator(connection,
+                    P00_ICOR_00_Config.getInstance().sequenceBlockSize);
+        }
+        return sequenceAllocator;
+    }
+
+    /**
+     * Ferme la connexion de l'allocateur. Les numéros non distribués de la
+     * plage courante sont perdus (trou dans la séquence, pas de doublon).
+     */
+    public static synchronized void closeSequenceAllocator() {
+        if (sequenceAllocator != null) {
+            sequenceAllocator.close();
+            sequenceAllocator = null;
+        }
+    }
+
+// ── 3d. getSeqNumber() ──
+
+    // AVANT (état après PERF_PARALLEL_BRANCHES.java) :
+    @Override
+    public String getSeqNumber() throws PaymentException {
+        if (this.sequenceHandler != null) {
+            return this.sequenceHandler.nextCommittedSeqNumber();
+        }
+        // ... (corps unitaire, cf. 3a)
+    }
+
+    // APRÈS :
+    @Override
+    public String getSeqNumber() throws PaymentException {
+        if (P00_ICOR_00_Config.getInstance().sequenceBlockSize > 1) {
+            String day = this.getDay();
+            try {
+                return sequenceAllocator().next(day);
+            } catch (SQLException e) {
+                throw new PaymentException("Could not open sequence allocator connection", e);
+            }
+        }
+        if (this.sequenceHandler != null) {
+            return this.sequenceHandler.nextCommittedSeqNumber();
+        }
+        // ... (corps unitaire, cf. 3a)
+    }
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : Main.java — fin de run
+// ════════════════════════════════════════════════════════════════════════════════
+
+    // Dans le finally de process() :
+    PaymentSqlHandler.closeSequenceAllocator();
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ P00_ICOR_00_Config.java          ║ +sequenceBlockSize                        ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlQueries.java           ║ +RESERVE_SEQUENCE_BLOCK (UPDATE RETURNING)║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandler.java           ║ +nextSeqNumber() +firstSeqNumber()        ║
+  ║                                  ║ +formatSeqNumber() (règles écrites)       ║
+  ║                                  ║ +SequenceAllocator (plage si size > 1)    ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ Main.java                        ║ +closeSequenceAllocator()                 ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Allers-retours séquence : 2 x N  →  ceil(N / block.size) x (1 + commit), +1 INSERT par jour
+  Numéros : même suite que l'unitaire, trous possibles au crash, jamais de doublon ni de retour à 1.
+*/
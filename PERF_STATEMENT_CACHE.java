@@ -0,0 +1,340 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : CACHE DE PREPAREDSTATEMENT DANS SqlHandler                   ║
+// ║        Clé = texte SQL (arité IN paddée à 1 / 4 / 16 / 64)                 ║
+// ║        Aucune nouvelle classe. Aucune constante SQL modifiée.              ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  prepareStatement(query, params) fait liqbatchConnection.prepareStatement(query)
+//  à CHAQUE appel → 1 parse côté driver + 1 soft/hard parse Oracle par paiement
+//  pour getRoles, getEventIncr, setProcessingAreaData, getSeqNumber, ...
+//
+//  On garde les PreparedStatement ouverts dans une LinkedHashMap en mode
+//  "access-order" (LRU). À l'éviction, le statement est fermé.
+//
+//  buildInClause(n) produit un texte SQL différent par nombre de branches.
+//  On padde n au palier supérieur (1, 4, 16, 64, puis multiple de 64, plafonné
+//  à 1000 = limite Oracle ORA-01795) et toParams() répète la dernière valeur :
+//  IN ('A','B','B','B') ≡ IN ('A','B').
+//  → quelques "formes" de requête seulement, donc quelques curseurs partagés.
+//
+//  Le cache appartient au SqlHandler, donc à SA connexion : un handler n'est
+//  utilisé que par un thread à la fois (PERF_PARALLEL_BRANCHES.java crée un
+//  handler par worker). Un statement du cache n'est jamais partagé entre threads.
+//
+//  FICHIERS MODIFIÉS : 4
+//  ─────────────────
+//  1. SqlHandler.java           → cache LRU + compteurs + padding IN
+//  2. IPaymentSqlHandler.java   → +getStatementCacheHits() +getStatementCacheMisses()
+//  3. PaymentSqlHandler.java    → les lookups par paiement passent par le cache
+//  4. PaymentSqlQueries.java    → AUCUNE MODIFICATION
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : SqlHandler.java — Cache LRU de statements
+// ════════════════════════════════════════════════════════════════════════════════
+
+// Ajouter les imports en haut :
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ajouter les champs :
+
+    /** Nombre max de statements gardés ouverts (reste sous OPEN_CURSORS Oracle). */
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    /** Paliers d'arité pour les clauses IN. */
+    private static final int[] IN_CLAUSE_BUCKETS = {1, 4, 16, 64};
+
+    /** Limite Oracle d'éléments dans une liste IN (ORA-01795). */
+    protected static final int MAX_IN_LIST_SIZE = 1000;
+
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    private final Map<String, PreparedStatement> statementCache =
+            new LinkedHashMap<String, PreparedStatement>(STATEMENT_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > STATEMENT_CACHE_SIZE) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+// Ajouter après prepareStatement() :
+
+    /**
+     * Variante de prepareStatement() qui réutilise un statement déjà préparé
+     * pour le même texte SQL. Le statement retourné appartient au cache :
+     * l'appelant NE DOIT PAS le fermer (fermer uniquement le ResultSet).
+     * Non thread-safe, comme la connexion : un handler par thread.
+     */
+    public PreparedStatement prepareCachedStatement(String query, Object[] parameters) throws SQLException {
+        PreparedStatement ps = this.statementCache.get(query);
+        if (ps == null || ps.isClosed()) {
+            this.statementCacheMisses.incrementAndGet();
+            ps = this.liqbatchConnection.prepareStatement(query);
+            this.statementCache.put(query, ps);
+        } else {
+            this.statementCacheHits.incrementAndGet();
+            ps.clearParameters();
+        }
+        bindParameters(ps, parameters);
+        return ps;
+    }
+
+    /**
+     * Même chose que updateQuery() mais via le cache de statements.
+     */
+    public int updateCachedQuery(String query, Object[] parameters) throws SQLException {
+        return prepareCachedStatement(query, parameters).executeUpdate();
+    }
+
+    // SqlHandler n'implémente pas IPaymentSqlHandler : PaymentSqlHandler
+    // satisfait l'interface par héritage de ces deux méthodes.
+    public long getStatementCacheHits() {
+        return this.statementCacheHits.get();
+    }
+
+    public long getStatementCacheMisses() {
+        return this.statementCacheMisses.get();
+    }
+
+    /**
+     * Ferme tous les statements du cache. Appelé par closeDbConnection().
+     */
+    protected void clearStatementCache() {
+        for (PreparedStatement ps : this.statementCache.values()) {
+            closeQuietly(ps);
+        }
+        this.statementCache.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            LOG.warn("Could not close cached statement", e);
+        }
+    }
+
+// ── 1b. Extraire la boucle de binding de prepareStatement() ──
+//   (code identique à l'existant, juste déplacé pour être partagé)
+
+    // AVANT (dans prepareStatement) :
+    ps = this.liqbatchConnection.prepareStatement(query);
+    if (parameters != null) {
+        int index = 0;
+        for (Object parameter : parameters) {
+            // setString / setInt ...
+        }
+    }
+
+    // APRÈS :
+    ps = this.liqbatchConnection.prepareStatement(query);
+    bindParameters(ps, parameters);
+
+    private static void bindParameters(PreparedStatement ps, Object[] parameters) throws SQLException {
+        if (parameters != null) {
+            int index = 0;
+            for (Object parameter : parameters) {
+                index++;
+                if (parameter == null || parameter instanceof String) {
+                    ps.setString(index, (String) parameter);
+                } else if (parameter instanceof Integer) {
+                    ps.setInt(index, (int) parameter);
+                } else {
+                    throw new SQLException("Unsupported parameter type " + parameter.getClass().getName()
+                            + " at index " + index);
+                }
+            }
+        }
+    }
+
+// ── 1c. closeDbConnection() ──
+
+    // AVANT :
+    public void closeDbConnection() {
+        // liqbatchConnection.close() ...
+    }
+
+    // APRÈS :
+    public void closeDbConnection() {
+        clearStatementCache();
+        // liqbatchConnection.close() ...
+    }
+
+// ── 1d. buildInClause() / toParams() — padding au palier ──
+
+    // AVANT :
+    protected String buildInClause(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("La clause IN nécessite au moins 1 paramètre");
+        }
+        return "IN (" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+    }
+
+    protected Object[] toParams(List<String> values) {
+        return values.stream().map(String::trim).toArray(Object[]::new);
+    }
+
+    // APRÈS :
+    protected String buildInClause(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("La clause IN nécessite au moins 1 paramètre");
+        }
+        return "IN (" + String.join(", ", Collections.nCopies(paddedInSize(count), "?")) + ")";
+    }
+
+    protected Object[] toParams(List<String> values) {
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("La clause IN nécessite au moins 1 paramètre");
+        }
+        Object[] params = new Object[paddedInSize(values.size())];
+        for (int i = 0; i < params.length; i++) {
+            // Les cases de padding répètent la dernière valeur : sans effet sur IN
+            params[i] = values.get(Math.min(i, values.size() - 1)).trim();
+        }
+        return params;
+    }
+
+    /**
+     * Arrondit une arité IN au palier supérieur : 1, 4, 16, 64 puis multiple
+     * de 64, sans jamais dépasser MAX_IN_LIST_SIZE. Au-delà de 1000, l'arité
+     * est rendue telle quelle (même échec ORA-01795 qu'avant, cf.
+     * PERF_BRANCH_FILTER.java pour ce cas).
+     */
+    static int paddedInSize(int count) {
+        for (int bucket : IN_CLAUSE_BUCKETS) {
+            if (count <= bucket) {
+                return bucket;
+            }
+        }
+        if (count > MAX_IN_LIST_SIZE) {
+            return count;
+        }
+        int last = IN_CLAUSE_BUCKETS[IN_CLAUSE_BUCKETS.length - 1];
+        return Math.min(((count + last - 1) / last) * last, MAX_IN_LIST_SIZE);
+    }
+
+//  961..1000 → 1000 (et non 1024) : une liste IN valide en baseline le reste.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1bis : IPaymentSqlHandler.java — compteurs du cache
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Lecture sans cast vers SqlHandler (mocks, décorateurs).
+
+    /** Nb de prepareCachedStatement() servis par le cache depuis l'ouverture. */
+    long getStatementCacheHits();
+
+    /** Nb de prepareCachedStatement() ayant préparé un nouveau statement. */
+    long getStatementCacheMisses();
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : PaymentSqlHandler.java — Lookups par paiement via le cache
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Règle : le PreparedStatement sort du try-with-resources, seul le ResultSet
+//  y reste (sinon on fermerait le statement du cache à chaque appel).
+
+// ── 2a. getRoles(String msgId) ──
+
+    // AVANT :
+    try (PreparedStatement ps = this.prepareStatement(SELECT_MSG_ROLES,
+            new Object[]{CUSTOMER_LEGAL_ADDRESS, CUSTOMER_PAY_ADDRESS, msgId});
+         ResultSet rs = ps.executeQuery()) {
+
+    // APRÈS :
+    try (ResultSet rs = this.prepareCachedStatement(SELECT_MSG_ROLES,
+            new Object[]{CUSTOMER_LEGAL_ADDRESS, CUSTOMER_PAY_ADDRESS, msgId}).executeQuery()) {
+
+// ── 2b. getEventIncr(String msgId) ──
+
+    // AVANT :
+    try (PreparedStatement ps = this.prepareStatement(SELECT_EVENT_INCREMENT, new Object[]{msgId, msgId});
+         ResultSet rs = ps.executeQuery()) {
+
+    // APRÈS :
+    try (ResultSet rs = this.prepareCachedStatement(SELECT_EVENT_INCREMENT,
+            new Object[]{msgId, msgId}).executeQuery()) {
+
+// ── 2c. setProcessingAreaData(Payment payment) ──
+
+    // AVANT :
+    try (PreparedStatement ps = this.prepareStatement(SELECT_PROCESSING_AREA,
+            new Object[]{payment.getPidFacility(), payment.getPidDeal()});
+         ResultSet rs = ps.executeQuery()) {
+
+    // APRÈS :
+    try (ResultSet rs = this.prepareCachedStatement(SELECT_PROCESSING_AREA,
+            new Object[]{payment.getPidFacility(), payment.getPidDeal()}).executeQuery()) {
+
+// ── 2d. getPrimayBorrowerFullNme(String pidDeal) ──
+
+    // AVANT :
+    try (PreparedStatement ps = this.prepareStatement(SEELCT_PRIMARY_BORROWER_NME, new Object[]{pidDeal});
+         ResultSet rs = ps.executeQuery()) {
+
+    // APRÈS :
+    try (ResultSet rs = this.prepareCachedStatement(SEELCT_PRIMARY_BORROWER_NME,
+            new Object[]{pidDeal}).executeQuery()) {
+
+// ── 2e. getSeqNumber() ──
+
+    // AVANT :
+    try (PreparedStatement ps = this.prepareStatement(SELECT_SEQUENCE, new Object[]{this.getDay()});
+         ResultSet rs = ps.executeQuery()) {
+        ...
+    }
+    updateQuery(INSERT_SEQUENCE, new Object[]{this.getDay(), seq});
+    updateQuery(UPDATE_SEQUENCE, new Object[]{seq, this.getDay()});
+
+    // APRÈS :
+    try (ResultSet rs = this.prepareCachedStatement(SELECT_SEQUENCE,
+            new Object[]{this.getDay()}).executeQuery()) {
+        ...
+    }
+    updateCachedQuery(INSERT_SEQUENCE, new Object[]{this.getDay(), seq});
+    updateCachedQuery(UPDATE_SEQUENCE, new Object[]{seq, this.getDay()});
+
+// ── 2f. updateStatus(msgKey, status, reason) — même traitement ──
+
+    // AVANT :  updateQuery(UPDATE_STATUS, params);
+    // APRÈS :  updateCachedQuery(UPDATE_STATUS, params);
+
+//  Les requêtes "une fois par run" (loadWorkingTables, purgeWorkingTables,
+//  getNewPayments, getConfiguration, getBranches) restent sur prepareStatement() :
+//  les mettre en cache n'apporte rien et garderait des curseurs ouverts.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ SqlHandler.java                  ║ +prepareCachedStatement()                 ║
+  ║                                  ║ +updateCachedQuery() +bindParameters()    ║
+  ║                                  ║ +getStatementCacheHits/Misses()           ║
+  ║                                  ║ buildInClause/toParams : padding paliers  ║
+  ║                                  ║ plafonné à 1000                           ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ IPaymentSqlHandler.java          ║ +getStatementCacheHits/Misses()           ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandler.java           ║ 6 lookups par paiement → cache            ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlQueries.java           ║ AUCUNE MODIFICATION                       ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Fortify : inchangé. Le padding ne dépend que d'un int (branches.size()).
+  Lecture des compteurs : sqlHandler.getStatementCacheHits() (interface).
+*/
@@ -0,0 +1,352 @@
+// ╔══════════════════════════════════════════════════════════════════════════════╗
+// ║        PERF : LECTURE EN FLUX DE getNewPayments (CURSEUR + LOTS BORNÉS)    ║
+// ║        Fetch size JDBC configurable, traitement par lots de N paiements   ║
+// ║        Le mode liste complète reste le mode par défaut.                    ║
+// ╚══════════════════════════════════════════════════════════════════════════════╝
+//
+//  PRINCIPE :
+//  ─────────
+//  getNewPayments() remplit une List<Payment> avec TOUT TBP_IPMT_IMT_OUT_DIFF
+//  avant que buildNewPayments() ne commence → heap ∝ backlog, et aucun
+//  recouvrement entre la lecture et control / transform / enrich / MQ.
+//
+//  APRÈS : openNewPayments() ouvre le curseur (setFetchSize) et Main.process()
+//  le consomme par lots de chunkSize paiements. La suite actuelle de
+//  process() après buildNewPayments() est découpée en deux morceaux,
+//  déplacés sans modification :
+//    sendPayments(lot)       = la boucle par paiement (message SWIFT, put MQ,
+//                              statut, store() du message)
+//    finishRun(nb, statut)   = ce qui est fait UNE fois par run après la
+//                              boucle (export fichier du run, audit de fin de
+//                              run, commit final)
+//  Pour CHAQUE lot, process() enchaîne :
+//    buildPayments(lot)      = corps actuel de buildNewPayments() après le
+//                              getNewPayments() (enrichPayments, control,
+//                              transform, enrich), déplacé sans modification
+//    sendPayments(lot)       puis commit des statuts du lot
+//  puis finishRun() une seule fois après le dernier lot. Le mode liste
+//  complète appelle les mêmes morceaux dans le même ordre, une fois. Pic
+//  mémoire ≈ chunkSize paiements, quel que soit le nombre de lignes chargées
+//  par loadWorkingTables().
+//
+//  Pas de Stream<Payment> : un Stream devrait remonter les SQLException en
+//  unchecked. Le curseur est un AutoCloseable fermé par le try-with-resources
+//  de process(), et les exceptions de la suite de process() remontent telles
+//  quelles jusqu'au try/catch existant.
+//
+//  FICHIERS MODIFIÉS : 5
+//  ─────────────────
+//  1. P00_ICOR_00_Config.java   → +paymentFetchSize +paymentChunkSize
+//  2. IPaymentSqlHandler.java   → +PaymentCursor +openNewPayments()
+//  3. PaymentSqlHandler.java    → +openNewPayments() + mapPayment(rs) extrait
+//  4. PaymentProcessor.java     → buildNewPayments() découpée : +buildPayments(list)
+//  5. Main.java                 → process() découpée : +processPayments(list)
+//                                  = sendPayments(list) + finishRun(), mode flux
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 1 : P00_ICOR_00_Config.java — 2 paramètres
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /** Lignes ramenées par aller-retour réseau sur les gros SELECT (défaut driver Oracle : 10). */
+    public int paymentFetchSize = 500;
+
+    /** Taille des lots en mode flux. 0 = mode liste complète (comportement actuel). */
+    public int paymentChunkSize = 0;
+
+    // Lecture dans le chargement existant des propriétés, même forme que liqBatchSchema :
+    this.paymentFetchSize = Integer.parseInt(props.getProperty("payment.fetch.size", "500"));
+    this.paymentChunkSize = Integer.parseInt(props.getProperty("payment.chunk.size", "0"));
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 2 : IPaymentSqlHandler.java — Curseur sur les nouveaux paiements
+// ════════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Curseur ouvert sur SELECT_NEW_PAYMENTS, lu par lots. Fermé par l'appelant
+     * (try-with-resources).
+     */
+    interface PaymentCursor extends AutoCloseable {
+
+        /** Lot suivant, au plus chunkSize paiements ; liste vide quand le curseur est épuisé. */
+        List<Payment> nextChunk(int chunkSize) throws SQLException;
+
+        @Override
+        void close() throws SQLException;
+    }
+
+    /**
+     * Variante en flux de getNewPayments() : mêmes lignes, même ordre, lues par
+     * fetchSize lignes par aller-retour.
+     */
+    PaymentCursor openNewPayments(List<String> branches, int fetchSize) throws SQLException;
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 3 : PaymentSqlHandler.java
+// ════════════════════════════════════════════════════════════════════════════════
+
+// ── 3a. Extraire le mapping d'une ligne de getNewPayments() ──
+
+    // AVANT :
+    while (rs.next()) {
+        Payment payment = new Payment();
+        payment.setMsgType(SwiftType.getSwiftType(rs.getString("IMT_CDE_MSG_TYPE")));
+        // ... 16 autres setters
+        payments.add(payment);
+    }
+
+    // APRÈS :
+    while (rs.next()) {
+        payments.add(mapPayment(rs));
+    }
+
+    private Payment mapPayment(ResultSet rs) throws SQLException {
+        Payment payment = new Payment();
+        payment.setMsgType(SwiftType.getSwiftType(rs.getString("IMT_CDE_MSG_TYPE")));
+        // ... (corps existant, inchangé)
+        return payment;
+    }
+
+// ── 3b. getNewPayments() : profiter aussi du fetch size ──
+
+    // AVANT :
+    try (PreparedStatement ps = this.prepareStatement(query, toParams(branches));
+         ResultSet rs = ps.executeQuery()) {
+
+    // APRÈS :
+    try (PreparedStatement ps = this.prepareStatement(query, toParams(branches))) {
+        ps.setFetchSize(P00_ICOR_00_Config.getInstance().paymentFetchSize);
+        try (ResultSet rs = ps.executeQuery()) {
+            // ... boucle inchangée
+        }
+    }
+
+// ── 3c. openNewPayments() ──
+//   prepareStatement() et non prepareCachedStatement() : le statement vit
+//   le temps du curseur et est fermé avec lui.
+
+    @Override
+    public PaymentCursor openNewPayments(List<String> branches, int fetchSize) throws SQLException {
+        String query = String.format(SELECT_NEW_PAYMENTS, buildInClause(branches.size()));
+        PreparedStatement ps = this.prepareStatement(query, toParams(branches));
+        try {
+            ps.setFetchSize(fetchSize);
+            return new NewPaymentCursor(ps, ps.executeQuery());
+        } catch (SQLException e) {
+            LOG.error("Could not open new payments cursor", e);
+            ps.close();
+            throw e;
+        }
+    }
+
+    private final class NewPaymentCursor implements PaymentCursor {
+        private final PreparedStatement ps;
+        private final ResultSet rs;
+        private boolean exhausted;
+
+        private NewPaymentCursor(PreparedStatement ps, ResultSet rs) {
+            this.ps = ps;
+            this.rs = rs;
+        }
+
+        @Override
+        public List<Payment> nextChunk(int chunkSize) throws SQLException {
+            if (chunkSize <= 0) {
+                throw new IllegalArgumentException("chunkSize must be > 0");
+            }
+            List<Payment> chunk = new ArrayList<>(chunkSize);
+            // Pas de rs.next() après un false : certains drivers lèvent "Exhausted Resultset"
+            while (!exhausted && chunk.size() < chunkSize) {
+                if (rs.next()) {
+                    chunk.add(mapPayment(rs));
+                } else {
+                    exhausted = true;
+                }
+            }
+            return chunk;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                rs.close();
+            } finally {
+                ps.close();
+            }
+        }
+    }
+
+//  ⚠️ Le curseur reste ouvert pendant les commit() faits par processPayments().
+//     Oracle garde les curseurs ouverts au commit (HOLD_CURSORS_OVER_COMMIT),
+//     et SELECT_NEW_PAYMENTS lit TBP_IPMT_IMT_OUT_DIFF que le traitement ne
+//     modifie pas → lecture cohérente (read consistency) garantie.
+//     processPayments() ne doit donc pas appeler purgeWorkingTables() /
+//     loadWorkingTables() : c'est le cas aujourd'hui, ils sont appelés avant
+//     buildNewPayments().
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 4 : PaymentProcessor.java — buildNewPayments() découpée
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  Seule la 1re ligne reste dans buildNewPayments() ; tout le reste du corps
+//  (enrichPayments de PERF_BULK_ENRICHMENT.java, boucle control / transform /
+//  enrich, return) passe tel quel dans buildPayments(newPayments).
+
+    // AVANT :
+    public List<Payment> buildNewPayments() throws ... {
+        List<Payment> newPayments = this.sqlHandler.getNewPayments(this.branches);
+        try {
+            this.sqlHandler.enrichPayments(newPayments);
+        } catch (PaymentException e) {
+            LOG.warn("Bulk enrichment failed, falling back to per-payment lookups", e);
+        }
+        for (Payment payment : newPayments) {
+            // control, transform, enrich ...
+        }
+        // ... (fin du corps existant, jusqu'au return)
+    }
+
+    // APRÈS (même clause throws sur les deux méthodes) :
+    public List<Payment> buildNewPayments() throws ... {
+        return buildPayments(this.sqlHandler.getNewPayments(this.branches));
+    }
+
+    /** Corps de buildNewPayments() appliqué à une liste déjà lue (liste complète ou lot). */
+    public List<Payment> buildPayments(List<Payment> newPayments) throws ... {
+        try {
+            this.sqlHandler.enrichPayments(newPayments);
+        } catch (PaymentException e) {
+            LOG.warn("Bulk enrichment failed, falling back to per-payment lookups", e);
+        }
+        for (Payment payment : newPayments) {
+            // control, transform, enrich ...
+        }
+        // ... (fin du corps existant, jusqu'au return)
+    }
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  ÉTAPE 5 : Main.java — process() découpée, mode flux
+// ════════════════════════════════════════════════════════════════════════════════
+//
+//  1re coupe : juste après "List<Payment> payments = buildNewPayments();".
+//  Tout ce qui suit dans le try de process() (jusqu'au return) devient
+//  processPayments(payments). 2e coupe, dans ce bloc : à la fin de la boucle
+//  sur les paiements. La boucle devient sendPayments(payments), ce qui la
+//  suit (travail de fin de run) devient finishRun(). La clause throws des
+//  trois méthodes reprend les exceptions vérifiées de ce bloc, déjà
+//  attrapées par le catch existant de process().
+
+    // AVANT :
+    int process() {
+        try {
+            // process responses
+            if (parameter.isMqActivate()) {
+                this.responseProcessor.start();
+                this.sqlHandler.commit();
+            }
+            // Clean and load payment tables
+            this.sqlHandler.purgeWorkingTables(branches);
+            this.sqlHandler.loadWorkingTables(branches);
+            this.sqlHandler.commit();
+            // Create, control, transform and enrich payments
+            List<Payment> payments = this.paymentProcessor.buildNewPayments();
+            ... (suite existante)
+        } catch (...) { ... }
+    }
+
+    // APRÈS :
+    int process() {
+        try {
+            // process responses
+            if (parameter.isMqActivate()) {
+                this.responseProcessor.start();
+                this.sqlHandler.commit();
+            }
+            // Clean and load payment tables
+            this.sqlHandler.purgeWorkingTables(branches);
+            this.sqlHandler.loadWorkingTables(branches);
+            this.sqlHandler.commit();
+            // Create, control, transform and enrich payments
+            P00_ICOR_00_Config config = P00_ICOR_00_Config.getInstance();
+            if (config.paymentChunkSize <= 0) {
+                List<Payment> payments = this.paymentProcessor.buildNewPayments();
+                return processPayments(payments);
+            }
+            return processPaymentsByChunk(config.paymentFetchSize, config.paymentChunkSize);
+        } catch (...) { ... }
+    }
+
+    /** Suite de process() après buildNewPayments() : la liste complète en un seul lot. */
+    private int processPayments(List<Payment> payments) throws ... {
+        return finishRun(payments.size(), sendPayments(payments));
+    }
+
+    /** Boucle par paiement de la suite existante, déplacée sans modification. */
+    private int sendPayments(List<Payment> payments) throws ... {
+        ... (boucle existante : message SWIFT, put MQ, statut, store())
+    }
+
+    /**
+     * Fin de la suite existante, après la boucle, déplacée sans modification :
+     * export fichier du run, audit de fin de run, commit final, return. Les
+     * lectures de payments.size() y deviennent nbPayments.
+     */
+    private int finishRun(int nbPayments, int status) throws ... {
+        ... (fin existante, jusqu'au return)
+    }
+
+    /**
+     * Mode flux : buildPayments() puis sendPayments() pour chaque lot, dans
+     * l'ordre de la liste complète, et commit des statuts du lot (mémoire et
+     * undo bornés). Exécuté au moins une fois (lot vide si rien à traiter),
+     * comme le mode liste complète. Les statuts de chaque lot sont cumulés par
+     * updateStatus(), comme dans start() ; finishRun() n'est appelé qu'une
+     * fois, après le dernier lot, avec le total du run.
+     */
+    private int processPaymentsByChunk(int fetchSize, int chunkSize) throws ... {
+        int nbPayments = 0;
+        try (IPaymentSqlHandler.PaymentCursor cursor = this.sqlHandler.openNewPayments(this.branches, fetchSize)) {
+            List<Payment> newPayments = cursor.nextChunk(chunkSize);
+            do {
+                nbPayments += newPayments.size();
+                List<Payment> payments = this.paymentProcessor.buildPayments(newPayments);
+                updateStatus(sendPayments(payments));
+                this.sqlHandler.commit();
+                newPayments = cursor.nextChunk(chunkSize);
+            } while (!newPayments.isEmpty());
+        }
+        LOG.info("Processed " + nbPayments + " payments by chunks of " + chunkSize);
+        return finishRun(nbPayments, currentStatus);
+    }
+
+//  Le fichier et l'audit de fin de run sont produits une fois, comme en mode
+//  liste complète : seul le commit des statuts est fait par lot.
+
+
+// ════════════════════════════════════════════════════════════════════════════════
+//  RÉSUMÉ
+// ════════════════════════════════════════════════════════════════════════════════
+/*
+  ╔═══════════════════════════════════╦════════════════════════════════════════════╗
+  ║ FICHIER                          ║ MODIFICATION                              ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ P00_ICOR_00_Config.java          ║ +paymentFetchSize +paymentChunkSize       ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ IPaymentSqlHandler.java          ║ +PaymentCursor +openNewPayments()         ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentSqlHandler.java           ║ +openNewPayments() +mapPayment()          ║
+  ║                                  ║ getNewPayments() : setFetchSize()         ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ PaymentProcessor.java            ║ +buildPayments(list) (corps déplacé)      ║
+  ╠═══════════════════════════════════╬════════════════════════════════════════════╣
+  ║ Main.java                        ║ +processPayments(list) (suite déplacée)   ║
+  ║                                  ║ = sendPayments(list) + finishRun()        ║
+  ║                                  ║ +processPaymentsByChunk() si chunk.size>0 ║
+  ╚═══════════════════════════════════╩════════════════════════════════════════════╝
+
+  Mémoire : O(backlog) → O(chunkSize).  payment.chunk.size=0 → comportement actuel.
+*/